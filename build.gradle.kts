@@ -1,8 +1,10 @@
 import java.util.Properties
+import org.jetbrains.intellij.platform.gradle.TestFrameworkType
 
 plugins {
     id("java")
     id("org.jetbrains.intellij.platform") version "2.1.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.example.smartim"
@@ -50,13 +52,20 @@ repositories {
 dependencies {
     intellijPlatform {
         intellijIdeaCommunity("2024.3")
+        // 测试与基准用 Java 文件驱动真实的高亮器与 PSI；插件本身不依赖 Java 插件，主代码编译时剔除 (见下方 compileJava)
+        bundledPlugin("com.intellij.java")
         instrumentationTools()
         pluginVerifier()
         zipSigner()
+        testFramework(TestFrameworkType.Platform)
     }
     
     implementation("net.java.dev.jna:jna:5.14.0")
     implementation("net.java.dev.jna:jna-platform:5.14.0")
+
+    testImplementation("junit:junit:4.13.2")
+    // 2024.3 的平台测试框架在运行时需要 opentest4j
+    testRuntimeOnly("org.opentest4j:opentest4j:1.3.0")
 }
 
 intellijPlatform {
@@ -77,7 +86,39 @@ intellijPlatform {
     }
 }
 
+// 基准测试：./gradlew jmh，结果输出到 build/results/jmh/results.json
+// 编辑器相关基准在 light fixture 中运行，因此复用测试任务的类路径与 JVM 参数 (平台运行时 jar、idea.* 系统属性)；
+// 仅继承 compileClasspath 时运行期缺少平台实现类
+val testTask = tasks.named<Test>("test")
+configurations {
+    named("jmhCompileClasspath") { extendsFrom(configurations.testCompileClasspath.get()) }
+}
+dependencies {
+    jmhRuntimeOnly(files(testTask.map { it.classpath }))
+}
+
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    // 同时报告分配速率
+    profilers.add("gc")
+    resultFormat = "JSON"
+    jvmArgsAppend.addAll(testTask.map { it.allJvmArgs })
+    // Carbon 绑定对比需要真实的 Carbon 框架，只在 macOS 上运行
+    if (!System.getProperty("os.name").startsWith("Mac")) {
+        excludes.add(".*CarbonBindingBenchmark.*")
+    }
+}
+
 tasks.withType<JavaCompile> {
     sourceCompatibility = "21"
     targetCompatibility = "21"
 }
+
+// 插件 2.1.0 没有仅用于测试的 bundledPlugin，Java 插件会进入所有编译类路径；
+// plugin.xml 未声明对它的依赖，因此从主代码的编译类路径中去掉，误用 Java PSI 时直接编译失败
+tasks.named<JavaCompile>("compileJava") {
+    classpath = classpath.filter { !it.invariantSeparatorsPath.contains("/plugins/java/") }
+}
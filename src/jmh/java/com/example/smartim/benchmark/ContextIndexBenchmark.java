@@ -0,0 +1,61 @@
+package com.example.smartim.benchmark;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.ContextIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上下文检测快路径：区间索引查询与编辑后的增量平移
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContextIndexBenchmark {
+
+    @Param({"java", "kotlin", "python"})
+    public String language;
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private ContextIndex index;
+    private int[] offsets;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticSource source = SyntheticSource.generate(language, SyntheticSource.lines(size));
+        index = source.index;
+        Random random = new Random(42);
+        offsets = new int[1024];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = random.nextInt(source.text.length());
+        }
+    }
+
+    @Benchmark
+    public ContextType lookup() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        return index.lookup(offset);
+    }
+
+    /**
+     * 单字符输入后的增量平移
+     */
+    @Benchmark
+    public ContextIndex shiftOnTyping() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        return index.shift(offset, 0, 1, 2);
+    }
+}
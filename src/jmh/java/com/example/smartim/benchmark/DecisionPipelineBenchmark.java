@@ -0,0 +1,101 @@
+package com.example.smartim.benchmark;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.KeywordMatcher;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SmartIMSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次光标移动的完整决策：索引查询 → 关键词匹配 → 决策表解析 → 提交切换
+ * <p>
+ * 与 EditorListenerImpl#updateInputMethod 的步骤一致，编辑器与 PSI 由合成文本和区间索引代替，
+ * 切换由同步执行的 {@link SwitchExecutor} 提交到 {@link FakeInputMethodService}。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecisionPipelineBenchmark {
+
+    @Param({"java", "kotlin", "python"})
+    public String language;
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private SyntheticSource source;
+    private DecisionTable table;
+    private DecisionTable.LanguageTable languageTable;
+    private SwitchExecutor executor;
+    private int[] offsets;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = SyntheticSource.generate(language, SyntheticSource.lines(size));
+
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.generalSettings.customKeywords = "TODO;FIXME;word:note";
+        settings.customRules = "python,STRING_LITERAL,*=英文";
+        table = DecisionTable.compile(settings);
+        languageTable = table.forLanguage(language);
+
+        executor = new SwitchExecutor(new FakeInputMethodService(), Runnable::run);
+
+        Random random = new Random(42);
+        offsets = new int[1024];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = random.nextInt(source.text.length());
+        }
+    }
+
+    @Benchmark
+    public ResolvedTarget resolve() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        ContextType context = source.index.lookup(offset);
+        return table.resolve(languageTable, language, context, null);
+    }
+
+    @Benchmark
+    public ResolvedTarget updateInputMethod() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        ContextType context = source.index.lookup(offset);
+
+        KeywordMatcher keywords = languageTable.getKeywords();
+        if (context == ContextType.CODE && !keywords.isEmpty()) {
+            int lineStart = offset;
+            while (lineStart > 0 && source.text.charAt(lineStart - 1) != '\n') {
+                lineStart--;
+            }
+            if (keywords.matches(source.text, lineStart, offset))
+                context = ContextType.CHINESE_KEYWORD;
+        }
+
+        ResolvedTarget target = table.resolve(languageTable, language, context, null);
+        executor.switchTo(target);
+        return target;
+    }
+
+    /**
+     * 配置变更时的决策表重新编译
+     */
+    @Benchmark
+    public DecisionTable compile() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.generalSettings.customKeywords = "TODO;FIXME;word:note";
+        return DecisionTable.compile(settings);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.smartim.benchmark;
+
+import com.example.smartim.im.InputMethodService;
+
+/**
+ * 不访问系统的输入法服务，只记录最后一次切换目标
+ */
+final class FakeInputMethodService implements InputMethodService {
+    private String current;
+
+    @Override
+    public boolean switchToNative() {
+        current = "native";
+        return true;
+    }
+
+    @Override
+    public boolean switchToEnglish() {
+        current = "english";
+        return true;
+    }
+
+    @Override
+    public boolean switchByName(String name) {
+        if (name == null || name.equals(current))
+            return true;
+        current = name;
+        return true;
+    }
+
+    @Override
+    public boolean isChinese() {
+        return "native".equals(current);
+    }
+
+    @Override
+    public String getCurrentInputMethod() {
+        return current;
+    }
+}
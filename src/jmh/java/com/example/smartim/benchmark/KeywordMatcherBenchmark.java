@@ -0,0 +1,61 @@
+package com.example.smartim.benchmark;
+
+import com.example.smartim.core.KeywordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自定义关键词匹配：在一行文本上扫描，分别测量命中与未命中
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeywordMatcherBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int keywordCount;
+
+    @Param({"plain", "word", "regex"})
+    public String kind;
+
+    private KeywordMatcher matcher;
+    private String hitLine;
+    private String missLine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String prefix = "word".equals(kind) ? "word:" : "regex".equals(kind) ? "re:" : "";
+        StringJoiner keywords = new StringJoiner(";");
+        for (int i = 0; i < keywordCount; i++) {
+            keywords.add(prefix + "keyword" + i);
+        }
+        matcher = KeywordMatcher.compile(keywords.toString());
+        missLine = "        logger.info(\"processing request for user\", requestId, payload);";
+        hitLine = "        logger.info(\"processing keyword" + (keywordCount - 1) + " for user\", requestId);";
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return matcher.matches(hitLine, 0, hitLine.length());
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return matcher.matches(missLine, 0, missLine.length());
+    }
+
+    @Benchmark
+    public KeywordMatcher compile() {
+        return KeywordMatcher.compile("TODO;FIXME;word:note;re:\\bxxx\\d+");
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.smartim.benchmark;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.ContextIndex;
+
+/**
+ * 合成源文件：按固定比例分布注释、字符串与文档注释，模拟不同语言与规模的文件
+ */
+final class SyntheticSource {
+
+    // 平均行长
+    static final int LINE_LENGTH = 40;
+
+    final String text;
+    final ContextIndex index;
+
+    private SyntheticSource(String text, ContextIndex index) {
+        this.text = text;
+        this.index = index;
+    }
+
+    static int lines(String size) {
+        switch (size) {
+            case "small":
+                return 200;
+            case "medium":
+                return 5_000;
+            case "huge":
+                return 100_000;
+            default:
+                throw new IllegalArgumentException(size);
+        }
+    }
+
+    /**
+     * @param language java / kotlin / python，决定注释语法
+     */
+    static SyntheticSource generate(String language, int lines) {
+        boolean python = "python".equals(language);
+        String lineComment = python ? "# " : "// ";
+        String docOpen = python ? "\"\"\"" : "/** ";
+        String docClose = python ? "\"\"\"" : " */";
+
+        StringBuilder text = new StringBuilder(lines * LINE_LENGTH);
+        ContextIndex.Builder builder = new ContextIndex.Builder();
+        for (int line = 0; line < lines; line++) {
+            int start = text.length();
+            switch (line % 10) {
+                case 0: {
+                    text.append(docOpen).append("说明文档 documentation line").append(docClose);
+                    builder.add(start, text.length(), ContextType.DOC_COMMENT);
+                    break;
+                }
+                case 3: {
+                    text.append("    value = compute(a, b) ");
+                    int commentStart = text.length();
+                    text.append(lineComment).append("行尾注释");
+                    builder.add(commentStart, text.length(), ContextType.SINGLE_LINE_COMMENT);
+                    break;
+                }
+                case 6: {
+                    text.append("    log(");
+                    int stringStart = text.length();
+                    text.append("\"message with 中文 text\"");
+                    builder.add(stringStart, text.length(), ContextType.STRING_LITERAL);
+                    text.append(");");
+                    break;
+                }
+                case 8: {
+                    text.append("    String KEY = ");
+                    int constantStart = text.length();
+                    text.append("\"CONSTANT_KEY\"");
+                    builder.add(constantStart, text.length(), ContextType.CONSTANT_LITERAL);
+                    break;
+                }
+                default:
+                    text.append("    int result = first.call(second, third);");
+            }
+            text.append('\n');
+        }
+        return new SyntheticSource(text.toString(), builder.build(1));
+    }
+}
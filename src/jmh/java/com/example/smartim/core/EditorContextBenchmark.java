@@ -0,0 +1,147 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在 light fixture 打开的真实 Java 编辑器上测量上下文检测
+ * <p>
+ * 索引重建遍历真实 PSI，词法路径使用编辑器高亮器的 {@code HighlighterIterator}，
+ * 与插件运行时走的代码完全相同；合成基准 ({@code ContextIndexBenchmark}) 只覆盖索引本身。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EditorContextBenchmark {
+
+    @Param({"200", "5000"})
+    public int lines;
+
+    private CodeInsightTestFixture fixture;
+    private Project project;
+    private Editor editor;
+    private Document document;
+    private int[] offsets;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        IdeaTestFixtureFactory factory = IdeaTestFixtureFactory.getFixtureFactory();
+        TestFixtureBuilder<IdeaProjectTestFixture> builder =
+                factory.createLightFixtureBuilder(LightProjectDescriptor.EMPTY_PROJECT_DESCRIPTOR, "SmartIMBenchmark");
+        fixture = factory.createCodeInsightFixture(builder.getFixture());
+        String text = javaSource(lines);
+        EdtTestUtil.runInEdtAndWait(() -> {
+            fixture.setUp();
+            fixture.configureByText("Sample.java", text);
+        });
+        project = fixture.getProject();
+        editor = fixture.getEditor();
+        document = editor.getDocument();
+
+        // 预先放入最新索引，detectFast 测量的是索引命中路径
+        ContextIndex index = ReadAction.compute(() -> ContextIndexManager.build(project, document));
+        document.putUserData(ContextIndexManager.INDEX_KEY, index);
+
+        Random random = new Random(42);
+        offsets = new int[1024];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = random.nextInt(text.length());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        EdtTestUtil.runInEdtAndWait(() -> fixture.tearDown());
+    }
+
+    /**
+     * 后台全量重建索引
+     */
+    @Benchmark
+    public ContextIndex rebuild() {
+        return ReadAction.compute(() -> ContextIndexManager.build(project, document));
+    }
+
+    /**
+     * 光标移动时的快速路径，索引命中
+     */
+    @Benchmark
+    public ContextType detectFast() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        return ReadAction.compute(() -> ContextDetector.detectFast(editor, offset));
+    }
+
+    /**
+     * 索引脏区内回退到的词法路径
+     */
+    @Benchmark
+    public LexerContextDetector.Result lexer() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        return ReadAction.compute(() -> LexerContextDetector.detect(editor, offset));
+    }
+
+    /**
+     * 词法无法判断时的 PSI 路径
+     */
+    @Benchmark
+    public ContextType psi() {
+        int offset = offsets[cursor++ & (offsets.length - 1)];
+        return ReadAction.compute(() -> ContextDetector.detectWithPsi(project, document, offset));
+    }
+
+    /**
+     * 与 SyntheticSource 相同比例的注释、字符串与常量，但是合法的 Java 源码
+     */
+    private static String javaSource(int lines) {
+        StringBuilder text = new StringBuilder(lines * 48);
+        text.append("class Sample {\n");
+        for (int line = 0; line < lines; line++) {
+            switch (line % 10) {
+                case 0:
+                    text.append("    /** 说明文档 documentation line */\n");
+                    text.append("    void method").append(line).append("(int a, int b) {\n");
+                    break;
+                case 3:
+                    text.append("        int value").append(line).append(" = a + b; // 行尾注释\n");
+                    break;
+                case 6:
+                    text.append("        System.out.println(\"message with 中文 text\");\n");
+                    break;
+                case 8:
+                    text.append("        String key").append(line).append(" = \"CONSTANT_KEY\";\n");
+                    break;
+                case 9:
+                    text.append("    }\n");
+                    break;
+                default:
+                    text.append("        int result").append(line).append(" = Math.max(a, b);\n");
+            }
+        }
+        if (lines % 10 != 0)
+            text.append("    }\n");
+        return text.append("}\n").toString();
+    }
+}
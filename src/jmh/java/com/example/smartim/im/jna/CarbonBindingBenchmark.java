@@ -0,0 +1,80 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 直接映射 ({@link CarbonNative}) 与接口映射 ({@link CarbonWrapper}) 的调用开销对比
+ * <p>
+ * 只能在 macOS 上运行，其他平台由 build.gradle.kts 从 jmh 任务中排除。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CarbonBindingBenchmark {
+
+    private final CarbonTisApi direct = new CarbonTisApi();
+    private CarbonWrapper proxy;
+    private Pointer source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!Platform.isMac())
+            throw new IllegalStateException("CarbonBindingBenchmark 只能在 macOS 上运行");
+        proxy = CarbonWrapper.getInstance();
+        source = CarbonNative.TISCopyCurrentKeyboardInputSource();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (source != null)
+            CarbonNative.CFRelease(source);
+    }
+
+    /**
+     * 读取已持有输入源的 ID：一次属性查询 + 字符串转换
+     */
+    @Benchmark
+    public String sourceIdDirect() {
+        return direct.getSourceId(source);
+    }
+
+    @Benchmark
+    public String sourceIdProxy() {
+        return proxy.toJavaString(proxy.TISGetInputSourceProperty(source, CarbonNative.kTISPropertyInputSourceID));
+    }
+
+    /**
+     * 读取系统当前输入法：复制 + 属性查询 + 字符串转换 + 释放，对应每次同步 currentIM 的开销
+     */
+    @Benchmark
+    public String currentIdDirect() {
+        Pointer current = direct.copyCurrentKeyboardInputSource();
+        try {
+            return direct.getSourceId(current);
+        } finally {
+            direct.release(current);
+        }
+    }
+
+    @Benchmark
+    public String currentIdProxy() {
+        Pointer current = proxy.TISCopyCurrentKeyboardInputSource();
+        try {
+            return proxy.toJavaString(proxy.TISGetInputSourceProperty(current, CarbonNative.kTISPropertyInputSourceID));
+        } finally {
+            proxy.CFRelease(current);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于接口映射的 Carbon 绑定 (每次调用经过动态代理分发)
+ * <p>
+ * 插件运行时使用 {@link CarbonNative} 直接映射，此接口只在 {@link CarbonBindingBenchmark} 中作为对照。
+ */
+public interface CarbonWrapper extends Library {
+
+    int kCFStringEncodingUTF8 = 0x08000100;
+
+    /**
+     * 首次使用时才加载 Carbon，避免在非 macOS 上仅因类加载而失败
+     */
+    static CarbonWrapper getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    final class Holder {
+        private static final CarbonWrapper INSTANCE = Native.load("Carbon", CarbonWrapper.class);
+
+        private Holder() {
+        }
+    }
+
+    Pointer TISCopyCurrentKeyboardInputSource();
+
+    Pointer TISGetInputSourceProperty(Pointer inputSource, Pointer propertyKey);
+
+    long CFStringGetLength(Pointer theString);
+
+    boolean CFStringGetCString(Pointer theString, byte[] buffer, long bufferSize, int encoding);
+
+    void CFRelease(Pointer cf);
+
+    default String toJavaString(Pointer cfString) {
+        if (cfString == null)
+            return null;
+        long length = CFStringGetLength(cfString);
+        if (length == 0)
+            return "";
+        // UTF-8 每个字符最多 4 字节
+        long bufferSize = length * 4 + 1;
+        byte[] buffer = new byte[(int) bufferSize];
+        if (!CFStringGetCString(cfString, buffer, bufferSize, kCFStringEncodingUTF8))
+            return null;
+        int actualLength = 0;
+        while (actualLength < buffer.length && buffer[actualLength] != 0) {
+            actualLength++;
+        }
+        return new String(buffer, 0, actualLength, StandardCharsets.UTF_8);
+    }
+}
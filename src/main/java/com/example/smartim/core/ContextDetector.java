@@ -1,12 +1,18 @@
 package com.example.smartim.core;
 
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.lang.Commenter;
+import com.intellij.lang.LanguageCommenters;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiLiteralValue;
+import org.jetbrains.annotations.Nullable;
 
 public class ContextDetector {
 
@@ -22,21 +28,76 @@ public class ContextDetector {
     }
 
     public static ContextType getContext(Editor editor) {
+        if (EditorClassifier.isCommitMessageEditor(editor))
+            return ContextType.GIT_COMMIT;
+        int offset = editor.getCaretModel().getOffset();
+        ContextType fast = detectFast(editor, offset);
+        if (fast != null)
+            return fast;
+        return detectWithPsi(editor.getProject(), editor.getDocument(), offset);
+    }
+
+    /**
+     * 快速路径：区间索引与词法高亮，只访问编辑器自身状态，可在 EDT 上直接调用
+     * <p>
+     * 不识别提交窗口：编辑器是否为提交信息编辑器在创建时由 {@link EditorClassifier} 判断一次，结果保存在会话中。
+     *
+     * @return 检测结果；需要 PSI 才能确定时返回 {@code null}
+     */
+    @Nullable
+    public static ContextType detectFast(Editor editor, int offset) {
+        return detectFast(editor, offset, ContextIndexManager.getInstance(),
+                SmartIMSettings.snapshot().isLexerFastPath());
+    }
+
+    /**
+     * 同 {@link #detectFast(Editor, int)}，索引服务与配置由调用方提供，逐事件调用时不必每次查找服务
+     */
+    @Nullable
+    public static ContextType detectFast(Editor editor, int offset, ContextIndexManager indexManager,
+                                         boolean lexerFastPath) {
         Project project = editor.getProject();
         if (project == null)
             return ContextType.CODE;
 
-        // 识别 Git 提交窗口
-        String name = editor.getClass().getName();
-        if (name.contains("Commit") || name.contains("Checkin")) {
-            return ContextType.GIT_COMMIT;
+        // 优先查询区间索引，命中时无需 PSI 遍历
+        ContextType indexed = indexManager.lookup(editor, offset);
+        if (indexed != null)
+            return indexed;
+
+        // 高亮器 token 始终与文档同步，输入过程中无需等待 PSI 提交
+        if (lexerFastPath) {
+            LexerContextDetector.Result lexical = LexerContextDetector.detect(editor, offset);
+            // 仅当注释种类无法从 token 判断且 PSI 已提交时才回退到 PSI 细分
+            if (lexical != null && !(lexical.ambiguousComment
+                    && PsiDocumentManager.getInstance(project).isCommitted(editor.getDocument())))
+                return lexical.type;
         }
+        return null;
+    }
+
+    /**
+     * 只看编辑器高亮器的 token，不查询索引与 PSI：刚键入字符、索引尚未更新时用于预测
+     *
+     * @return 判断结果；编辑器没有可用高亮器时返回 {@code null}
+     */
+    @Nullable
+    public static ContextType detectLexical(Editor editor, int offset) {
+        LexerContextDetector.Result lexical = LexerContextDetector.detect(editor, offset);
+        return lexical == null ? null : lexical.type;
+    }
+
+    /**
+     * PSI 路径：需在读操作中调用，可运行于后台线程
+     */
+    public static ContextType detectWithPsi(@Nullable Project project, Document document, int offset) {
+        if (project == null)
+            return ContextType.CODE;
 
-        PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(editor.getDocument());
+        PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
         if (psiFile == null)
             return ContextType.CODE;
 
-        int offset = editor.getCaretModel().getOffset();
         PsiElement element = psiFile.findElementAt(offset);
 
         if (element == null && offset > 0) {
@@ -46,14 +107,8 @@ public class ContextDetector {
         if (element != null) {
             // 注释场景
             PsiComment comment = getParentComment(element);
-            if (comment != null) {
-                String commentType = comment.getTokenType().toString();
-                if (commentType.contains("DOC"))
-                    return ContextType.DOC_COMMENT;
-                if (commentType.contains("BLOCK") || commentType.contains("MULTI"))
-                    return ContextType.MULTI_LINE_COMMENT;
-                return ContextType.SINGLE_LINE_COMMENT;
-            }
+            if (comment != null)
+                return classifyComment(comment);
 
             // 字符串场景
             if (isInsideString(element)) {
@@ -64,6 +119,14 @@ public class ContextDetector {
             }
         }
 
+        // 光标停在单行注释末尾 (换行符之前) 时仍视为在注释中，与索引查询保持一致
+        if (offset > 0) {
+            PsiComment previous = getParentComment(psiFile.findElementAt(offset - 1));
+            if (previous != null && previous.getTextRange().getEndOffset() == offset
+                    && classifyComment(previous) == ContextType.SINGLE_LINE_COMMENT)
+                return ContextType.SINGLE_LINE_COMMENT;
+        }
+
         return ContextType.CODE;
     }
 
@@ -80,7 +143,7 @@ public class ContextDetector {
     private static boolean isInsideString(PsiElement element) {
         PsiElement current = element;
         while (current != null && !(current instanceof PsiFile)) {
-            if (current instanceof PsiLiteralValue || current.getClass().getSimpleName().contains("StringLiteral")) {
+            if (isStringElement(current)) {
                 return true;
             }
             current = current.getParent();
@@ -88,8 +151,44 @@ public class ContextDetector {
         return false;
     }
 
+    static ContextType classifyComment(PsiComment comment) {
+        String commentType = comment.getTokenType().toString();
+        if (commentType.contains("DOC"))
+            return ContextType.DOC_COMMENT;
+        if (commentType.contains("BLOCK") || commentType.contains("MULTI"))
+            return ContextType.MULTI_LINE_COMMENT;
+        // 名称无法区分种类时 (如 Java 的 C_STYLE_COMMENT) 按语言的块注释前缀判断
+        Commenter commenter = LanguageCommenters.INSTANCE.forLanguage(comment.getLanguage());
+        String blockPrefix = commenter == null ? null : commenter.getBlockCommentPrefix();
+        if (blockPrefix != null && !blockPrefix.isEmpty()
+                && StringUtil.startsWith(comment.getNode().getChars(), blockPrefix))
+            return ContextType.MULTI_LINE_COMMENT;
+        return ContextType.SINGLE_LINE_COMMENT;
+    }
+
+    static boolean isStringElement(PsiElement element) {
+        return element instanceof PsiLiteralValue || element.getClass().getSimpleName().contains("StringLiteral");
+    }
+
     private static boolean isConstant(PsiElement element) {
         String text = element.getText();
-        return text.toUpperCase().equals(text) && text.length() > 2 && text.contains("_");
+        return isConstant(text, 0, text.length());
+    }
+
+    /**
+     * 简单常量判断：全大写、含下划线且长度大于 2，直接在字符序列上判断不产生拷贝
+     */
+    static boolean isConstant(CharSequence text, int start, int end) {
+        if (end - start <= 2)
+            return false;
+        boolean hasUnderscore = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.toUpperCase(c) != c)
+                return false;
+            if (c == '_')
+                hasUnderscore = true;
+        }
+        return hasUnderscore;
     }
 }
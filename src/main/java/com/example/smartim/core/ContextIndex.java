@@ -0,0 +1,311 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+
+import java.util.Arrays;
+
+/**
+ * 单个文档的上下文区间索引 (注释 / 字符串 / 常量)
+ * <p>
+ * 区间按起始偏移有序且互不重叠，查询为二分查找。索引与构建时的文档修改戳绑定；
+ * 文档编辑后通过 {@link #shift} 做增量平移，与编辑范围相交的区间被丢弃并记为脏区，
+ * 脏区内的查询返回 {@code null}，由调用方回退到 PSI 检测，直到后台重建完成。
+ * <p>
+ * 多次编辑的脏区合并为一段连续区间，因此存活的区间只有两段：脏区之前的前缀保持原坐标，
+ * 脏区之后的后缀统一带一个累计偏移量。平移时只二分定位边界并生成新的 (前缀长度, 后缀起点, 偏移量)，
+ * 底层数组在各版本间共享且从不修改，单次编辑为 O(log n)，不复制区间数组。
+ * 文档提交后只需重新扫描脏区 (及与之相接的元素)，用 {@link #splice} 把结果拼回得到新的干净索引。
+ */
+public final class ContextIndex {
+
+    private static final int NO_DIRTY = -1;
+
+    // 构建时的区间 (构建时坐标)，所有平移版本共享
+    private final int[] starts;
+    private final int[] ends;
+    private final ContextType[] types;
+    private final int size;
+    private final long stamp;
+    private final int dirtyStart;
+    private final int dirtyEnd;
+    // 存活区间：[0, prefixEnd) 保持原坐标，[suffixStart, size) 需加 suffixDelta；无脏区时全部存活且无偏移
+    private final int prefixEnd;
+    private final int suffixStart;
+    private final int suffixDelta;
+
+    private ContextIndex(int[] starts, int[] ends, ContextType[] types, int size, long stamp,
+                         int dirtyStart, int dirtyEnd, int prefixEnd, int suffixStart, int suffixDelta) {
+        this.starts = starts;
+        this.ends = ends;
+        this.types = types;
+        this.size = size;
+        this.stamp = stamp;
+        this.dirtyStart = dirtyStart;
+        this.dirtyEnd = dirtyEnd;
+        this.prefixEnd = prefixEnd;
+        this.suffixStart = suffixStart;
+        this.suffixDelta = suffixDelta;
+    }
+
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * 存活 (不在脏区内) 的区间数
+     */
+    public int size() {
+        return isDirty() ? prefixEnd + size - suffixStart : size;
+    }
+
+    public boolean isDirty() {
+        return dirtyStart != NO_DIRTY;
+    }
+
+    /**
+     * 查询偏移处的上下文
+     *
+     * @return 所在区间的类型；不在任何区间内为 {@link ContextType#CODE}；位于脏区时为 {@code null}
+     */
+    public ContextType lookup(int offset) {
+        if (!isDirty())
+            return lookup(0, size, offset);
+        if (offset < dirtyStart)
+            return lookup(0, prefixEnd, offset);
+        if (offset > dirtyEnd)
+            return lookup(suffixStart, size, offset - suffixDelta);
+        return null;
+    }
+
+    /**
+     * 在 [from, to) 内按构建时坐标查询
+     */
+    private ContextType lookup(int from, int to, int offset) {
+        // 找到最后一个 start <= offset 的区间
+        int found = lastStartAtOrBefore(from, to, offset);
+        if (found < from)
+            return ContextType.CODE;
+
+        if (offset < ends[found])
+            return types[found];
+        // 光标停在单行注释末尾 (换行符之前) 时仍视为在注释中
+        if (offset == ends[found] && types[found] == ContextType.SINGLE_LINE_COMMENT)
+            return types[found];
+        return ContextType.CODE;
+    }
+
+    /**
+     * 根据一次文档编辑增量更新索引，返回新版本，原索引不变
+     *
+     * @param offset    编辑起始偏移
+     * @param oldLength 被替换的旧文本长度
+     * @param newLength 新文本长度
+     * @param newStamp  编辑后的文档修改戳
+     */
+    public ContextIndex shift(int offset, int oldLength, int newLength, long newStamp) {
+        int delta = newLength - oldLength;
+        int editEnd = offset + oldLength;
+
+        // 当前坐标系下的存活区间：前缀 [0, prefixLimit) 保持原坐标，后缀 [suffixFrom, size) 偏移 currentDelta
+        boolean dirty = isDirty();
+        int prefixLimit = dirty ? prefixEnd : size;
+        int suffixFrom = dirty ? suffixStart : size;
+        int currentDelta = dirty ? suffixDelta : 0;
+
+        // 受影响范围：初始为本次编辑 (新坐标系)，再并入所有相交区间
+        int affectedStart = offset;
+        int affectedEnd = offset + newLength;
+
+        // 相交区间是 end >= offset 且 start <= editEnd 的连续一段，只需定位两端
+        int first = firstEndAtOrAfter(0, prefixLimit, offset);
+        if (first == prefixLimit)
+            first = firstEndAtOrAfter(suffixFrom, size, offset - currentDelta);
+        int last = lastStartAtOrBefore(suffixFrom, size, editEnd - currentDelta);
+        if (last < suffixFrom)
+            last = lastStartAtOrBefore(0, prefixLimit, editEnd);
+        if (first < size && last >= 0 && first <= last) {
+            int firstDelta = first >= suffixFrom ? currentDelta : 0;
+            int lastDelta = last >= suffixFrom ? currentDelta : 0;
+            affectedStart = Math.min(affectedStart, starts[first] + firstDelta);
+            affectedEnd = Math.max(affectedEnd, ends[last] + lastDelta + delta);
+        }
+
+        int newDirtyStart = affectedStart;
+        int newDirtyEnd = affectedEnd;
+        if (dirty) {
+            // 旧脏区同样需要平移到新坐标系后合并
+            int oldDirtyStart = dirtyStart > editEnd ? dirtyStart + delta : Math.min(dirtyStart, offset);
+            int oldDirtyEnd = dirtyEnd >= offset ? Math.max(dirtyEnd + delta, offset + newLength) : dirtyEnd;
+            newDirtyStart = Math.min(newDirtyStart, oldDirtyStart);
+            newDirtyEnd = Math.max(newDirtyEnd, oldDirtyEnd);
+        }
+
+        // 合并后的脏区覆盖两次编辑之间的所有区间，存活的仍只有脏区前的前缀与脏区后的后缀
+        // (区间可与脏区首尾相接，因此按起点/终点而非整段区间判断)
+        int newPrefixEnd = firstStartAfter(0, prefixLimit, newDirtyStart - 1);
+        int newDelta = currentDelta + delta;
+        int newSuffixStart = firstEndAtOrAfter(dirty ? suffixFrom : 0, size, newDirtyEnd - newDelta + 1);
+        return new ContextIndex(starts, ends, types, size, newStamp, newDirtyStart, newDirtyEnd,
+                newPrefixEnd, Math.max(newSuffixStart, newPrefixEnd), newDelta);
+    }
+
+    /**
+     * 脏区起点 (当前坐标)，无脏区时为 -1
+     */
+    int getDirtyStart() {
+        return dirtyStart;
+    }
+
+    /**
+     * 脏区终点 (当前坐标，含)，无脏区时为 -1
+     */
+    int getDirtyEnd() {
+        return dirtyEnd;
+    }
+
+    /**
+     * 与 [from, to) 相交的存活区间合并后的范围 (当前坐标)
+     *
+     * @return {@code {start, end}}；没有相交区间时返回 {@code null}
+     */
+    int[] survivingSpan(int from, int to) {
+        boolean dirty = isDirty();
+        int prefixLimit = dirty ? prefixEnd : size;
+        int suffixFrom = dirty ? suffixStart : size;
+        int delta = dirty ? suffixDelta : 0;
+
+        int spanStart = Integer.MAX_VALUE;
+        int spanEnd = Integer.MIN_VALUE;
+        // 相交即 end > from 且 start < to
+        int first = firstEndAtOrAfter(0, prefixLimit, from + 1);
+        int last = lastStartAtOrBefore(0, prefixLimit, to - 1);
+        if (first <= last) {
+            spanStart = starts[first];
+            spanEnd = ends[last];
+        }
+        first = firstEndAtOrAfter(suffixFrom, size, from + 1 - delta);
+        last = lastStartAtOrBefore(suffixFrom, size, to - 1 - delta);
+        if (first <= last) {
+            spanStart = Math.min(spanStart, starts[first] + delta);
+            spanEnd = Math.max(spanEnd, ends[last] + delta);
+        }
+        return spanStart > spanEnd ? null : new int[]{spanStart, spanEnd};
+    }
+
+    /**
+     * 用重新扫描得到的区间替换 [from, to) 内的内容，返回无脏区的新索引，原索引不变
+     * <p>
+     * [from, to) 必须覆盖整个脏区，且不能截断任何存活区间 (先用 {@link #survivingSpan} 扩展)；
+     * {@code replacement} 中的区间都应位于其中 (当前坐标)。
+     */
+    ContextIndex splice(int from, int to, Builder replacement, long newStamp) {
+        boolean dirty = isDirty();
+        int prefixLimit = dirty ? prefixEnd : size;
+        int suffixFrom = dirty ? suffixStart : size;
+        int delta = dirty ? suffixDelta : 0;
+
+        Builder builder = new Builder(size() + replacement.size);
+        int i = 0;
+        for (; i < prefixLimit && ends[i] <= from; i++) {
+            builder.add(starts[i], ends[i], types[i]);
+        }
+        for (int k = 0; k < replacement.size; k++) {
+            builder.add(replacement.starts[k], replacement.ends[k], replacement.types[k]);
+        }
+        // 无脏区时后缀仍在前缀数组里
+        for (i = firstStartAfter(0, prefixLimit, to - 1); i < prefixLimit; i++) {
+            builder.add(starts[i], ends[i], types[i]);
+        }
+        for (i = firstStartAfter(suffixFrom, size, to - 1 - delta); i < size; i++) {
+            builder.add(starts[i] + delta, ends[i] + delta, types[i]);
+        }
+        return builder.build(newStamp);
+    }
+
+    /**
+     * [from, to) 内第一个 end >= offset 的下标，不存在时返回 to
+     */
+    private int firstEndAtOrAfter(int from, int to, int offset) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] < offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * [from, to) 内第一个 start > offset 的下标，不存在时返回 to
+     */
+    private int firstStartAfter(int from, int to, int offset) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] <= offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * [from, to) 内最后一个 start <= offset 的下标，不存在时返回 from - 1
+     */
+    private int lastStartAtOrBefore(int from, int to, int offset) {
+        return firstStartAfter(from, to, offset) - 1;
+    }
+
+    /**
+     * 按起始偏移递增顺序追加区间
+     */
+    public static final class Builder {
+        private int[] starts;
+        private int[] ends;
+        private ContextType[] types;
+        private int size = 0;
+
+        public Builder() {
+            this(64);
+        }
+
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 16);
+            starts = new int[capacity];
+            ends = new int[capacity];
+            types = new ContextType[capacity];
+        }
+
+        public Builder add(int start, int end, ContextType type) {
+            if (end <= start)
+                return this;
+            if (size > 0 && start < ends[size - 1])
+                return this; // 与上一个区间重叠 (嵌套元素)，保留外层
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            types[size] = type;
+            size++;
+            return this;
+        }
+
+        /**
+         * 构建后不可再追加，数组直接交给索引共享
+         */
+        public ContextIndex build(long stamp) {
+            return new ContextIndex(starts, ends, types, size, stamp, NO_DIRTY, NO_DIRTY, size, size, 0);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 维护每个文档的 {@link ContextIndex}：后台构建、随编辑增量平移、提交后只重新扫描脏区
+ * <p>
+ * 全量遍历 PSI 只发生在首次查询、整篇替换，或脏区扩展后超过半个文档 (如输入未闭合的块注释) 时。
+ */
+public final class ContextIndexManager implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ContextIndexManager.class);
+
+    static final Key<ContextIndex> INDEX_KEY = Key.create("SmartIM.ContextIndex");
+    // 已提交重建任务时对应的文档修改戳，避免同一版本重复提交
+    private static final Key<Long> SCHEDULED_STAMP_KEY = Key.create("SmartIM.ContextIndex.Scheduled");
+    // 脏区向相接元素扩展的最多轮数，仍未稳定时改为全量构建
+    private static final int MAX_WIDEN_ROUNDS = 8;
+
+    private final LongAdder fullBuilds = new LongAdder();
+    private final LongAdder incrementalUpdates = new LongAdder();
+
+    public ContextIndexManager() {
+        SmartIMMetrics metrics = SmartIMMetrics.getInstance();
+        metrics.registerGauge("contextIndexFullBuilds", "索引全量构建", this::getFullBuildCount);
+        metrics.registerGauge("contextIndexIncrementalUpdates", "索引增量更新", this::getIncrementalUpdateCount);
+
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                onDocumentChanged(event);
+            }
+        }, this);
+    }
+
+    public static ContextIndexManager getInstance() {
+        return ApplicationManager.getApplication().getService(ContextIndexManager.class);
+    }
+
+    /**
+     * 查询光标偏移处的上下文
+     *
+     * @return 索引可用时返回结果；索引缺失、过期或位于脏区时返回 {@code null} 并安排后台更新
+     */
+    @Nullable
+    public ContextType lookup(@NotNull Editor editor, int offset) {
+        Document document = editor.getDocument();
+        ContextIndex index = document.getUserData(INDEX_KEY);
+        if (index != null && index.getStamp() == document.getModificationStamp()) {
+            ContextType type = index.lookup(offset);
+            if (type != null)
+                return type;
+        }
+
+        Project project = editor.getProject();
+        if (project != null)
+            scheduleRefresh(project, document);
+        return null;
+    }
+
+    private void onDocumentChanged(DocumentEvent event) {
+        Document document = event.getDocument();
+        ContextIndex index = document.getUserData(INDEX_KEY);
+        if (index == null)
+            return; // 尚未被查询过的文档不建索引
+
+        if (event.isWholeTextReplaced()) {
+            document.putUserData(INDEX_KEY, null);
+        } else {
+            document.putUserData(INDEX_KEY, index.shift(event.getOffset(), event.getOldLength(),
+                    event.getNewLength(), document.getModificationStamp()));
+        }
+
+        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
+            Project project = editor.getProject();
+            if (project != null) {
+                scheduleRefresh(project, document);
+                break;
+            }
+        }
+    }
+
+    private void scheduleRefresh(Project project, Document document) {
+        long stamp = document.getModificationStamp();
+        Long scheduled = document.getUserData(SCHEDULED_STAMP_KEY);
+        if (scheduled != null && scheduled == stamp)
+            return;
+        document.putUserData(SCHEDULED_STAMP_KEY, stamp);
+
+        ReadAction.nonBlocking(() -> {
+                    ContextIndex current = document.getUserData(INDEX_KEY);
+                    ContextIndex updated = refresh(project, document, current);
+                    // 写操作会先取消本任务，这里只防止与同一文档的另一次更新交错
+                    if (updated != null && updated != current && document.getUserData(INDEX_KEY) == current)
+                        document.putUserData(INDEX_KEY, updated);
+                    return updated;
+                })
+                .withDocumentsCommitted(project)
+                .coalesceBy(this, document)
+                .expireWith(project)
+                .expireWith(this)
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * 文档提交后更新索引，需在读操作中调用
+     * <p>
+     * 干净的索引直接沿用；有脏区时只扫描与脏区相交的 PSI 叶子，取其外层的注释/字符串元素，
+     * 并把范围扩展到这些元素以及与之相交的存活区间，直到不再变化，再拼接回索引。
+     * 编辑只会改变包含编辑位置的元素 (如输入 {@code /*} 后新注释一直延伸到下一个结束符)，
+     * 范围之外的元素文本与分类都不变。索引缺失、已失效或扩展后超过半个文档时全量构建。
+     */
+    @Nullable
+    ContextIndex refresh(Project project, Document document, @Nullable ContextIndex index) {
+        long stamp = document.getModificationStamp();
+        if (index == null || index.getStamp() != stamp)
+            return fullBuild(project, document);
+        if (!index.isDirty())
+            return index;
+
+        PsiFile file = PsiDocumentManager.getInstance(project).getPsiFile(document);
+        if (file == null)
+            return null;
+
+        CharSequence text = document.getImmutableCharSequence();
+        int from = Math.min(index.getDirtyStart(), text.length());
+        int to = Math.min(index.getDirtyEnd(), text.length());
+        for (int round = 0; round < MAX_WIDEN_ROUNDS; round++) {
+            List<PsiElement> elements = contextElementsIn(file, from, to);
+            int widenedFrom = from;
+            int widenedTo = to;
+            for (PsiElement element : elements) {
+                TextRange range = element.getTextRange();
+                widenedFrom = Math.min(widenedFrom, range.getStartOffset());
+                widenedTo = Math.max(widenedTo, range.getEndOffset());
+            }
+            int[] span = index.survivingSpan(widenedFrom, widenedTo);
+            if (span != null) {
+                widenedFrom = Math.min(widenedFrom, span[0]);
+                widenedTo = Math.max(widenedTo, span[1]);
+            }
+            if (widenedTo - widenedFrom > text.length() / 2)
+                break; // 结构性变化，逐段扩展不比全量遍历便宜
+
+            if (widenedFrom == from && widenedTo == to) {
+                ContextIndex.Builder builder = new ContextIndex.Builder(elements.size());
+                for (PsiElement element : elements) {
+                    add(builder, text, element);
+                }
+                incrementalUpdates.increment();
+                return index.splice(from, to, builder, stamp);
+            }
+            from = widenedFrom;
+            to = widenedTo;
+        }
+        return fullBuild(project, document);
+    }
+
+    @Nullable
+    private ContextIndex fullBuild(Project project, Document document) {
+        ContextIndex index = build(project, document);
+        if (index != null)
+            fullBuilds.increment();
+        return index;
+    }
+
+    /**
+     * 与 [from, to] 相交的最外层注释/字符串元素，按起始偏移递增
+     */
+    private static List<PsiElement> contextElementsIn(PsiFile file, int from, int to) {
+        List<PsiElement> elements = new ArrayList<>();
+        // 从前一个字符开始，紧贴脏区结束的元素 (如单行注释末尾继续输入) 也要重新扫描
+        PsiElement leaf = file.findElementAt(Math.max(from - 1, 0));
+        while (leaf != null && leaf.getTextRange().getStartOffset() <= to) {
+            ProgressManager.checkCanceled();
+            PsiElement outer = null;
+            for (PsiElement element = leaf; element != null && element != file; element = element.getParent()) {
+                if (element instanceof PsiComment || ContextDetector.isStringElement(element))
+                    outer = element;
+            }
+            if (outer == null) {
+                leaf = PsiTreeUtil.nextLeaf(leaf);
+            } else {
+                elements.add(outer);
+                leaf = PsiTreeUtil.nextLeaf(outer);
+            }
+        }
+        return elements;
+    }
+
+    private static void add(ContextIndex.Builder builder, CharSequence text, PsiElement element) {
+        TextRange range = element.getTextRange();
+        int s = range.getStartOffset();
+        int e = range.getEndOffset();
+        if (element instanceof PsiComment) {
+            builder.add(s, e, ContextDetector.classifyComment((PsiComment) element));
+        } else {
+            builder.add(s, e, ContextDetector.isConstant(text, s, e)
+                    ? ContextType.CONSTANT_LITERAL : ContextType.STRING_LITERAL);
+        }
+    }
+
+    /**
+     * 遍历 PSI 构建索引，需在读操作中调用
+     */
+    @Nullable
+    static ContextIndex build(Project project, Document document) {
+        PsiFile file = PsiDocumentManager.getInstance(project).getPsiFile(document);
+        if (file == null)
+            return null;
+
+        long start = System.nanoTime();
+        CharSequence text = document.getImmutableCharSequence();
+        ContextIndex.Builder builder = new ContextIndex.Builder();
+
+        // 深度优先 (前序) 遍历，遇到注释或字符串后不再深入，保证区间按起始偏移递增
+        PsiElement element = file.getFirstChild();
+        while (element != null) {
+            ProgressManager.checkCanceled();
+
+            boolean descend = true;
+            if (element instanceof PsiComment || ContextDetector.isStringElement(element)) {
+                add(builder, text, element);
+                descend = false;
+            }
+
+            PsiElement next = descend ? element.getFirstChild() : null;
+            if (next == null) {
+                while (element != null && element != file && element.getNextSibling() == null) {
+                    element = element.getParent();
+                }
+                next = element == null || element == file ? null : element.getNextSibling();
+            }
+            element = next;
+        }
+
+        ContextIndex index = builder.build(document.getModificationStamp());
+        LOG.debug("[SmartIM] 上下文索引构建完成: " + index.size() + " 个区间, 耗时 "
+                + (System.nanoTime() - start) / 1000 + "us");
+        return index;
+    }
+
+    /**
+     * 全量遍历 PSI 的次数
+     */
+    public long getFullBuildCount() {
+        return fullBuilds.sum();
+    }
+
+    /**
+     * 只重新扫描脏区的更新次数
+     */
+    public long getIncrementalUpdateCount() {
+        return incrementalUpdates.sum();
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
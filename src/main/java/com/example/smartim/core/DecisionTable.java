@@ -0,0 +1,395 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.lang.Language;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.CaretVisualAttributes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 编译后的切换决策表
+ * <p>
+ * 配置生效时把场景配置与自定义规则一次性解析为每种语言的 {@code EnumMap<ContextType, ResolvedTarget>}，
+ * 热路径只做枚举下标查找。
+ * <p>
+ * 自定义规则格式为每行 {@code 语言,场景,工具窗口=目标输入法}，{@code *} 或留空表示任意。
+ * 优先级固定：工具窗口 > 语言 > 场景，同等具体程度时先写的规则优先。
+ * 规则中出现的语言即使没有独立配置，也会以通用配置为底生成独立的决策表，使该规则对这种语言生效。
+ * <p>
+ * 工具窗口焦点规则格式为每行 {@code 工具窗口ID=目标输入法}，在工具窗口成为活动窗口时生效，
+ * 与编辑器所在的工具窗口无关。
+ */
+public final class DecisionTable {
+    private static final Logger LOG = Logger.getInstance(DecisionTable.class);
+
+    public static final String GENERAL = "general";
+    public static final String JAVA = "java";
+    public static final String KOTLIN = "kotlin";
+    public static final String PYTHON = "python";
+
+    private static final String WILDCARD = "*";
+
+    /**
+     * 单一语言的决策表
+     */
+    public static final class LanguageTable {
+        private final EnumMap<ContextType, ResolvedTarget> targets;
+        private final KeywordMatcher keywords;
+
+        LanguageTable(EnumMap<ContextType, ResolvedTarget> targets, KeywordMatcher keywords) {
+            this.targets = targets;
+            this.keywords = keywords;
+        }
+
+        public ResolvedTarget get(ContextType context) {
+            return targets.get(context);
+        }
+
+        public KeywordMatcher getKeywords() {
+            return keywords;
+        }
+    }
+
+    // 工具窗口规则：语言专属规则优先于任意语言
+    private static final class ToolWindowTable {
+        final EnumMap<ContextType, ResolvedTarget> anyLanguage = new EnumMap<>(ContextType.class);
+        final Map<String, EnumMap<ContextType, ResolvedTarget>> byLanguage = new HashMap<>();
+    }
+
+    private static final class Rule {
+        final String language;
+        final ContextType context;
+        final String toolWindow;
+        final ResolvedTarget target;
+        final int order;
+
+        Rule(String language, ContextType context, String toolWindow, ResolvedTarget target, int order) {
+            this.language = language;
+            this.context = context;
+            this.toolWindow = toolWindow;
+            this.target = target;
+            this.order = order;
+        }
+
+        int specificity() {
+            return (toolWindow != null ? 4 : 0) + (language != null ? 2 : 0) + (context != null ? 1 : 0);
+        }
+    }
+
+    private final Map<String, LanguageTable> languages;
+    private final LanguageTable general;
+    private final Map<String, ToolWindowTable> toolWindows;
+    private final Map<String, ResolvedTarget> toolWindowFocus;
+    private final ResolvedTarget chineseTarget;
+    private final ResolvedTarget englishTarget;
+    private final ResolvedTarget leaveTarget;
+
+    private DecisionTable(Map<String, LanguageTable> languages, Map<String, ToolWindowTable> toolWindows,
+                          Map<String, ResolvedTarget> toolWindowFocus, ResolvedTarget chineseTarget,
+                          ResolvedTarget englishTarget, ResolvedTarget leaveTarget) {
+        this.languages = languages;
+        this.general = languages.get(GENERAL);
+        this.toolWindows = toolWindows;
+        this.toolWindowFocus = toolWindowFocus;
+        this.chineseTarget = chineseTarget;
+        this.englishTarget = englishTarget;
+        this.leaveTarget = leaveTarget;
+    }
+
+    /**
+     * @param languageKey 语言键，未配置的语言使用通用配置
+     */
+    @NotNull
+    public LanguageTable forLanguage(@Nullable String languageKey) {
+        LanguageTable table = languageKey == null ? null : languages.get(languageKey);
+        return table != null ? table : general;
+    }
+
+    /**
+     * 是否存在该语言键的独立配置
+     */
+    public boolean hasLanguage(String languageKey) {
+        return !GENERAL.equals(languageKey) && languages.containsKey(languageKey);
+    }
+
+    /**
+     * 解析最终切换目标
+     *
+     * @param languageKey  语言键，用于匹配工具窗口下的语言专属规则
+     * @param toolWindowId 编辑器所在工具窗口，不在工具窗口中时为 {@code null}
+     */
+    @NotNull
+    public ResolvedTarget resolve(@NotNull LanguageTable language, @Nullable String languageKey,
+                                  @NotNull ContextType context, @Nullable String toolWindowId) {
+        if (toolWindowId != null && hasToolWindowRules()) {
+            ToolWindowTable table = toolWindows.get(toolWindowId);
+            if (table != null) {
+                EnumMap<ContextType, ResolvedTarget> specific = languageKey == null ? null : table.byLanguage.get(languageKey);
+                ResolvedTarget target = specific == null ? null : specific.get(context);
+                if (target == null)
+                    target = table.anyLanguage.get(context);
+                if (target != null)
+                    return target;
+            }
+        }
+        return language.get(context);
+    }
+
+    public boolean hasToolWindowRules() {
+        return !toolWindows.isEmpty();
+    }
+
+    /**
+     * 工具窗口成为活动窗口时的目标输入法
+     *
+     * @return 没有对应规则时返回 {@code null}
+     */
+    @Nullable
+    public ResolvedTarget forToolWindowFocus(@NotNull String toolWindowId) {
+        return toolWindowFocus.get(toolWindowId);
+    }
+
+    public ResolvedTarget getChineseTarget() {
+        return chineseTarget;
+    }
+
+    public ResolvedTarget getEnglishTarget() {
+        return englishTarget;
+    }
+
+    /**
+     * 离开 IDE 时的目标输入法
+     */
+    public ResolvedTarget getLeaveTarget() {
+        return leaveTarget;
+    }
+
+    /**
+     * 把当前配置编译为决策表
+     */
+    public static DecisionTable compile(SmartIMSettings.Options settings) {
+        Compiler compiler = new Compiler(settings);
+
+        List<Rule> rules = parseRules(settings.customRules, compiler::target, null);
+        // 先应用不够具体的规则，更具体的规则后写入从而覆盖
+        rules.sort(Comparator.comparingInt(Rule::specificity)
+                .thenComparing(Comparator.comparingInt((Rule r) -> r.order).reversed()));
+
+        Map<String, LanguageTable> languages = new HashMap<>();
+        languages.put(GENERAL, compiler.language(GENERAL, settings.generalSettings, rules));
+        languages.put(JAVA, compiler.language(JAVA, settings.javaSettings, rules));
+        languages.put(KOTLIN, compiler.language(KOTLIN, settings.kotlinSettings, rules));
+        languages.put(PYTHON, compiler.language(PYTHON, settings.pythonSettings, rules));
+        // 其他语言的独立配置，键为小写的语言 ID
+        for (Map.Entry<String, SmartIMSettings.ContextSettings> entry : settings.languageSettings.entrySet()) {
+            String key = entry.getKey().toLowerCase();
+            if (entry.getValue() != null && !GENERAL.equals(key))
+                languages.put(key, compiler.language(key, entry.getValue(), rules));
+        }
+        // 规则点名的语言没有独立配置时，以通用配置为底生成，否则规则会因语言键落到 GENERAL 而失效
+        for (Rule rule : rules) {
+            if (rule.language != null && !languages.containsKey(rule.language))
+                languages.put(rule.language, compiler.language(rule.language, settings.generalSettings, rules));
+        }
+
+        Map<String, ToolWindowTable> toolWindows = new HashMap<>();
+        for (Rule rule : rules) {
+            if (rule.toolWindow == null)
+                continue;
+            ToolWindowTable table = toolWindows.computeIfAbsent(rule.toolWindow, k -> new ToolWindowTable());
+            EnumMap<ContextType, ResolvedTarget> map = rule.language == null ? table.anyLanguage
+                    : table.byLanguage.computeIfAbsent(rule.language, k -> new EnumMap<>(ContextType.class));
+            put(map, rule);
+        }
+
+        return new DecisionTable(languages, toolWindows, compiler.parseToolWindowRules(settings.toolWindowRules),
+                compiler.chinese, compiler.english, compiler.target(settings.leaveIDEMode));
+    }
+
+    /**
+     * 检查自定义规则，返回每条有问题的规则及原因，用于在设置界面提示
+     * <p>
+     * 无法解析的行与未知场景的规则在编译时会被忽略；未知语言的规则仍会生效，但通常是语言 ID 拼写错误。
+     */
+    @NotNull
+    public static List<String> checkRules(@Nullable String text) {
+        List<String> problems = new ArrayList<>();
+        List<Rule> rules = parseRules(text, value -> ResolvedTarget.KEEP, problems);
+
+        Set<String> known = new HashSet<>();
+        for (Language language : Language.getRegisteredLanguages()) {
+            known.add(language.getID().toLowerCase());
+        }
+        for (Rule rule : rules) {
+            if (rule.language != null && !known.contains(rule.language))
+                problems.add("第 " + (rule.order + 1) + " 行：未知语言 " + rule.language);
+        }
+        return problems;
+    }
+
+    /**
+     * @param problems 收集被忽略的规则，为 {@code null} 时只记录日志
+     */
+    private static List<Rule> parseRules(@Nullable String text, Function<String, ResolvedTarget> targets,
+                                         @Nullable List<String> problems) {
+        List<Rule> rules = new ArrayList<>();
+        if (text == null || text.isBlank())
+            return rules;
+
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            int eq = line.indexOf('=');
+            String[] keys = eq < 0 ? new String[0] : line.substring(0, eq).split(",", -1);
+            if (keys.length != 3) {
+                report(problems, "第 " + (i + 1) + " 行：无法解析，格式应为 语言,场景,工具窗口=目标输入法", line);
+                continue;
+            }
+
+            ContextType context = null;
+            String contextKey = wildcard(keys[1]);
+            if (contextKey != null) {
+                try {
+                    context = ContextType.valueOf(contextKey.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    report(problems, "第 " + (i + 1) + " 行：未知场景 " + contextKey, line);
+                    continue;
+                }
+            }
+
+            String language = wildcard(keys[0]);
+            rules.add(new Rule(language == null ? null : language.toLowerCase(), context, wildcard(keys[2]),
+                    targets.apply(line.substring(eq + 1).trim()), i));
+        }
+        return rules;
+    }
+
+    private static void report(@Nullable List<String> problems, String problem, String line) {
+        if (problems != null) {
+            problems.add(problem);
+        } else {
+            LOG.warn("[SmartIM] 忽略自定义规则 (" + problem + "): " + line);
+        }
+    }
+
+    private static String wildcard(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() || WILDCARD.equals(trimmed) ? null : trimmed;
+    }
+
+    private static void put(EnumMap<ContextType, ResolvedTarget> map, Rule rule) {
+        if (rule.context != null) {
+            map.put(rule.context, rule.target);
+        } else {
+            for (ContextType type : ContextType.values()) {
+                map.put(type, rule.target);
+            }
+        }
+    }
+
+    private static final class Compiler {
+        private final SmartIMSettings.Options settings;
+        private final CaretVisualAttributes chineseCaret;
+        private final CaretVisualAttributes englishCaret;
+        // 同名目标共享同一实例，原生句柄只需解析一次
+        private final Map<String, ResolvedTarget> targets = new HashMap<>();
+        final ResolvedTarget chinese;
+        final ResolvedTarget english;
+
+        Compiler(SmartIMSettings.Options settings) {
+            this.settings = settings;
+            this.chineseCaret = caret(settings.chineseCursorColor);
+            this.englishCaret = caret(settings.englishCursorColor);
+            this.chinese = named(settings.chineseIMName);
+            this.english = named(settings.englishIMName);
+        }
+
+        LanguageTable language(String key, SmartIMSettings.ContextSettings s, List<Rule> rules) {
+            EnumMap<ContextType, ResolvedTarget> map = new EnumMap<>(ContextType.class);
+            map.put(ContextType.CODE, english);
+            map.put(ContextType.CHINESE_KEYWORD, chinese);
+            map.put(ContextType.GIT_COMMIT, chinese);
+            map.put(ContextType.STRING_LITERAL, target(s.stringLiteral));
+            map.put(ContextType.CONSTANT_LITERAL, target(s.constantLiteral));
+            map.put(ContextType.SINGLE_LINE_COMMENT, target(s.singleComment));
+            map.put(ContextType.MULTI_LINE_COMMENT, target(s.multiComment));
+            map.put(ContextType.DOC_COMMENT, target(s.docComment));
+
+            for (Rule rule : rules) {
+                if (rule.toolWindow == null && (rule.language == null || rule.language.equals(key)))
+                    put(map, rule);
+            }
+            return new LanguageTable(map, KeywordMatcher.compile(s.customKeywords));
+        }
+
+        /**
+         * 解析配置值：默认中文 / 默认英文 / 保持现状 或具体输入法 ID
+         */
+        ResolvedTarget target(@Nullable String value) {
+            if (value == null || value.isEmpty() || "保持现状".equals(value))
+                return ResolvedTarget.KEEP;
+            if ("默认中文".equals(value) || "中文".equals(value))
+                return chinese;
+            if ("默认英文".equals(value) || "英文".equals(value))
+                return english;
+            return named(value);
+        }
+
+        private ResolvedTarget named(@Nullable String name) {
+            if (name == null || name.isEmpty())
+                return ResolvedTarget.KEEP;
+            return targets.computeIfAbsent(name, n -> {
+                boolean isChinese = n.equals(settings.chineseIMName) || n.contains("拼音") || n.contains("输入法")
+                        || n.contains("Pinyin");
+                return new ResolvedTarget(n, isChinese, isChinese ? chineseCaret : englishCaret);
+            });
+        }
+
+        Map<String, ResolvedTarget> parseToolWindowRules(@Nullable String text) {
+            Map<String, ResolvedTarget> rules = new HashMap<>();
+            if (text == null || text.isBlank())
+                return rules;
+
+            for (String raw : text.split("\n")) {
+                String line = raw.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                int eq = line.indexOf('=');
+                String id = eq < 0 ? "" : line.substring(0, eq).trim();
+                if (id.isEmpty()) {
+                    LOG.warn("[SmartIM] 忽略无法解析的工具窗口规则: " + line);
+                    continue;
+                }
+                // 同一工具窗口先写的规则优先
+                rules.putIfAbsent(id, target(line.substring(eq + 1).trim()));
+            }
+            return rules;
+        }
+
+        private static CaretVisualAttributes caret(String hex) {
+            try {
+                return new CaretVisualAttributes(Color.decode(hex), CaretVisualAttributes.Weight.NORMAL);
+            } catch (Exception e) {
+                LOG.warn("[SmartIM] 光标颜色解析失败: " + hex);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.smartim.core;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorKind;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 编辑器分类：在编辑器创建时一次性决定其进入哪种处理模式
+ * <p>
+ * 控制台、预览、只读查看器、搜索框等无法受益的编辑器直接跳过，不注册光标监听器；
+ * 提交信息编辑器固定到提交场景的输入法，获得焦点时切换一次，不做上下文检测。
+ */
+public final class EditorClassifier {
+
+    public enum Mode {
+        // 不注册任何监听器
+        SKIP,
+        // 固定为提交场景，仅在获得焦点时切换
+        PINNED,
+        // 完整的光标检测流程
+        FULL
+    }
+
+    // 版本控制插件把提交面板挂在提交信息文档的该 key 上，插件未加载时 key 不存在
+    private static final String COMMIT_MESSAGE_KEY_NAME = "Vcs.CommitMessage.Panel";
+    private static volatile Key<?> commitMessageKey;
+
+    private EditorClassifier() {
+    }
+
+    @NotNull
+    public static Mode classify(@NotNull Editor editor, @NotNull Filter filter) {
+        if (isCommitMessageEditor(editor))
+            return Mode.PINNED;
+
+        EditorKind kind = editor.getEditorKind();
+        Document document = editor.getDocument();
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        String extension = file == null ? null : file.getExtension();
+
+        // 白名单优先于黑名单与下面的默认规则
+        if (filter.allows(kind, extension))
+            return Mode.FULL;
+        if (filter.denies(kind, extension))
+            return Mode.SKIP;
+
+        if (editor.getProject() == null || editor.isViewer())
+            return Mode.SKIP;
+        // 主编辑器中的只读文件可能稍后变为可写 (如版本控制检出)，其余只读编辑器直接跳过
+        if (kind != EditorKind.MAIN_EDITOR && !document.isWritable())
+            return Mode.SKIP;
+        return Mode.FULL;
+    }
+
+    /**
+     * 是否为版本控制的提交信息编辑器
+     * <p>
+     * 只在编辑器创建时 (经由 {@link #classify}) 调用，不在光标事件路径上：插件加载前 key 不存在，
+     * 未找到时不缓存，每次都要按名称查找一次。
+     */
+    public static boolean isCommitMessageEditor(@NotNull Editor editor) {
+        Key<?> key = commitMessageKey;
+        if (key == null) {
+            key = Key.findKeyByName(COMMIT_MESSAGE_KEY_NAME);
+            commitMessageKey = key;
+        }
+        if (key != null && editor.getDocument().getUserData(key) != null)
+            return true;
+
+        String name = editor.getClass().getName();
+        return name.contains("Commit") || name.contains("Checkin");
+    }
+
+    /**
+     * 编译后的白名单/黑名单
+     * <p>
+     * 条目以分号分隔，可以是 {@link EditorKind} 名称 (如 {@code CONSOLE})，或 {@code *.扩展名} 形式的文件扩展名。
+     */
+    public static final class Filter {
+
+        public static final Filter EMPTY = new Filter(EnumSet.noneOf(EditorKind.class), new HashSet<>(),
+                EnumSet.noneOf(EditorKind.class), new HashSet<>());
+
+        private final Set<EditorKind> allowedKinds;
+        private final Set<String> allowedExtensions;
+        private final Set<EditorKind> deniedKinds;
+        private final Set<String> deniedExtensions;
+
+        private Filter(Set<EditorKind> allowedKinds, Set<String> allowedExtensions,
+                       Set<EditorKind> deniedKinds, Set<String> deniedExtensions) {
+            this.allowedKinds = allowedKinds;
+            this.allowedExtensions = allowedExtensions;
+            this.deniedKinds = deniedKinds;
+            this.deniedExtensions = deniedExtensions;
+        }
+
+        public static Filter compile(@Nullable String allowList, @Nullable String denyList) {
+            Set<EditorKind> allowedKinds = EnumSet.noneOf(EditorKind.class);
+            Set<String> allowedExtensions = new HashSet<>();
+            Set<EditorKind> deniedKinds = EnumSet.noneOf(EditorKind.class);
+            Set<String> deniedExtensions = new HashSet<>();
+            parse(allowList, allowedKinds, allowedExtensions);
+            parse(denyList, deniedKinds, deniedExtensions);
+            return new Filter(allowedKinds, allowedExtensions, deniedKinds, deniedExtensions);
+        }
+
+        boolean allows(EditorKind kind, @Nullable String extension) {
+            return allowedKinds.contains(kind) || matches(allowedExtensions, extension);
+        }
+
+        boolean denies(EditorKind kind, @Nullable String extension) {
+            return deniedKinds.contains(kind) || matches(deniedExtensions, extension);
+        }
+
+        private static boolean matches(Set<String> extensions, @Nullable String extension) {
+            return extension != null && !extensions.isEmpty() && extensions.contains(extension.toLowerCase(Locale.ROOT));
+        }
+
+        private static void parse(@Nullable String list, Set<EditorKind> kinds, Set<String> extensions) {
+            if (list == null || list.isBlank())
+                return;
+            for (String entry : list.split(";")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty())
+                    continue;
+                if (trimmed.startsWith("*.")) {
+                    extensions.add(trimmed.substring(2).toLowerCase(Locale.ROOT));
+                    continue;
+                }
+                try {
+                    kinds.add(EditorKind.valueOf(trimmed.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException ignored) {
+                    // 未知类型直接忽略
+                }
+            }
+        }
+    }
+}
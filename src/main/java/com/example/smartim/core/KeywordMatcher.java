@@ -0,0 +1,297 @@
+package com.example.smartim.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 自定义关键词匹配器
+ * <p>
+ * 关键词在配置生效时编译一次：普通关键词构建 Aho-Corasick 自动机，
+ * 在文档的 {@link CharSequence} 上原地单趟扫描，不复制子串。
+ * <p>
+ * 关键词以分号分隔，支持两种前缀：
+ * <ul>
+ *     <li>{@code re:} 正则表达式</li>
+ *     <li>{@code word:} 整词匹配 (前后不能是字母、数字或下划线)</li>
+ * </ul>
+ */
+public final class KeywordMatcher {
+    private static final Logger LOG = Logger.getInstance(KeywordMatcher.class);
+
+    public static final KeywordMatcher EMPTY = new KeywordMatcher(new int[1][], new int[1], new int[1],
+            new boolean[1], new boolean[1], new Pattern[0]);
+
+    private static final String REGEX_PREFIX = "re:";
+    private static final String WORD_PREFIX = "word:";
+
+    // 自动机：goto 表按状态存储有序的 (字符, 目标状态) 对
+    private final int[][] transitions;
+    private final int[] failure;
+    // 到达该状态时命中的最短整词关键词长度，0 表示无整词关键词
+    private final int[] wordLength;
+    // 失败链上是否存在整词关键词
+    private final boolean[] wordInChain;
+    // 到达该状态时是否命中普通关键词 (含失败链)
+    private final boolean[] accept;
+    private final Pattern[] patterns;
+
+    private KeywordMatcher(int[][] transitions, int[] failure, int[] wordLength, boolean[] wordInChain,
+                           boolean[] accept, Pattern[] patterns) {
+        this.transitions = transitions;
+        this.failure = failure;
+        this.wordLength = wordLength;
+        this.wordInChain = wordInChain;
+        this.accept = accept;
+        this.patterns = patterns;
+    }
+
+    public boolean isEmpty() {
+        return transitions.length == 1 && patterns.length == 0;
+    }
+
+    /**
+     * 判断 {@code text[start, end)} 中是否包含任一关键词
+     */
+    public boolean matches(CharSequence text, int start, int end) {
+        if (transitions.length > 1 && scan(text, start, end))
+            return true;
+        if (patterns.length > 0) {
+            CharSequence region = new Region(text, start, end);
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(region).find())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean scan(CharSequence text, int start, int end) {
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = Math.max(next, 0);
+
+            if (accept[state])
+                return true;
+            if (wordInChain[state] && isWholeWord(text, start, end, i, state))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isWholeWord(CharSequence text, int start, int end, int last, int state) {
+        if (last + 1 < end && isWordChar(text.charAt(last + 1)))
+            return false;
+        // 沿失败链检查所有以当前位置结尾的整词关键词
+        for (int s = state; s != 0; s = failure[s]) {
+            int length = wordLength[s];
+            if (length == 0)
+                continue;
+            int first = last - length + 1;
+            if (first <= start || !isWordChar(text.charAt(first - 1)))
+                return true;
+        }
+        return false;
+    }
+
+    private int next(int state, char c) {
+        int[] row = transitions[state];
+        if (row == null)
+            return -1;
+        // row 为 [c0, s0, c1, s1, ...] 且按字符有序
+        int lo = 0;
+        int hi = row.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int key = row[mid * 2];
+            if (key < c) {
+                lo = mid + 1;
+            } else if (key > c) {
+                hi = mid - 1;
+            } else {
+                return row[mid * 2 + 1];
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * 编译分号分隔的关键词列表，无效的正则被忽略并记录日志
+     */
+    public static KeywordMatcher compile(@Nullable String keywords) {
+        return compile(keywords, null);
+    }
+
+    /**
+     * 检查关键词列表，返回每个被忽略的无效正则及原因，用于在设置界面提示
+     */
+    @NotNull
+    public static List<String> checkKeywords(@Nullable String keywords) {
+        List<String> problems = new ArrayList<>();
+        compile(keywords, problems);
+        return problems;
+    }
+
+    /**
+     * @param problems 收集被忽略的无效正则，为 {@code null} 时只记录日志
+     */
+    public static KeywordMatcher compile(@Nullable String keywords, @Nullable List<String> problems) {
+        if (keywords == null || keywords.isBlank())
+            return EMPTY;
+
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        trie.add(new HashMap<>());
+        List<Integer> words = new ArrayList<>();
+        words.add(0);
+        List<Boolean> plains = new ArrayList<>();
+        plains.add(false);
+        List<Pattern> patterns = new ArrayList<>();
+
+        for (String keyword : keywords.split(";")) {
+            String trimmed = keyword.trim();
+            if (trimmed.isEmpty())
+                continue;
+
+            if (trimmed.startsWith(REGEX_PREFIX)) {
+                String regex = trimmed.substring(REGEX_PREFIX.length());
+                try {
+                    patterns.add(Pattern.compile(regex));
+                } catch (PatternSyntaxException e) {
+                    String problem = "无效正则 " + regex + "：" + e.getDescription();
+                    if (problems != null) {
+                        problems.add(problem);
+                    } else {
+                        LOG.warn("[SmartIM] 忽略自定义关键词 (" + problem + ")");
+                    }
+                }
+                continue;
+            }
+
+            boolean whole = trimmed.startsWith(WORD_PREFIX);
+            String text = whole ? trimmed.substring(WORD_PREFIX.length()).trim() : trimmed;
+            if (text.isEmpty())
+                continue;
+
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                Integer next = trie.get(state).get(text.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    words.add(0);
+                    plains.add(false);
+                    trie.get(state).put(text.charAt(i), next);
+                }
+                state = next;
+            }
+            if (whole) {
+                words.set(state, words.get(state) == 0 ? text.length() : Math.min(words.get(state), text.length()));
+            } else {
+                plains.set(state, true);
+            }
+        }
+
+        int size = trie.size();
+        int[][] transitions = new int[size][];
+        int[] failure = new int[size];
+        int[] wordLength = new int[size];
+        boolean[] wordInChain = new boolean[size];
+        boolean[] accept = new boolean[size];
+
+        for (int s = 0; s < size; s++) {
+            Map<Character, Integer> edges = trie.get(s);
+            wordLength[s] = words.get(s);
+            wordInChain[s] = wordLength[s] > 0;
+            accept[s] = plains.get(s);
+            if (edges.isEmpty())
+                continue;
+            Character[] keys = edges.keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            int[] row = new int[keys.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                row[i * 2] = keys[i];
+                row[i * 2 + 1] = edges.get(keys[i]);
+            }
+            transitions[s] = row;
+        }
+
+        // 广度优先计算失败指针，并把普通关键词的命中沿失败链向下传播
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : trie.get(0).values()) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                int child = edge.getValue();
+                int f = failure[s];
+                Integer target;
+                while ((target = trie.get(f).get(edge.getKey())) == null && f != 0) {
+                    f = failure[f];
+                }
+                failure[child] = target != null && target != child ? target : 0;
+                accept[child] |= accept[failure[child]];
+                wordInChain[child] |= wordInChain[failure[child]];
+                queue.add(child);
+            }
+        }
+
+        return new KeywordMatcher(transitions, failure, wordLength, wordInChain, accept,
+                patterns.toArray(new Pattern[0]));
+    }
+
+    /**
+     * 文档片段视图，供正则直接在原字符序列上匹配
+     */
+    private static final class Region implements CharSequence {
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+
+        Region(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new Region(text, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.smartim.core;
+
+import com.intellij.lang.Language;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileTypes.FileTypeEvent;
+import com.intellij.openapi.fileTypes.FileTypeListener;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 语言到场景配置的解析与缓存
+ * <p>
+ * 任意 {@link Language} 沿 {@link Language#getBaseLanguage()} 向上查找第一个有独立配置的语言，
+ * 找不到时使用通用配置。结果按编辑器缓存，文件类型变化、文件重命名或配置变更时失效；
+ * PSI 文件尚不可用时 (如文档刚打开) 只返回通用配置而不缓存，下次调用重新查找。
+ */
+public final class LanguageSettingsRegistry implements Disposable {
+
+    private static final Key<EditorLanguage> EDITOR_LANGUAGE_KEY = Key.create("SmartIM.EditorLanguage");
+
+    private static final class EditorLanguage {
+        final Language language;
+        final String key;
+        final int generation;
+        final DecisionTable table;
+
+        EditorLanguage(Language language, String key, int generation, DecisionTable table) {
+            this.language = language;
+            this.key = key;
+            this.generation = generation;
+            this.table = table;
+        }
+    }
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public LanguageSettingsRegistry() {
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(FileTypeManager.TOPIC, new FileTypeListener() {
+            @Override
+            public void fileTypesChanged(@NotNull FileTypeEvent event) {
+                invalidate();
+            }
+        });
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    // 重命名可能改变扩展名从而改变语言
+                    if (event instanceof VFilePropertyChangeEvent
+                            && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                        invalidate();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    public static LanguageSettingsRegistry getInstance() {
+        return ApplicationManager.getApplication().getService(LanguageSettingsRegistry.class);
+    }
+
+    /**
+     * 返回编辑器对应的决策表语言键，命中缓存时不访问 PSI
+     */
+    @NotNull
+    public String getLanguageKey(@NotNull Editor editor, @NotNull DecisionTable table) {
+        int current = generation.get();
+        EditorLanguage cached = editor.getUserData(EDITOR_LANGUAGE_KEY);
+        if (cached != null && cached.generation == current) {
+            if (cached.table == table)
+                return cached.key;
+            // 仅配置变化：语言不变，重新映射即可
+            String key = resolveKey(cached.language, table);
+            editor.putUserData(EDITOR_LANGUAGE_KEY, new EditorLanguage(cached.language, key, current, table));
+            return key;
+        }
+
+        Language language = findLanguage(editor);
+        if (language == null)
+            return DecisionTable.GENERAL;
+        String key = resolveKey(language, table);
+        editor.putUserData(EDITOR_LANGUAGE_KEY, new EditorLanguage(language, key, current, table));
+        return key;
+    }
+
+    /**
+     * 沿基础语言链查找第一个有独立配置的语言，语言键为小写的语言 ID
+     */
+    @NotNull
+    public static String resolveKey(@Nullable Language language, @NotNull DecisionTable table) {
+        for (Language l = language; l != null; l = l.getBaseLanguage()) {
+            String id = l.getID().toLowerCase();
+            if (table.hasLanguage(id))
+                return id;
+        }
+        return DecisionTable.GENERAL;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    @Nullable
+    private static Language findLanguage(Editor editor) {
+        Project project = editor.getProject();
+        if (project == null)
+            return null;
+        PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(editor.getDocument());
+        return psiFile == null ? null : psiFile.getLanguage();
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
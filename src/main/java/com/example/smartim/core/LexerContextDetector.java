@@ -0,0 +1,142 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.lang.ParserDefinition;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于编辑器高亮器 token 流的上下文判断
+ * <p>
+ * 高亮器随文档同步增量重新词法分析，输入过程中无需等待 PSI 提交即可判断注释/字符串。
+ */
+final class LexerContextDetector {
+
+    private static final class TokenSets {
+        final TokenSet comments;
+        final TokenSet strings;
+
+        TokenSets(TokenSet comments, TokenSet strings) {
+            this.comments = comments;
+            this.strings = strings;
+        }
+    }
+
+    private static final TokenSets EMPTY = new TokenSets(TokenSet.EMPTY, TokenSet.EMPTY);
+    private static final Map<Language, TokenSets> TOKEN_SETS = new ConcurrentHashMap<>();
+
+    private LexerContextDetector() {
+    }
+
+    /**
+     * 判断结果
+     */
+    static final class Result {
+        final ContextType type;
+        // token 是注释但名称不足以区分种类
+        final boolean ambiguousComment;
+
+        private Result(ContextType type, boolean ambiguousComment) {
+            this.type = type;
+            this.ambiguousComment = ambiguousComment;
+        }
+    }
+
+    private static final Result CODE = new Result(ContextType.CODE, false);
+    private static final Result STRING = new Result(ContextType.STRING_LITERAL, false);
+    private static final Result CONSTANT = new Result(ContextType.CONSTANT_LITERAL, false);
+    private static final Result SINGLE = new Result(ContextType.SINGLE_LINE_COMMENT, false);
+    private static final Result MULTI = new Result(ContextType.MULTI_LINE_COMMENT, false);
+    private static final Result DOC = new Result(ContextType.DOC_COMMENT, false);
+    private static final Result AMBIGUOUS_SINGLE = new Result(ContextType.SINGLE_LINE_COMMENT, true);
+    private static final Result AMBIGUOUS_MULTI = new Result(ContextType.MULTI_LINE_COMMENT, true);
+
+    /**
+     * @return 判断结果；编辑器没有可用高亮器时返回 {@code null}
+     */
+    @Nullable
+    static Result detect(Editor editor, int offset) {
+        if (!(editor instanceof EditorEx))
+            return null;
+
+        CharSequence text = editor.getDocument().getImmutableCharSequence();
+        int length = text.length();
+        if (length == 0)
+            return CODE;
+
+        HighlighterIterator iterator = ((EditorEx) editor).getHighlighter().createIterator(Math.min(offset, length - 1));
+        if (iterator.atEnd())
+            return null;
+
+        Result result = classify(iterator, text);
+        if (result != CODE)
+            return result;
+
+        // 光标停在单行注释末尾 (换行符之前) 时仍视为在注释中
+        if (offset > 0 && iterator.getStart() == offset) {
+            iterator.retreat();
+            if (!iterator.atEnd() && iterator.getEnd() == offset) {
+                Result previous = classify(iterator, text);
+                if (previous.type == ContextType.SINGLE_LINE_COMMENT)
+                    return previous;
+            }
+        }
+        return CODE;
+    }
+
+    private static Result classify(HighlighterIterator iterator, CharSequence text) {
+        IElementType tokenType = iterator.getTokenType();
+        if (tokenType == null)
+            return CODE;
+
+        TokenSets sets = tokenSets(tokenType.getLanguage());
+        String name = tokenType.toString();
+        int start = iterator.getStart();
+        int end = iterator.getEnd();
+
+        if (sets.comments.contains(tokenType) || name.contains("COMMENT") || name.startsWith("DOC_")) {
+            if (name.contains("DOC"))
+                return DOC;
+            if (name.contains("BLOCK") || name.contains("MULTI"))
+                return MULTI;
+            if (name.contains("END_OF_LINE") || name.contains("EOL") || name.contains("LINE_COMMENT"))
+                return SINGLE;
+            // 名称无法区分时按是否跨行粗略判断，并交由 PSI 细分
+            return containsLineBreak(text, start, end) ? AMBIGUOUS_MULTI : AMBIGUOUS_SINGLE;
+        }
+
+        if (sets.strings.contains(tokenType) || name.contains("STRING") || name.contains("TEXT_BLOCK")
+                || name.contains("QUOTE")) {
+            return ContextDetector.isConstant(text, start, end) ? CONSTANT : STRING;
+        }
+        return CODE;
+    }
+
+    private static TokenSets tokenSets(@Nullable Language language) {
+        if (language == null)
+            return EMPTY;
+        return TOKEN_SETS.computeIfAbsent(language, l -> {
+            ParserDefinition definition = LanguageParserDefinitions.INSTANCE.forLanguage(l);
+            if (definition == null)
+                return EMPTY;
+            return new TokenSets(definition.getCommentTokens(), definition.getStringLiteralElements());
+        });
+    }
+
+    private static boolean containsLineBreak(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n')
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.smartim.core;
+
+import com.intellij.openapi.editor.CaretVisualAttributes;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 预先解析好的切换目标：输入法名称与光标样式 (不可变)
+ * <p>
+ * 由 {@link DecisionTable} 在配置生效时创建，热路径上直接使用，不再做字符串比较。
+ * 原生句柄由输入法服务按目标另行缓存。
+ */
+public final class ResolvedTarget {
+
+    /**
+     * 保持现状：不切换、不改光标
+     */
+    public static final ResolvedTarget KEEP = new ResolvedTarget(null, false, null);
+
+    private final String imName;
+    private final boolean chinese;
+    private final CaretVisualAttributes caretAttributes;
+
+    ResolvedTarget(@Nullable String imName, boolean chinese, @Nullable CaretVisualAttributes caretAttributes) {
+        this.imName = imName;
+        this.chinese = chinese;
+        this.caretAttributes = caretAttributes;
+    }
+
+    public boolean isKeep() {
+        return imName == null;
+    }
+
+    @Nullable
+    public String getImName() {
+        return imName;
+    }
+
+    public boolean isChinese() {
+        return chinese;
+    }
+
+    /**
+     * @return 光标样式；为 {@code null} 时不修改光标
+     */
+    @Nullable
+    public CaretVisualAttributes getCaretAttributes() {
+        return caretAttributes;
+    }
+
+    @Override
+    public String toString() {
+        return isKeep() ? "保持现状" : imName;
+    }
+}
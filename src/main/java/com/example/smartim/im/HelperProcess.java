@@ -0,0 +1,223 @@
+package com.example.smartim.im;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻辅助进程：通过 stdin/stdout 上的行协议收发请求
+ * <p>
+ * 请求为 {@code <id> <命令> [参数]}，响应为 {@code <id> <结果>}，按 id 匹配，
+ * 因此多个请求可以同时在途 (pipelining)。进程退出或请求超时后自动重启，
+ * 在 {@link #RESTART_WINDOW_MS} 内最多重启 {@link #MAX_RESTARTS} 次，避免反复崩溃时空转。
+ * <p>
+ * 请求未能写入进程时以 {@link NotDeliveredException} 失败，调用方可以安全地改用其他方式重做；
+ * 超时或写入后进程退出时对方可能已经执行了请求，以普通 {@link IOException} 失败。
+ */
+public class HelperProcess implements Disposable {
+    private static final Logger LOG = Logger.getInstance(HelperProcess.class);
+
+    /**
+     * 请求没有送达辅助进程 (进程无法启动或写入失败)，对方一定没有执行
+     */
+    public static class NotDeliveredException extends IOException {
+        NotDeliveredException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    private static final int MAX_RESTARTS = 3;
+    private static final long RESTART_WINDOW_MS = 60_000;
+
+    /**
+     * 一次进程运行期间的状态，请求只会被发出它的那个进程完成或失败
+     */
+    private static final class Session {
+        final Process process;
+        final Writer writer;
+        final Map<Long, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+        Session(Process process) {
+            this.process = process;
+            this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void fail(IOException error) {
+            for (Long id : pending.keySet()) {
+                CompletableFuture<String> future = pending.remove(id);
+                if (future != null)
+                    future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private final List<String> command;
+    private final long timeoutMs;
+    private final AtomicLong nextId = new AtomicLong();
+
+    // 以下字段由 this 保护
+    private Session session;
+    private final ArrayDeque<Long> starts = new ArrayDeque<>();
+    private boolean disposed = false;
+
+    public HelperProcess(List<String> command, long timeoutMs) {
+        this.command = List.copyOf(command);
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 异步发送请求，超时或进程退出时以异常结束
+     *
+     * @param argument 不得包含换行
+     * @return 响应中 id 之后的部分
+     */
+    public CompletableFuture<String> send(String name, String argument) {
+        long id = nextId.incrementAndGet();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            synchronized (this) {
+                Session current = ensureStarted();
+                current.pending.put(id, future);
+                future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((reply, error) -> {
+                    current.pending.remove(id);
+                    if (error instanceof TimeoutException) {
+                        LOG.warn("[SmartIM] 辅助进程响应超时，重启进程");
+                        restart(current);
+                    }
+                });
+                current.writer.write(id + " " + name + (argument == null ? "" : " " + argument) + "\n");
+                current.writer.flush();
+            }
+        } catch (IOException e) {
+            future.completeExceptionally(new NotDeliveredException(e));
+        }
+        return future;
+    }
+
+    /**
+     * 同步发送请求
+     *
+     * @throws NotDeliveredException 请求没有送达
+     * @throws IOException           超时或进程在响应前退出，请求可能已被执行
+     */
+    public String request(String name, String argument) throws IOException {
+        try {
+            return send(name, argument).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof TimeoutException)
+                throw new IOException("辅助进程响应超时 (" + timeoutMs + "ms)");
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 提前启动进程，失败时仅记录日志，下次请求时再试
+     */
+    public synchronized void start() {
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            LOG.warn("[SmartIM] 无法启动辅助进程: " + e.getMessage());
+        }
+    }
+
+    public synchronized boolean isAlive() {
+        return session != null && session.process.isAlive();
+    }
+
+    private Session ensureStarted() throws IOException {
+        if (session != null && session.process.isAlive())
+            return session;
+        if (disposed)
+            throw new IOException("辅助进程已关闭");
+
+        long now = System.currentTimeMillis();
+        while (!starts.isEmpty() && now - starts.peekFirst() > RESTART_WINDOW_MS) {
+            starts.pollFirst();
+        }
+        if (starts.size() > MAX_RESTARTS)
+            throw new IOException("辅助进程频繁退出，暂停重启");
+        starts.addLast(now);
+
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        Session started = new Session(process);
+        session = started;
+        AppExecutorUtil.getAppExecutorService().execute(() -> readLoop(started));
+        LOG.debug("[SmartIM] 辅助进程已启动: " + command);
+        return started;
+    }
+
+    private void readLoop(Session owner) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(owner.process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                try {
+                    long id = Long.parseLong(space < 0 ? line : line.substring(0, space));
+                    CompletableFuture<String> future = owner.pending.remove(id);
+                    if (future != null)
+                        future.complete(space < 0 ? "" : line.substring(space + 1));
+                } catch (NumberFormatException e) {
+                    LOG.debug("[SmartIM] 忽略辅助进程输出: " + line);
+                }
+            }
+        } catch (IOException ignored) {
+            // 进程被销毁
+        }
+
+        synchronized (this) {
+            if (session == owner)
+                session = null;
+        }
+        owner.fail(new IOException("辅助进程已退出"));
+    }
+
+    private void restart(Session owner) {
+        synchronized (this) {
+            if (session == owner)
+                session = null;
+        }
+        owner.process.destroy();
+    }
+
+    @Override
+    public void dispose() {
+        Session current;
+        synchronized (this) {
+            disposed = true;
+            current = session;
+            session = null;
+        }
+        if (current != null) {
+            current.process.destroy();
+            current.fail(new IOException("辅助进程已关闭"));
+        }
+    }
+}
@@ -1,18 +1,35 @@
 package com.example.smartim.im;
 
+import com.example.smartim.core.ResolvedTarget;
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 输入法切换服务接口
+ * <p>
+ * 作为应用级服务注册，所有监听器与设置页共享同一实例及其状态。
  */
 public interface InputMethodService {
+
+    static InputMethodService getInstance() {
+        return ApplicationManager.getApplication().getService(InputMethodService.class);
+    }
+
     /**
-     * 切换到中文输入法撒
+     * 切换到中文输入法
+     *
+     * @return 是否切换成功
      */
-    void switchToNative();
+    boolean switchToNative();
 
     /**
      * 切换到英文输入法
+     *
+     * @return 是否切换成功
      */
-    void switchToEnglish();
+    boolean switchToEnglish();
 
     /**
      * 根据名称切换输入法
@@ -20,7 +37,28 @@ public interface InputMethodService {
     boolean switchByName(String name);
 
     /**
-     * 当前是否为中文输入法（可选实现）
+     * 切换到预先解析的目标，实现方可利用目标上缓存的原生句柄
+     */
+    default boolean switchTo(ResolvedTarget target) {
+        return target.isKeep() || switchByName(target.getImName());
+    }
+
+    /**
+     * 当前是否为中文输入法（读取系统实际状态）
      */
     boolean isChinese();
+
+    /**
+     * 读取系统当前输入法 ID，并同步到服务内部状态
+     */
+    default String getCurrentInputMethod() {
+        return null;
+    }
+
+    /**
+     * 系统已安装的键盘输入法 ID 列表
+     */
+    default List<String> getInstalledInputMethods() {
+        return Collections.emptyList();
+    }
 }
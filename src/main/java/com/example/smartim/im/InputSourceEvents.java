@@ -0,0 +1,28 @@
+package com.example.smartim.im;
+
+import com.intellij.openapi.Disposable;
+
+/**
+ * 系统输入源变化事件源
+ * <p>
+ * 与具体通知机制解耦，便于用模拟事件流驱动缓存一致性逻辑。
+ */
+public interface InputSourceEvents {
+
+    interface Listener {
+        /**
+         * 当前选中的输入源发生变化 (包括用户通过快捷键或菜单栏手动切换)
+         */
+        void selectedSourceChanged();
+
+        /**
+         * 已启用的输入源集合发生变化 (安装、卸载、启用、停用)
+         */
+        void enabledSourcesChanged();
+    }
+
+    /**
+     * 订阅事件，{@code parent} 释放时自动退订
+     */
+    void subscribe(Listener listener, Disposable parent);
+}
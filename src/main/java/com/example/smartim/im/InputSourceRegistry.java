@@ -0,0 +1,241 @@
+package com.example.smartim.im;
+
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.jna.CFRef;
+import com.example.smartim.im.jna.TisApi;
+import com.intellij.openapi.diagnostic.Logger;
+import com.sun.jna.Pointer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 输入源注册表：一次性把输入源 ID 解析为原生 TISInputSourceRef 并保持 retain，
+ * 切换时只需一次哈希查找 + TISSelectInputSource，不再每次全量枚举。
+ * <p>
+ * 输入源安装/卸载后需调用 {@link #invalidate()}；查找未命中时也会按代次自动重新加载一次。
+ * 解析结果另按切换目标缓存，热路径上无需按名称查找。
+ * 所有原生句柄都以 {@link CFRef} 持有，失效或释放注册表时统一归还。
+ */
+public class InputSourceRegistry {
+    private static final Logger LOG = Logger.getInstance(InputSourceRegistry.class);
+
+    private static final String KEYBOARD_CATEGORY = "TISCategoryKeyboardInputSource";
+
+    /**
+     * 已解析的输入源句柄，仅在所属代次内有效
+     */
+    public static final class Source {
+        private final String id;
+        private final String category;
+        private final CFRef ref;
+        private final int generation;
+        private final InputSourceRegistry owner;
+
+        Source(InputSourceRegistry owner, String id, String category, CFRef ref, int generation) {
+            this.owner = owner;
+            this.id = id;
+            this.category = category;
+            this.ref = ref;
+            this.generation = generation;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isKeyboardSource() {
+            return KEYBOARD_CATEGORY.equals(category);
+        }
+    }
+
+    private final TisApi tis;
+
+    private Map<String, Source> sources = null;
+    // 切换目标到句柄的缓存；弱引用键，配置重新编译后旧目标随决策表一起回收
+    private final Map<ResolvedTarget, Source> byTarget = new WeakHashMap<>();
+    private List<String> keyboardIds = Collections.emptyList();
+    private int generation = 0;
+    // 当前代次内是否已因查找未命中而重新加载过，避免错误配置的名称反复触发全量枚举
+    private boolean reloadedOnMiss = false;
+
+    public InputSourceRegistry(TisApi tis) {
+        this.tis = tis;
+    }
+
+    /**
+     * 按 ID 查找输入源，未加载时先加载
+     */
+    public synchronized Source lookup(String id) {
+        ensureLoaded();
+        Source source = sources.get(id);
+        if (source == null && !reloadedOnMiss) {
+            // 可能是新安装的输入源，重新加载一次
+            reload();
+            reloadedOnMiss = true;
+            source = sources.get(id);
+        }
+        return source;
+    }
+
+    /**
+     * 按切换目标查找输入源，结果缓存到句柄失效为止
+     */
+    public synchronized Source lookup(ResolvedTarget target) {
+        Source source = byTarget.get(target);
+        if (source != null && isCurrent(source))
+            return source;
+        source = lookup(target.getImName());
+        if (source == null)
+            byTarget.remove(target);
+        else
+            byTarget.put(target, source);
+        return source;
+    }
+
+    /**
+     * 选中指定 ID 的输入源
+     *
+     * @return 是否成功
+     */
+    public synchronized boolean select(String id) {
+        Source source = lookup(id);
+        if (source == null)
+            return false;
+
+        int result = tis.select(source.ref.get());
+        if (result != 0) {
+            // 句柄可能因输入源被卸载而失效，重新解析后再试一次
+            LOG.warn("[SmartIM] TISSelectInputSource 失败, 错误码: " + result + ", 重新加载输入源后重试");
+            invalidate();
+            source = lookup(id);
+            if (source == null)
+                return false;
+            result = tis.select(source.ref.get());
+            if (result != 0) {
+                LOG.warn("[SmartIM] TISSelectInputSource 失败, 错误码: " + result);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 句柄是否由本注册表创建且属于当前代次
+     */
+    public synchronized boolean isCurrent(Source source) {
+        return source.owner == this && source.generation == generation && sources != null;
+    }
+
+    /**
+     * 选中已解析的输入源；句柄过期时按 ID 重新查找
+     */
+    public synchronized boolean select(Source source) {
+        if (!isCurrent(source))
+            return select(source.id);
+        int result = tis.select(source.ref.get());
+        return result == 0 || select(source.id);
+    }
+
+    /**
+     * 读取系统当前选中的键盘输入源 ID
+     */
+    public synchronized String readCurrentId() {
+        try (CFRef current = CFRef.own(tis, tis.copyCurrentKeyboardInputSource())) {
+            return current == null ? null : tis.getSourceId(current.get());
+        }
+    }
+
+    /**
+     * 所有键盘类输入源 ID (按系统顺序)
+     */
+    public synchronized List<String> getKeyboardSourceIds() {
+        ensureLoaded();
+        return keyboardIds;
+    }
+
+    /**
+     * 释放所有已保留的句柄，下次访问时重新加载
+     */
+    public synchronized void invalidate() {
+        releaseAll();
+        sources = null;
+        keyboardIds = Collections.emptyList();
+        generation++;
+        reloadedOnMiss = false;
+    }
+
+    public synchronized void dispose() {
+        releaseAll();
+        sources = null;
+        keyboardIds = Collections.emptyList();
+        long outstanding = CFRef.getOutstandingCount();
+        if (outstanding != 0)
+            LOG.warn("[SmartIM] 仍有 " + outstanding + " 个原生句柄未释放");
+    }
+
+    /**
+     * 当前尚未释放的原生句柄数，用于诊断
+     */
+    public static long getOutstandingHandleCount() {
+        return CFRef.getOutstandingCount();
+    }
+
+    private void ensureLoaded() {
+        if (sources == null)
+            reload();
+    }
+
+    private void reload() {
+        releaseAll();
+        generation++;
+
+        Map<String, Source> loaded = new HashMap<>();
+        List<String> keyboards = new ArrayList<>();
+
+        try (CFRef list = CFRef.own(tis, tis.createInputSourceList())) {
+            if (list == null) {
+                LOG.warn("[SmartIM] 无法获取输入法列表 (TISCreateInputSourceList returned null)");
+                sources = loaded;
+                keyboardIds = keyboards;
+                return;
+            }
+
+            long count = tis.getCount(list.get());
+            for (long i = 0; i < count; i++) {
+                Pointer ref = tis.getValueAt(list.get(), i);
+                if (ref == null)
+                    continue;
+
+                String id = tis.getSourceId(ref);
+                if (id == null || id.isEmpty() || loaded.containsKey(id))
+                    continue;
+
+                String category = tis.getSourceCategory(ref);
+                // 列表释放后句柄仍需可用，因此单独 retain
+                Source source = new Source(this, id, category, CFRef.retain(tis, ref), generation);
+                loaded.put(id, source);
+                if (source.isKeyboardSource())
+                    keyboards.add(id);
+            }
+        }
+
+        sources = loaded;
+        keyboardIds = Collections.unmodifiableList(keyboards);
+        LOG.debug("[SmartIM] 输入源注册表已加载, 共 " + loaded.size() + " 项");
+    }
+
+    private void releaseAll() {
+        byTarget.clear();
+        if (sources == null)
+            return;
+        for (Source source : sources.values()) {
+            source.ref.close();
+        }
+        sources = null;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.smartim.im;
+
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.dbus.DBusException;
+import com.example.smartim.im.dbus.DBusTransport;
+import com.example.smartim.im.dbus.EngineBackend;
+import com.example.smartim.im.dbus.Fcitx5Backend;
+import com.example.smartim.im.dbus.IBusBackend;
+import com.example.smartim.im.dbus.LibDBusTransport;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.metrics.SwitchCompletedEvent;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Linux 实现：通过一条长期保持的 D-Bus 连接控制 Fcitx5 或 IBus，不再每次切换启动外部进程
+ * <p>
+ * 与 macOS 实现保持相同的缓存行为：已启用引擎列表缓存一次，未命中时重新加载一次；
+ * 当前输入法缓存在 {@link #currentIM} 中，目标相同则跳过；通过订阅框架的 D-Bus 信号与系统保持一致，
+ * 无法订阅或订阅连接断开时改为低频读取当前引擎与引擎列表。
+ */
+public class LinuxInputMethodService implements InputMethodService, Disposable {
+    private static final Logger LOG = Logger.getInstance(LinuxInputMethodService.class);
+    private static final long POLL_INTERVAL_MS = 2000;
+
+    @Nullable
+    private final EngineBackend backend;
+    private final SmartIMMetrics metrics;
+    private final SmartIMSettings settings;
+
+    // 当前输入法 ID，所有线程共享；null 表示未知
+    private final AtomicReference<String> currentIM = new AtomicReference<>();
+
+    private List<String> engines = null;
+    // 当前列表是否已因查找未命中而重新加载过
+    private boolean reloadedOnMiss = false;
+
+    public LinuxInputMethodService() {
+        this(detectBackend(), null);
+    }
+
+    /**
+     * @param events 输入法变化事件源；为 null 时订阅后端的变化信号，无法订阅时定期读取
+     */
+    public LinuxInputMethodService(@Nullable EngineBackend backend, @Nullable InputSourceEvents events) {
+        this(backend, events, SmartIMMetrics.getInstance(), SmartIMSettings.getInstance());
+    }
+
+    LinuxInputMethodService(@Nullable EngineBackend backend, @Nullable InputSourceEvents events,
+                            SmartIMMetrics metrics, SmartIMSettings settings) {
+        this.backend = backend;
+        this.metrics = metrics;
+        this.settings = settings;
+        if (backend == null) {
+            LOG.warn("[SmartIM] 未检测到 Fcitx5 或 IBus，输入法切换不可用");
+            return;
+        }
+        LOG.info("[SmartIM] 使用 " + backend.getName() + " 输入法后端");
+
+        InputSourceEvents.Listener listener = new InputSourceEvents.Listener() {
+            @Override
+            public void selectedSourceChanged() {
+                currentIM.set(readCurrent());
+            }
+
+            @Override
+            public void enabledSourcesChanged() {
+                invalidate();
+            }
+        };
+        if (events != null) {
+            events.subscribe(listener, this);
+            return;
+        }
+        try {
+            DBusTransport.Subscription subscription = backend.watch(new EngineBackend.Watcher() {
+                @Override
+                public void selectionChanged() {
+                    listener.selectedSourceChanged();
+                }
+
+                @Override
+                public void enginesChanged() {
+                    listener.enabledSourcesChanged();
+                }
+
+                @Override
+                public void lost() {
+                    // 断开期间的变化无从得知，丢弃缓存后改为定期读取
+                    currentIM.set(null);
+                    invalidate();
+                    poll(listener);
+                }
+            });
+            Disposer.register(this, subscription::close);
+            LOG.info("[SmartIM] 已订阅 " + backend.getName() + " 输入法变化信号");
+        } catch (DBusException e) {
+            LOG.info("[SmartIM] 无法订阅 " + backend.getName() + " 输入法变化信号，改为定期读取: " + e.getMessage());
+            poll(listener);
+        }
+    }
+
+    private void poll(InputSourceEvents.Listener listener) {
+        new PollingInputSourceEvents(this::readCurrent, this::readEngines, POLL_INTERVAL_MS).subscribe(listener, this);
+    }
+
+    @Nullable
+    private static EngineBackend detectBackend() {
+        try {
+            LibDBusTransport session = LibDBusTransport.session();
+            if (Fcitx5Backend.isRunning(session))
+                return new Fcitx5Backend(session);
+            session.close();
+
+            String address = IBusBackend.findAddress();
+            if (address != null)
+                return new IBusBackend(LibDBusTransport.forAddress(address));
+        } catch (Throwable t) {
+            LOG.warn("[SmartIM] 无法连接 D-Bus", t);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean switchToNative() {
+        if (switchByName(settings.getSnapshot().getChineseIMName()))
+            return true;
+        LOG.warn("[SmartIM] 切换到中文输入法失败");
+        return false;
+    }
+
+    @Override
+    public boolean switchToEnglish() {
+        if (switchByName(settings.getSnapshot().getEnglishIMName()))
+            return true;
+        LOG.warn("[SmartIM] 切换到英文输入法失败");
+        return false;
+    }
+
+    @Override
+    public boolean switchByName(String name) {
+        if (name == null || name.isEmpty() || name.equals("保持现状"))
+            return true;
+        if (backend == null)
+            return false;
+
+        SwitchCompletedEvent event = new SwitchCompletedEvent();
+        event.begin();
+        if (name.equals(currentIM.get())) {
+            metrics.countSwitchElided();
+            return event.finish(name, true, true);
+        }
+        if (!isEnabled(name)) {
+            LOG.warn("[SmartIM] 未启用的输入法: " + name);
+            return event.finish(name, false, false);
+        }
+
+        long start = metrics.startTimer();
+        boolean selected;
+        try {
+            backend.select(name);
+            selected = true;
+        } catch (DBusException e) {
+            LOG.warn("[SmartIM] " + backend.getName() + " 切换失败: " + e.getMessage());
+            selected = false;
+        }
+        metrics.recordNativeSwitch(start);
+        currentIM.set(selected ? name : null);
+        return event.finish(name, false, selected);
+    }
+
+    @Override
+    public boolean isChinese() {
+        String current = getCurrentInputMethod();
+        if (current == null)
+            return false;
+        // 只有配置的中文目标算中文：日文、韩文等其他非键盘布局引擎不应被当作中文
+        ResolvedTarget chinese = settings.getSnapshot().getDecisionTable().getChineseTarget();
+        return !chinese.isKeep() && current.equals(chinese.getImName());
+    }
+
+    @Override
+    public String getCurrentInputMethod() {
+        String current = readCurrent();
+        currentIM.set(current);
+        return current;
+    }
+
+    @Override
+    public synchronized List<String> getInstalledInputMethods() {
+        if (backend == null)
+            return Collections.emptyList();
+        invalidate();
+        return new ArrayList<>(loadEngines());
+    }
+
+    @Nullable
+    private String readCurrent() {
+        if (backend == null)
+            return null;
+        try {
+            return backend.current();
+        } catch (DBusException e) {
+            LOG.debug("[SmartIM] 读取当前输入法失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 直接读取已启用的引擎，不经过缓存；失败时返回 {@code null}
+     */
+    @Nullable
+    private List<String> readEngines() {
+        try {
+            return backend.list();
+        } catch (DBusException e) {
+            LOG.debug("[SmartIM] 读取输入法列表失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized boolean isEnabled(String name) {
+        if (loadEngines().contains(name))
+            return true;
+        if (reloadedOnMiss)
+            return false;
+        // 可能是新启用的引擎，重新加载一次
+        engines = null;
+        reloadedOnMiss = true;
+        return loadEngines().contains(name);
+    }
+
+    private synchronized void invalidate() {
+        engines = null;
+        reloadedOnMiss = false;
+    }
+
+    private synchronized List<String> loadEngines() {
+        if (engines != null)
+            return engines;
+        try {
+            engines = Collections.unmodifiableList(new ArrayList<>(backend.list()));
+        } catch (DBusException e) {
+            LOG.warn("[SmartIM] 获取输入法列表失败: " + e.getMessage());
+            // 不缓存失败结果
+            return Collections.emptyList();
+        }
+        return engines;
+    }
+
+    @Override
+    public void dispose() {
+        if (backend != null)
+            backend.close();
+    }
+}
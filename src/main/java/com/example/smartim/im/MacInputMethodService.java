@@ -1,93 +1,158 @@
 package com.example.smartim.im;
 
-import com.example.smartim.im.jna.CarbonWrapper;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.jna.CarbonTisApi;
+import com.example.smartim.im.jna.DistributedNotificationEvents;
+import com.example.smartim.metrics.FallbackScriptEvent;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.metrics.SwitchCompletedEvent;
+import com.example.smartim.settings.SettingsSnapshot;
 import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
-import com.sun.jna.Pointer;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
  * macOS 实现：使用 JNA 调用 Carbon TIS API 直接切换输入法，无需外部工具
+ * <p>
+ * 订阅系统输入源变化事件保持 {@link #currentIM} 与系统一致：用户手动切换后缓存随之更新，
+ * 因此"目标与当前相同则跳过"的判断始终可靠；输入源增删时使注册表中的句柄失效。
  */
-public class MacInputMethodService implements InputMethodService {
+public class MacInputMethodService implements InputMethodService, Disposable {
     private static final Logger LOG = Logger.getInstance(MacInputMethodService.class);
-    private final CarbonWrapper carbon = CarbonWrapper.INSTANCE;
+    // 无法订阅系统通知时的轮询间隔
+    private static final long POLL_INTERVAL_MS = 2000;
+    // 兜底脚本通常涉及模拟按键，首次执行还可能等待自动化授权，给足执行时间
+    private static final long SCRIPT_TIMEOUT_MS = 5000;
+    // 辅助进程不可用时启动单次 osascript，脚本作为最后一个参数
+    private static final List<String> SCRIPT_COMMAND = List.of("osascript", "-e");
+
+    private final InputSourceRegistry registry;
+    private final SmartIMMetrics metrics;
+    private final SmartIMSettings settings;
+    // 常驻的 osascript 进程，兜底脚本经行协议发送，不再每次启动新进程
+    @Nullable
+    private final HelperProcess scriptHelper;
+    private final List<String> scriptCommand;
 
-    private String cachedIM = null;
+    // 当前输入法 ID，所有线程共享；null 表示未知
+    private final AtomicReference<String> currentIM = new AtomicReference<>();
 
     public MacInputMethodService() {
-        // No initialization needed for JNA wrapper
+        this(new InputSourceRegistry(new CarbonTisApi()), new DistributedNotificationEvents(), POLL_INTERVAL_MS,
+                createScriptHelper(), SCRIPT_COMMAND, SmartIMMetrics.getInstance(), SmartIMSettings.getInstance());
     }
 
-    @Override
-    public void switchToNative() {
-        String name = SmartIMSettings.getInstance().chineseIMName;
-        LOG.info("[SmartIM] 尝试切换到中文: " + name);
-        if (!switchByName(name)) {
-            // Fallback to script only if defined and native failed (optional, but keeping
-            // logical flow)
-            LOG.warn("[SmartIM] Native切换失败，尝试执行基础切换脚本兜底");
-            executeAppleScript(SmartIMSettings.getInstance().chineseIMScript, true);
+    /**
+     * @param events       输入源事件源，订阅失败时退化为每 {@code pollIntervalMs} 读取一次当前输入法
+     * @param scriptHelper  执行兜底脚本的辅助进程，为 null 时每次启动 osascript
+     * @param scriptCommand 辅助进程不可用时执行单次脚本的命令，脚本追加为最后一个参数
+     */
+    MacInputMethodService(InputSourceRegistry registry, InputSourceEvents events, long pollIntervalMs,
+                          @Nullable HelperProcess scriptHelper, List<String> scriptCommand, SmartIMMetrics metrics,
+                          SmartIMSettings settings) {
+        this.registry = registry;
+        this.metrics = metrics;
+        this.settings = settings;
+        this.scriptHelper = scriptHelper;
+        this.scriptCommand = List.copyOf(scriptCommand);
+        if (scriptHelper != null) {
+            Disposer.register(this, scriptHelper);
+            AppExecutorUtil.getAppExecutorService().execute(scriptHelper::start);
+        }
+        InputSourceEvents.Listener listener = new InputSourceEvents.Listener() {
+            @Override
+            public void selectedSourceChanged() {
+                currentIM.set(registry.readCurrentId());
+            }
+
+            @Override
+            public void enabledSourcesChanged() {
+                registry.invalidate();
+                currentIM.set(registry.readCurrentId());
+            }
+        };
+
+        try {
+            events.subscribe(listener, this);
+        } catch (Throwable t) {
+            LOG.warn("[SmartIM] 无法订阅输入源变化通知，改为定期读取当前输入法", t);
+            new PollingInputSourceEvents(registry::readCurrentId, pollIntervalMs).subscribe(listener, this);
         }
     }
 
+    /**
+     * 缓存的当前输入法 ID，不读取系统状态
+     */
+    @TestOnly
+    String getCachedInputMethod() {
+        return currentIM.get();
+    }
+
     @Override
-    public void switchToEnglish() {
-        String name = SmartIMSettings.getInstance().englishIMName;
-        LOG.info("[SmartIM] 尝试切换到英文: " + name);
-        if (!switchByName(name)) {
-            LOG.warn("[SmartIM] Native切换失败，尝试执行基础切换脚本兜底");
-            executeAppleScript(SmartIMSettings.getInstance().englishIMScript, true);
-        }
+    public boolean switchToNative() {
+        SettingsSnapshot snapshot = settings.getSnapshot();
+        if (switchByName(snapshot.getChineseIMName()))
+            return true;
+        // Fallback to script only if defined and native failed (optional, but keeping
+        // logical flow)
+        LOG.warn("[SmartIM] Native切换失败，尝试执行基础切换脚本兜底");
+        metrics.countFallbackScript();
+        boolean success = executeAppleScript("<native>", snapshot.getChineseIMScript(), true);
+        // 脚本切换后实际输入法未知
+        currentIM.set(null);
+        return success;
+    }
+
+    @Override
+    public boolean switchToEnglish() {
+        SettingsSnapshot snapshot = settings.getSnapshot();
+        if (switchByName(snapshot.getEnglishIMName()))
+            return true;
+        LOG.warn("[SmartIM] Native切换失败，尝试执行基础切换脚本兜底");
+        metrics.countFallbackScript();
+        boolean success = executeAppleScript("<english>", snapshot.getEnglishIMScript(), true);
+        currentIM.set(null);
+        return success;
     }
 
     @Override
     public boolean isChinese() {
-        return false;
+        String current = getCurrentInputMethod();
+        if (current == null)
+            return false;
+        // 只有配置的中文目标算中文：日文、韩文等其他 .inputmethod. 输入源不应被当作中文
+        ResolvedTarget chinese = settings.getSnapshot().getDecisionTable().getChineseTarget();
+        return !chinese.isKeep() && current.equals(chinese.getImName());
+    }
+
+    @Override
+    public String getCurrentInputMethod() {
+        String current = registry.readCurrentId();
+        currentIM.set(current);
+        return current;
     }
 
+    @Override
     public List<String> getInstalledInputMethods() {
         LOG.info("[SmartIM] 开始刷新输入法列表 (Native API)...");
-        List<String> names = new ArrayList<>();
-
-        Pointer sourceList = carbon.TISCreateInputSourceList(null, true);
-        if (sourceList == null) {
-            LOG.error("[SmartIM] 无法获取输入法列表 (TISCreateInputSourceList returned null)");
-            return names;
-        }
-
-        try {
-            long count = carbon.CFArrayGetCount(sourceList);
-            for (long i = 0; i < count; i++) {
-                Pointer source = carbon.CFArrayGetValueAtIndex(sourceList, i);
-                if (source == null)
-                    continue;
-
-                // Check category
-                Pointer categoryPtr = carbon.TISGetInputSourceProperty(source,
-                        CarbonWrapper.Keys.kTISPropertyInputSourceCategory);
-                String category = carbon.toJavaString(categoryPtr);
-                if (!"TISCategoryKeyboardInputSource".equals(category)) {
-                    continue; // Skip non-keyboard sources
-                }
-
-                // Get ID
-                Pointer idPtr = carbon.TISGetInputSourceProperty(source, CarbonWrapper.Keys.kTISPropertyInputSourceID);
-                String id = carbon.toJavaString(idPtr);
-
-                if (id != null && !id.isEmpty()) {
-                    names.add(id);
-                }
-            }
-        } finally {
-            // CFRelease isn't stricly required for short lived plugin actions but good
-            // practice if wrapper supported it
-        }
-
+        // 手动刷新视为输入源可能已变更，重新解析句柄
+        registry.invalidate();
+        List<String> names = new ArrayList<>(registry.getKeyboardSourceIds());
         LOG.info("[SmartIM] 扫描完成: " + names);
         return names;
     }
@@ -97,48 +162,88 @@ public class MacInputMethodService implements InputMethodService {
         if (name == null || name.isEmpty() || name.equals("保持现状"))
             return true;
 
-        if (name.equals(cachedIM)) {
-            return true;
+        SwitchCompletedEvent event = new SwitchCompletedEvent();
+        event.begin();
+        if (name.equals(currentIM.get())) {
+            metrics.countSwitchElided();
+            return event.finish(name, true, true);
         }
 
-        Pointer sourceList = carbon.TISCreateInputSourceList(null, true);
-        if (sourceList == null)
-            return false;
+        long start = metrics.startTimer();
+        boolean selected = registry.select(name);
+        metrics.recordNativeSwitch(start);
+        if (selected)
+            currentIM.set(name);
+        return event.finish(name, false, selected);
+    }
 
-        boolean found = false;
-        try {
-            long count = carbon.CFArrayGetCount(sourceList);
-            for (long i = 0; i < count; i++) {
-                Pointer source = carbon.CFArrayGetValueAtIndex(sourceList, i);
-                if (source == null)
-                    continue;
-
-                Pointer idPtr = carbon.TISGetInputSourceProperty(source, CarbonWrapper.Keys.kTISPropertyInputSourceID);
-                String id = carbon.toJavaString(idPtr);
-
-                if (name.equals(id)) {
-                    int result = carbon.TISSelectInputSource(source);
-                    if (result == 0) { // noErr
-                        found = true;
-                        cachedIM = name;
-                        LOG.info("[SmartIM] 成功切换到: " + name);
-                    } else {
-                        LOG.error("[SmartIM] TISSelectInputSource 失败, 错误码: " + result);
-                    }
-                    break;
-                }
-            }
-        } finally {
-            // CFRelease(sourceList);
+    @Override
+    public boolean switchTo(ResolvedTarget target) {
+        if (target.isKeep())
+            return true;
+
+        String name = target.getImName();
+        SwitchCompletedEvent event = new SwitchCompletedEvent();
+        event.begin();
+        if (name.equals(currentIM.get())) {
+            metrics.countSwitchElided();
+            return event.finish(name, true, true);
         }
 
-        return found;
+        InputSourceRegistry.Source source = registry.lookup(target);
+        if (source == null)
+            return event.finish(name, false, false);
+
+        long start = metrics.startTimer();
+        boolean selected = registry.select(source);
+        metrics.recordNativeSwitch(start);
+        if (selected)
+            currentIM.set(name);
+        return event.finish(name, false, selected);
     }
 
-    private void executeAppleScript(String script, boolean logError) {
+    @Nullable
+    private static HelperProcess createScriptHelper() {
+        try (InputStream in = MacInputMethodService.class.getResourceAsStream("/helper/smartim-helper.js")) {
+            if (in == null)
+                return null;
+            String source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return new HelperProcess(List.of("osascript", "-l", "JavaScript", "-e", source), SCRIPT_TIMEOUT_MS);
+        } catch (IOException e) {
+            LOG.warn("[SmartIM] 无法加载辅助脚本", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return 脚本是否成功执行
+     */
+    private boolean executeAppleScript(String target, String script, boolean logError) {
+        FallbackScriptEvent event = new FallbackScriptEvent();
+        event.begin();
+        int code = -1;
         try {
-            Process process = new ProcessBuilder("osascript", "-e", script).start();
-            int code = process.waitFor();
+            if (scriptHelper != null) {
+                try {
+                    String encoded = Base64.getEncoder().encodeToString(script.getBytes(StandardCharsets.UTF_8));
+                    String reply = scriptHelper.request("RUN", encoded);
+                    code = reply.startsWith("OK") ? 0 : 1;
+                    if (code != 0 && logError)
+                        LOG.error("[SmartIM] 兜底脚本失败: " + reply);
+                    return code == 0;
+                } catch (HelperProcess.NotDeliveredException e) {
+                    LOG.warn("[SmartIM] 辅助进程不可用，改为启动 osascript: " + e.getMessage());
+                } catch (IOException e) {
+                    // 请求已送达，脚本可能已经执行 (如模拟按键)，再次执行会重复切换
+                    LOG.warn("[SmartIM] 辅助进程未返回结果，不再重复执行兜底脚本: " + e.getMessage());
+                    return false;
+                }
+            }
+
+            List<String> command = new ArrayList<>(scriptCommand);
+            command.add(script);
+            Process process = new ProcessBuilder(command).start();
+            code = process.waitFor();
             if (code != 0 && logError) {
                 String err = new BufferedReader(new InputStreamReader(process.getErrorStream())).lines()
                         .collect(Collectors.joining("\n"));
@@ -147,6 +252,19 @@ public class MacInputMethodService implements InputMethodService {
         } catch (Exception e) {
             if (logError)
                 LOG.error("[SmartIM] 脚本致命异常", e);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.target = target;
+                event.exitCode = code;
+                event.commit();
+            }
         }
+        return code == 0;
+    }
+
+    @Override
+    public void dispose() {
+        registry.dispose();
     }
 }
@@ -0,0 +1,30 @@
+package com.example.smartim.im;
+
+/**
+ * 不支持的平台 (Windows、FreeBSD 等) 上的空实现
+ * <p>
+ * 保证 {@link InputMethodService#getInstance()} 在任何平台都不为 {@code null}，
+ * 监听器照常运行但不切换输入法。
+ */
+public class NoopInputMethodService implements InputMethodService {
+
+    @Override
+    public boolean switchToNative() {
+        return false;
+    }
+
+    @Override
+    public boolean switchToEnglish() {
+        return false;
+    }
+
+    @Override
+    public boolean switchByName(String name) {
+        return false;
+    }
+
+    @Override
+    public boolean isChinese() {
+        return false;
+    }
+}
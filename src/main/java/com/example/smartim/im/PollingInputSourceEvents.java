@@ -0,0 +1,58 @@
+package com.example.smartim.im;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 低频轮询实现：无法订阅系统通知时，定期读取当前输入源 (以及可选的已启用列表) 并在变化时通知
+ */
+public class PollingInputSourceEvents implements InputSourceEvents {
+    private final Supplier<String> readCurrent;
+    // 读取失败时返回 null，本轮不比较
+    @Nullable
+    private final Supplier<List<String>> readEnabled;
+    private final long periodMs;
+
+    public PollingInputSourceEvents(Supplier<String> readCurrent, long periodMs) {
+        this(readCurrent, null, periodMs);
+    }
+
+    public PollingInputSourceEvents(Supplier<String> readCurrent, @Nullable Supplier<List<String>> readEnabled,
+                                    long periodMs) {
+        this.readCurrent = readCurrent;
+        this.readEnabled = readEnabled;
+        this.periodMs = periodMs;
+    }
+
+    @Override
+    public void subscribe(Listener listener, Disposable parent) {
+        String[] last = {readCurrent.get()};
+        List<?>[] lastEnabled = {readEnabled == null ? null : readEnabled.get()};
+        ScheduledFuture<?> future = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            String current = readCurrent.get();
+            if (!Objects.equals(current, last[0])) {
+                last[0] = current;
+                listener.selectedSourceChanged();
+            }
+            if (readEnabled == null)
+                return;
+            List<String> enabled = readEnabled.get();
+            if (enabled != null && !enabled.equals(lastEnabled[0])) {
+                // 第一次成功读取只作为基准
+                boolean changed = lastEnabled[0] != null;
+                lastEnabled[0] = enabled;
+                if (changed)
+                    listener.enabledSourcesChanged();
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        Disposer.register(parent, () -> future.cancel(false));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.smartim.im;
+
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.metrics.SwitchRequestedEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 输入法切换执行器：单消费者、后到优先 (latest-wins)
+ * <p>
+ * 调用方 (通常是 EDT) 只做一次原子替换即返回，原生切换与脚本兜底都在后台单线程中执行。
+ * 尚未执行的旧请求会被新请求直接覆盖丢弃。作为应用级服务，所有监听器共用同一个队列。
+ */
+public class SwitchExecutor {
+    private static final Logger LOG = Logger.getInstance(SwitchExecutor.class);
+
+    private static final class Request {
+        final String target;
+        final Consumer<InputMethodService> action;
+        final long submittedAt;
+
+        Request(String target, Consumer<InputMethodService> action) {
+            this.target = target;
+            this.action = action;
+            this.submittedAt = System.nanoTime();
+        }
+    }
+
+    private final InputMethodService service;
+    private final Executor executor;
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Runnable drainTask = this::drain;
+
+    // 统计信息；提交计数同时作为请求序号
+    private final AtomicLong submitted = new AtomicLong();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private volatile long lastLatencyNanos = 0;
+    private volatile long maxLatencyNanos = 0;
+
+    public SwitchExecutor() {
+        this(InputMethodService.getInstance(), AppExecutorUtil.createBoundedApplicationPoolExecutor("SmartIM Switch", 1),
+                SmartIMMetrics.getInstance());
+    }
+
+    /**
+     * 测试与基准使用：注入假服务与执行器，通常再替换应用服务；不登记统计读数
+     *
+     * @param executor 必须保证任务串行执行
+     */
+    @TestOnly
+    public SwitchExecutor(InputMethodService service, Executor executor) {
+        this(service, executor, null);
+    }
+
+    private SwitchExecutor(InputMethodService service, Executor executor, @Nullable SmartIMMetrics metrics) {
+        this.service = service;
+        this.executor = executor;
+        if (metrics != null) {
+            metrics.registerGauge("switchRequests", "切换请求", this::getSubmittedCount);
+            metrics.registerGauge("switchRequestsSuperseded", "被覆盖的请求", this::getSupersededCount);
+            metrics.registerGauge("switchQueueDepth", "切换队列深度", this::getQueueDepth);
+        }
+    }
+
+    public static SwitchExecutor getInstance() {
+        return ApplicationManager.getApplication().getService(SwitchExecutor.class);
+    }
+
+    public void switchByName(String name) {
+        submit(name, s -> s.switchByName(name));
+    }
+
+    /**
+     * @return 本次请求的序号，与 {@link #getSubmittedCount()} 相等说明此后没有新的请求；{@code KEEP} 不提交，返回 0
+     */
+    public long switchTo(ResolvedTarget target) {
+        if (target.isKeep())
+            return 0;
+        return submit(target.getImName(), s -> s.switchTo(target));
+    }
+
+    public void switchToNative() {
+        submit("<native>", InputMethodService::switchToNative);
+    }
+
+    public void switchToEnglish() {
+        submit("<english>", InputMethodService::switchToEnglish);
+    }
+
+    private long submit(String target, Consumer<InputMethodService> action) {
+        long sequence = submitted.incrementAndGet();
+        Request previous = pending.getAndSet(new Request(target, action));
+        SwitchRequestedEvent event = new SwitchRequestedEvent();
+        if (event.shouldCommit()) {
+            event.target = target;
+            event.supersededPending = previous != null;
+            event.commit();
+        }
+        if (previous != null) {
+            // 旧请求尚未执行，已被覆盖
+            superseded.increment();
+            return sequence;
+        }
+        executor.execute(drainTask);
+        return sequence;
+    }
+
+    private void drain() {
+        Request request;
+        while ((request = pending.getAndSet(null)) != null) {
+            running.set(true);
+            try {
+                request.action.accept(service);
+            } catch (Throwable t) {
+                LOG.error("[SmartIM] 切换任务异常: " + request.target, t);
+            } finally {
+                running.set(false);
+                recordLatency(System.nanoTime() - request.submittedAt);
+            }
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        completed.increment();
+        totalLatencyNanos.add(nanos);
+        lastLatencyNanos = nanos;
+        if (nanos > maxLatencyNanos)
+            maxLatencyNanos = nanos;
+    }
+
+    /**
+     * 当前排队 + 执行中的请求数 (0 ~ 2)
+     */
+    public int getQueueDepth() {
+        return (pending.get() != null ? 1 : 0) + (running.get() ? 1 : 0);
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getSupersededCount() {
+        return superseded.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * 最近一次从提交到执行完毕的耗时
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public long getAverageLatencyNanos() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / count;
+    }
+}
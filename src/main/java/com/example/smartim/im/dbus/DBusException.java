@@ -0,0 +1,20 @@
+package com.example.smartim.im.dbus;
+
+/**
+ * D-Bus 调用失败 (连接断开、超时、远端返回错误)
+ */
+public class DBusException extends Exception {
+    private final String errorName;
+
+    public DBusException(String errorName, String message) {
+        super(errorName + ": " + message);
+        this.errorName = errorName;
+    }
+
+    /**
+     * D-Bus 错误名，如 {@code org.freedesktop.DBus.Error.ServiceUnknown}
+     */
+    public String getErrorName() {
+        return errorName;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.smartim.im.dbus;
+
+import java.util.List;
+
+/**
+ * D-Bus 方法调用的最小抽象
+ * <p>
+ * 返回值按签名解码为 Java 对象：字符串类为 {@link String}，整数为 {@link Integer}/{@link Long}，
+ * 布尔为 {@link Boolean}，数组与结构体为 {@link List}，字典为 {@link java.util.Map}，variant 展开为其内容。
+ * 后端只依赖该接口，可用模拟总线替换。
+ */
+public interface DBusTransport extends AutoCloseable {
+
+    /**
+     * 同步调用方法，参数仅支持字符串
+     *
+     * @return 解码后的返回值列表
+     */
+    List<Object> call(String destination, String path, String iface, String method, String... args)
+            throws DBusException;
+
+    /**
+     * 在独立的连接上订阅信号，由后台线程逐个回调；方法调用的连接不受影响
+     *
+     * @param rules 匹配规则，如 {@code type='signal',interface='org.freedesktop.IBus',member='GlobalEngineChanged'}
+     * @throws DBusException 无法建立连接或添加匹配规则
+     */
+    Subscription subscribe(List<String> rules, SignalListener listener) throws DBusException;
+
+    @Override
+    void close();
+
+    /**
+     * 按接口与成员名匹配信号的规则
+     */
+    static String signalRule(String iface, String member) {
+        return "type='signal',interface='" + iface + "',member='" + member + "'";
+    }
+
+    interface SignalListener {
+        void signalReceived(String iface, String member);
+
+        /**
+         * 订阅连接意外断开，此后不会再收到信号
+         */
+        void disconnected();
+    }
+
+    /**
+     * 关闭即退订并断开订阅连接
+     */
+    interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
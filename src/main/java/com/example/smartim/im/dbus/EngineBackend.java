@@ -0,0 +1,41 @@
+package com.example.smartim.im.dbus;
+
+import java.util.List;
+
+/**
+ * Linux 输入法框架后端，引擎名即 {@link com.example.smartim.im.InputMethodService} 中的输入法 ID
+ */
+public interface EngineBackend extends AutoCloseable {
+
+    String getName();
+
+    void select(String engine) throws DBusException;
+
+    String current() throws DBusException;
+
+    /**
+     * 当前启用的引擎 (按框架中的顺序)
+     */
+    List<String> list() throws DBusException;
+
+    /**
+     * 订阅框架发出的当前引擎与已启用引擎变化信号，回调在后台线程上执行
+     *
+     * @throws DBusException 无法订阅或框架不会发出相应信号，调用方应回退到定期读取
+     */
+    DBusTransport.Subscription watch(Watcher watcher) throws DBusException;
+
+    interface Watcher {
+        void selectionChanged();
+
+        void enginesChanged();
+
+        /**
+         * 订阅连接断开，调用方应回退到定期读取
+         */
+        void lost();
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,106 @@
+package com.example.smartim.im.dbus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fcitx5：会话总线上的 {@code org.fcitx.Fcitx.Controller1} 接口
+ */
+public class Fcitx5Backend implements EngineBackend {
+
+    static final String SERVICE = "org.fcitx.Fcitx5";
+    private static final String PATH = "/controller";
+    private static final String IFACE = "org.fcitx.Fcitx.Controller1";
+    // kimpanel 面板协议：Fcitx5 通过它向面板广播当前输入法等状态
+    static final String KIMPANEL = "org.kde.impanel";
+    private static final String KIMPANEL_IFACE = "org.kde.kimpanel.inputmethod";
+
+    private final DBusTransport bus;
+
+    public Fcitx5Backend(DBusTransport bus) {
+        this.bus = bus;
+    }
+
+    /**
+     * 会话总线上是否有 Fcitx5 在运行
+     */
+    public static boolean isRunning(DBusTransport bus) {
+        return hasOwner(bus, SERVICE);
+    }
+
+    private static boolean hasOwner(DBusTransport bus, String name) {
+        try {
+            List<Object> reply = bus.call("org.freedesktop.DBus", "/org/freedesktop/DBus", "org.freedesktop.DBus",
+                    "NameHasOwner", name);
+            return !reply.isEmpty() && Boolean.TRUE.equals(reply.get(0));
+        } catch (DBusException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Fcitx5";
+    }
+
+    @Override
+    public void select(String engine) throws DBusException {
+        bus.call(SERVICE, PATH, IFACE, "SetCurrentIM", engine);
+    }
+
+    @Override
+    public String current() throws DBusException {
+        List<Object> reply = bus.call(SERVICE, PATH, IFACE, "CurrentInputMethod");
+        return reply.isEmpty() ? null : (String) reply.get(0);
+    }
+
+    @Override
+    public List<String> list() throws DBusException {
+        // 当前分组的输入法：InputMethodGroupInfo(group) 返回 (s 默认布局, a(ss) [输入法名, 布局])
+        List<Object> group = bus.call(SERVICE, PATH, IFACE, "CurrentInputMethodGroup");
+        if (group.isEmpty())
+            return List.of();
+        List<Object> info = bus.call(SERVICE, PATH, IFACE, "InputMethodGroupInfo", (String) group.get(0));
+        List<String> names = new ArrayList<>();
+        if (info.size() > 1 && info.get(1) instanceof List) {
+            for (Object item : (List<?>) info.get(1)) {
+                if (item instanceof List && !((List<?>) item).isEmpty())
+                    names.add((String) ((List<?>) item).get(0));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 分组 (已启用的输入法) 变化时控制接口发出 InputMethodGroupsChanged；
+     * 当前输入法的变化不在控制接口上广播，只在有 kimpanel 面板时以 RegisterProperties/UpdateProperty 发出，
+     * 没有面板时无法订阅
+     */
+    @Override
+    public DBusTransport.Subscription watch(Watcher watcher) throws DBusException {
+        if (!hasOwner(bus, KIMPANEL))
+            throw new DBusException("org.freedesktop.DBus.Error.NotSupported", "没有 kimpanel 面板，Fcitx5 不广播当前输入法变化");
+        return bus.subscribe(List.of(
+                DBusTransport.signalRule(IFACE, "InputMethodGroupsChanged"),
+                DBusTransport.signalRule(KIMPANEL_IFACE, "RegisterProperties"),
+                DBusTransport.signalRule(KIMPANEL_IFACE, "UpdateProperty")), new DBusTransport.SignalListener() {
+            @Override
+            public void signalReceived(String iface, String member) {
+                if (IFACE.equals(iface) && member.equals("InputMethodGroupsChanged"))
+                    watcher.enginesChanged();
+                else if (KIMPANEL_IFACE.equals(iface))
+                    watcher.selectionChanged();
+            }
+
+            @Override
+            public void disconnected() {
+                watcher.lost();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        bus.close();
+    }
+}
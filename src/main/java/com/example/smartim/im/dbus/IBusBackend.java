@@ -0,0 +1,121 @@
+package com.example.smartim.im.dbus;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IBus：运行在独立私有总线上的 {@code org.freedesktop.IBus} 接口
+ * <p>
+ * 引擎描述 (IBusEngineDesc) 序列化为 (s 类型名, a{sv} 附件, s 引擎名, ...)，引擎名为第三个字段。
+ */
+public class IBusBackend implements EngineBackend {
+    private static final Logger LOG = Logger.getInstance(IBusBackend.class);
+
+    private static final String SERVICE = "org.freedesktop.IBus";
+    private static final String PATH = "/org/freedesktop/IBus";
+    private static final String IFACE = "org.freedesktop.IBus";
+
+    private final DBusTransport bus;
+
+    public IBusBackend(DBusTransport bus) {
+        this.bus = bus;
+    }
+
+    /**
+     * IBus 私有总线地址：优先读取 IBUS_ADDRESS，否则启动时执行一次 {@code ibus address}
+     */
+    @Nullable
+    public static String findAddress() {
+        String address = System.getenv("IBUS_ADDRESS");
+        if (address != null && !address.isEmpty())
+            return address;
+        try {
+            Process process = new ProcessBuilder("ibus", "address").start();
+            if (!process.waitFor(2, TimeUnit.SECONDS)) {
+                process.destroy();
+                return null;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line = reader.readLine();
+                // 守护进程未运行时输出 "(null)"
+                return line == null || line.isEmpty() || line.startsWith("(") ? null : line.trim();
+            }
+        } catch (Exception e) {
+            LOG.debug("[SmartIM] 无法获取 IBus 地址: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "IBus";
+    }
+
+    @Override
+    public void select(String engine) throws DBusException {
+        bus.call(SERVICE, PATH, IFACE, "SetGlobalEngine", engine);
+    }
+
+    @Override
+    public String current() throws DBusException {
+        List<Object> reply = bus.call(SERVICE, PATH, IFACE, "GetGlobalEngine");
+        return reply.isEmpty() ? null : engineName(reply.get(0));
+    }
+
+    @Override
+    public List<String> list() throws DBusException {
+        List<Object> reply = bus.call(SERVICE, PATH, IFACE, "ListActiveEngines");
+        List<String> names = new ArrayList<>();
+        if (!reply.isEmpty() && reply.get(0) instanceof List) {
+            for (Object desc : (List<?>) reply.get(0)) {
+                String name = engineName(desc);
+                if (name != null)
+                    names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 守护进程在全局引擎变化时发出 GlobalEngineChanged，组件注册表变化时发出 RegistryChanged
+     */
+    @Override
+    public DBusTransport.Subscription watch(Watcher watcher) throws DBusException {
+        return bus.subscribe(List.of(
+                DBusTransport.signalRule(IFACE, "GlobalEngineChanged"),
+                DBusTransport.signalRule(IFACE, "RegistryChanged")), new DBusTransport.SignalListener() {
+            @Override
+            public void signalReceived(String iface, String member) {
+                if (!IFACE.equals(iface))
+                    return;
+                if (member.equals("GlobalEngineChanged"))
+                    watcher.selectionChanged();
+                else if (member.equals("RegistryChanged"))
+                    watcher.enginesChanged();
+            }
+
+            @Override
+            public void disconnected() {
+                watcher.lost();
+            }
+        });
+    }
+
+    @Nullable
+    static String engineName(Object desc) {
+        if (desc instanceof List && ((List<?>) desc).size() > 2 && ((List<?>) desc).get(2) instanceof String)
+            return (String) ((List<?>) desc).get(2);
+        return null;
+    }
+
+    @Override
+    public void close() {
+        bus.close();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.smartim.im.dbus;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * libdbus-1 的直接映射绑定，只包含固定参数的函数 (直接映射不支持可变参数)
+ */
+final class LibDBus {
+
+    static {
+        Native.register("dbus-1");
+    }
+
+    static final int DBUS_BUS_SESSION = 0;
+
+    static final int MESSAGE_TYPE_SIGNAL = 4;
+
+    static final int TYPE_INVALID = 0;
+    static final int TYPE_BYTE = 'y';
+    static final int TYPE_BOOLEAN = 'b';
+    static final int TYPE_INT16 = 'n';
+    static final int TYPE_UINT16 = 'q';
+    static final int TYPE_INT32 = 'i';
+    static final int TYPE_UINT32 = 'u';
+    static final int TYPE_INT64 = 'x';
+    static final int TYPE_UINT64 = 't';
+    static final int TYPE_DOUBLE = 'd';
+    static final int TYPE_STRING = 's';
+    static final int TYPE_OBJECT_PATH = 'o';
+    static final int TYPE_SIGNATURE = 'g';
+    static final int TYPE_UNIX_FD = 'h';
+    static final int TYPE_ARRAY = 'a';
+    static final int TYPE_VARIANT = 'v';
+    static final int TYPE_STRUCT = 'r';
+    static final int TYPE_DICT_ENTRY = 'e';
+
+    // 结构体大小按 64 位平台取足够大的上界
+    static final int ERROR_SIZE = 64;
+    static final int ITER_SIZE = 128;
+
+    private LibDBus() {
+    }
+
+    static native int dbus_threads_init_default();
+
+    static native void dbus_error_init(Pointer error);
+
+    static native int dbus_error_is_set(Pointer error);
+
+    static native void dbus_error_free(Pointer error);
+
+    static native Pointer dbus_bus_get_private(int type, Pointer error);
+
+    static native Pointer dbus_connection_open_private(String address, Pointer error);
+
+    static native int dbus_bus_register(Pointer connection, Pointer error);
+
+    static native void dbus_connection_set_exit_on_disconnect(Pointer connection, int exitOnDisconnect);
+
+    static native int dbus_connection_get_is_connected(Pointer connection);
+
+    static native void dbus_connection_close(Pointer connection);
+
+    static native void dbus_connection_unref(Pointer connection);
+
+    static native Pointer dbus_connection_send_with_reply_and_block(Pointer connection, Pointer message,
+                                                                    int timeoutMs, Pointer error);
+
+    static native void dbus_bus_add_match(Pointer connection, String rule, Pointer error);
+
+    static native int dbus_connection_read_write(Pointer connection, int timeoutMs);
+
+    static native Pointer dbus_connection_pop_message(Pointer connection);
+
+    static native int dbus_message_get_type(Pointer message);
+
+    static native String dbus_message_get_interface(Pointer message);
+
+    static native String dbus_message_get_member(Pointer message);
+
+    static native Pointer dbus_message_new_method_call(String destination, String path, String iface, String method);
+
+    static native void dbus_message_unref(Pointer message);
+
+    static native void dbus_message_iter_init_append(Pointer message, Pointer iter);
+
+    static native int dbus_message_iter_append_basic(Pointer iter, int type, Pointer value);
+
+    static native int dbus_message_iter_init(Pointer message, Pointer iter);
+
+    static native int dbus_message_iter_get_arg_type(Pointer iter);
+
+    static native int dbus_message_iter_get_element_type(Pointer iter);
+
+    static native void dbus_message_iter_recurse(Pointer iter, Pointer sub);
+
+    static native void dbus_message_iter_get_basic(Pointer iter, Pointer value);
+
+    static native int dbus_message_iter_next(Pointer iter);
+}
@@ -0,0 +1,319 @@
+package com.example.smartim.im.dbus;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.smartim.im.dbus.LibDBus.*;
+
+/**
+ * 基于 libdbus-1 的长连接实现
+ * <p>
+ * 整个生命周期只建立一条私有连接，所有调用串行复用；连接断开后在下一次调用时自动重连。
+ * 信号订阅各自使用一条独立连接，由后台线程读取，不与方法调用争用同一连接。
+ */
+public class LibDBusTransport implements DBusTransport {
+    private static final Logger LOG = Logger.getInstance(LibDBusTransport.class);
+
+    // 单次调用超时，输入法服务无响应时避免长时间阻塞切换线程
+    private static final int TIMEOUT_MS = 500;
+    // 信号线程单次等待的上限，也是退订后线程退出的最长延迟
+    private static final int READ_TIMEOUT_MS = 1000;
+
+    static {
+        dbus_threads_init_default();
+    }
+
+    // null 表示会话总线
+    @Nullable
+    private final String address;
+    private Pointer connection;
+
+    private LibDBusTransport(@Nullable String address) {
+        this.address = address;
+    }
+
+    /**
+     * 连接当前用户的会话总线
+     */
+    public static LibDBusTransport session() {
+        return new LibDBusTransport(null);
+    }
+
+    /**
+     * 连接指定地址的总线 (如 IBus 的私有总线)
+     */
+    public static LibDBusTransport forAddress(String address) {
+        return new LibDBusTransport(address);
+    }
+
+    @Override
+    public synchronized List<Object> call(String destination, String path, String iface, String method, String... args)
+            throws DBusException {
+        Pointer conn = connect();
+        Pointer message = dbus_message_new_method_call(destination, path, iface, method);
+        if (message == null)
+            throw new DBusException("org.freedesktop.DBus.Error.NoMemory", "无法创建消息");
+        try {
+            appendArgs(message, args);
+            Memory error = newError();
+            Pointer reply = dbus_connection_send_with_reply_and_block(conn, message, TIMEOUT_MS, error);
+            if (reply == null) {
+                DBusException e = toException(error);
+                if (dbus_connection_get_is_connected(conn) == 0)
+                    closeConnection();
+                throw e;
+            }
+            try {
+                return decode(reply);
+            } finally {
+                dbus_message_unref(reply);
+            }
+        } finally {
+            dbus_message_unref(message);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(List<String> rules, SignalListener listener) throws DBusException {
+        Pointer conn = open();
+        Memory error = newError();
+        for (String rule : rules) {
+            dbus_bus_add_match(conn, rule, error);
+            if (dbus_error_is_set(error) != 0) {
+                release(conn);
+                throw toException(error);
+            }
+        }
+        SignalLoop loop = new SignalLoop(conn, listener);
+        AppExecutorUtil.getAppExecutorService().execute(loop);
+        return loop;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeConnection();
+    }
+
+    private Pointer connect() throws DBusException {
+        if (connection != null) {
+            if (dbus_connection_get_is_connected(connection) != 0)
+                return connection;
+            LOG.warn("[SmartIM] D-Bus 连接已断开，重新连接");
+            closeConnection();
+        }
+        connection = open();
+        return connection;
+    }
+
+    private Pointer open() throws DBusException {
+        Memory error = newError();
+        Pointer conn = address == null
+                ? dbus_bus_get_private(DBUS_BUS_SESSION, error)
+                : dbus_connection_open_private(address, error);
+        if (conn == null)
+            throw toException(error);
+        if (address != null && dbus_bus_register(conn, error) == 0) {
+            release(conn);
+            throw toException(error);
+        }
+        // 总线断开时不要让 libdbus 调用 exit() 结束 IDE 进程
+        dbus_connection_set_exit_on_disconnect(conn, 0);
+        return conn;
+    }
+
+    private void closeConnection() {
+        if (connection == null)
+            return;
+        release(connection);
+        connection = null;
+    }
+
+    private static void release(Pointer conn) {
+        dbus_connection_close(conn);
+        dbus_connection_unref(conn);
+    }
+
+    /**
+     * 在订阅连接上循环读取并分发信号，退订或连接断开后释放连接
+     */
+    private static final class SignalLoop implements Runnable, Subscription {
+        private final Pointer connection;
+        private final SignalListener listener;
+        private volatile boolean closed = false;
+
+        SignalLoop(Pointer connection, SignalListener listener) {
+            this.connection = connection;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed && dbus_connection_read_write(connection, READ_TIMEOUT_MS) != 0) {
+                    Pointer message;
+                    while (!closed && (message = dbus_connection_pop_message(connection)) != null) {
+                        try {
+                            if (dbus_message_get_type(message) == MESSAGE_TYPE_SIGNAL)
+                                dispatch(message);
+                        } finally {
+                            dbus_message_unref(message);
+                        }
+                    }
+                }
+                if (!closed) {
+                    LOG.warn("[SmartIM] D-Bus 信号连接已断开");
+                    listener.disconnected();
+                }
+            } finally {
+                release(connection);
+            }
+        }
+
+        private void dispatch(Pointer message) {
+            String iface = dbus_message_get_interface(message);
+            String member = dbus_message_get_member(message);
+            if (iface == null || member == null)
+                return;
+            try {
+                listener.signalReceived(iface, member);
+            } catch (Throwable t) {
+                LOG.error("[SmartIM] 处理 D-Bus 信号异常: " + iface + "." + member, t);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static Memory newError() {
+        Memory error = new Memory(ERROR_SIZE);
+        dbus_error_init(error);
+        return error;
+    }
+
+    private static DBusException toException(Memory error) {
+        if (dbus_error_is_set(error) == 0)
+            return new DBusException("org.freedesktop.DBus.Error.Failed", "未知错误");
+        Pointer name = error.getPointer(0);
+        Pointer message = error.getPointer(Native.POINTER_SIZE);
+        DBusException e = new DBusException(
+                name == null ? "org.freedesktop.DBus.Error.Failed" : name.getString(0, "UTF-8"),
+                message == null ? "" : message.getString(0, "UTF-8"));
+        dbus_error_free(error);
+        return e;
+    }
+
+    private static void appendArgs(Pointer message, String[] args) throws DBusException {
+        if (args.length == 0)
+            return;
+        Memory iter = new Memory(ITER_SIZE);
+        dbus_message_iter_init_append(message, iter);
+        for (String arg : args) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            Memory value = new Memory(bytes.length + 1);
+            value.write(0, bytes, 0, bytes.length);
+            value.setByte(bytes.length, (byte) 0);
+            // append_basic 需要指向 char* 的指针，内容会被复制进消息
+            Memory ref = new Memory(Native.POINTER_SIZE);
+            ref.setPointer(0, value);
+            if (dbus_message_iter_append_basic(iter, TYPE_STRING, ref) == 0)
+                throw new DBusException("org.freedesktop.DBus.Error.NoMemory", "无法追加参数");
+        }
+    }
+
+    private static List<Object> decode(Pointer reply) {
+        List<Object> values = new ArrayList<>();
+        Memory iter = new Memory(ITER_SIZE);
+        if (dbus_message_iter_init(reply, iter) != 0)
+            readAll(iter, values);
+        return values;
+    }
+
+    private static void readAll(Pointer iter, List<Object> into) {
+        int type;
+        while ((type = dbus_message_iter_get_arg_type(iter)) != TYPE_INVALID) {
+            into.add(read(iter, type));
+            if (dbus_message_iter_next(iter) == 0)
+                break;
+        }
+    }
+
+    private static Object read(Pointer iter, int type) {
+        switch (type) {
+            case TYPE_VARIANT: {
+                Memory sub = new Memory(ITER_SIZE);
+                dbus_message_iter_recurse(iter, sub);
+                return read(sub, dbus_message_iter_get_arg_type(sub));
+            }
+            case TYPE_STRUCT:
+            case TYPE_DICT_ENTRY: {
+                Memory sub = new Memory(ITER_SIZE);
+                dbus_message_iter_recurse(iter, sub);
+                List<Object> fields = new ArrayList<>();
+                readAll(sub, fields);
+                return fields;
+            }
+            case TYPE_ARRAY: {
+                Memory sub = new Memory(ITER_SIZE);
+                boolean dict = dbus_message_iter_get_element_type(iter) == TYPE_DICT_ENTRY;
+                dbus_message_iter_recurse(iter, sub);
+                List<Object> elements = new ArrayList<>();
+                readAll(sub, elements);
+                if (!dict)
+                    return elements;
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (Object element : elements) {
+                    List<?> entry = (List<?>) element;
+                    map.put(entry.get(0), entry.size() > 1 ? entry.get(1) : null);
+                }
+                return map;
+            }
+            default:
+                return readBasic(iter, type);
+        }
+    }
+
+    private static Object readBasic(Pointer iter, int type) {
+        Memory value = new Memory(8);
+        value.clear();
+        dbus_message_iter_get_basic(iter, value);
+        switch (type) {
+            case TYPE_STRING:
+            case TYPE_OBJECT_PATH:
+            case TYPE_SIGNATURE:
+                return value.getPointer(0).getString(0, "UTF-8");
+            case TYPE_BOOLEAN:
+                return value.getInt(0) != 0;
+            case TYPE_BYTE:
+                return value.getByte(0) & 0xff;
+            case TYPE_INT16:
+                return (int) value.getShort(0);
+            case TYPE_UINT16:
+                return value.getShort(0) & 0xffff;
+            case TYPE_INT32:
+            case TYPE_UNIX_FD:
+                return value.getInt(0);
+            case TYPE_UINT32:
+                return value.getInt(0) & 0xffffffffL;
+            case TYPE_INT64:
+            case TYPE_UINT64:
+                return value.getLong(0);
+            case TYPE_DOUBLE:
+                return value.getDouble(0);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Pointer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 持有一个 +1 引用计数的 CoreFoundation 对象，{@link #close()} 时释放
+ * <p>
+ * 所有通过 Create/Copy 规则获得或显式 retain 的句柄都应包装为 CFRef，
+ * 以 try-with-resources 或明确的所有者管理生命周期。未释放的句柄总数可用于排查泄漏。
+ */
+public final class CFRef implements AutoCloseable {
+
+    private static final AtomicLong OUTSTANDING = new AtomicLong();
+
+    private final TisApi api;
+    private final Pointer pointer;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private CFRef(TisApi api, Pointer pointer) {
+        this.api = api;
+        this.pointer = pointer;
+        OUTSTANDING.incrementAndGet();
+    }
+
+    /**
+     * 接管已持有的引用 (Create/Copy 规则返回值)，空指针返回 null
+     */
+    @Nullable
+    public static CFRef own(TisApi api, @Nullable Pointer pointer) {
+        return pointer == null ? null : new CFRef(api, pointer);
+    }
+
+    /**
+     * 对借用的引用 (Get 规则返回值) 额外 retain 一次后接管
+     */
+    @Nullable
+    public static CFRef retain(TisApi api, @Nullable Pointer pointer) {
+        return pointer == null ? null : own(api, api.retain(pointer));
+    }
+
+    public Pointer get() {
+        if (closed.get())
+            throw new IllegalStateException("CFRef already released");
+        return pointer;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * 释放引用，重复调用无副作用
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            OUTSTANDING.decrementAndGet();
+            api.release(pointer);
+        }
+    }
+
+    /**
+     * 当前尚未释放的句柄数
+     */
+    public static long getOutstandingCount() {
+        return OUTSTANDING.get();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Pointer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CFString 到 Java 字符串的转换
+ * <p>
+ * <ul>
+ *     <li>优先用 CFStringGetCStringPtr 直接读取内部缓冲区，失败时才调用 CFStringGetCString</li>
+ *     <li>字节读入线程私有的复用缓冲区，不按长度临时分配数组</li>
+ *     <li>结果按 UTF-8 字节内容驻留：同一输入源 ID 反复读取时直接返回已有字符串，不再分配</li>
+ * </ul>
+ */
+final class CFStrings {
+
+    // 驻留表大小 (2 的幂)，输入源 ID 数量通常只有几十个
+    private static final int INTERN_SIZE = 256;
+
+    private static final class Entry {
+        final byte[] bytes;
+        final String value;
+
+        Entry(byte[] bytes, String value) {
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    // String 不可变，元素的竞争写入是无害的
+    private static final Entry[] interned = new Entry[INTERN_SIZE];
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private CFStrings() {
+    }
+
+    static String toJavaString(Pointer cfString) {
+        if (cfString == null)
+            return null;
+        long length = CarbonNative.CFStringGetLength(cfString);
+        if (length == 0)
+            return "";
+
+        byte[] buffer = BUFFER.get();
+        Pointer direct = CarbonNative.CFStringGetCStringPtr(cfString, CarbonNative.kCFStringEncodingUTF8);
+        if (direct != null && length <= buffer.length) {
+            // UTF-8 字节数不小于 UTF-16 长度，读取 length 个字节不会越界；全为 ASCII 时即为完整内容
+            int n = (int) length;
+            direct.read(0, buffer, 0, n);
+            if (isAscii(buffer, n))
+                return intern(buffer, n);
+        }
+
+        long size = CarbonNative.CFStringGetMaximumSizeForEncoding(length, CarbonNative.kCFStringEncodingUTF8) + 1;
+        if (size > buffer.length) {
+            buffer = new byte[(int) Math.max(size, buffer.length * 2L)];
+            BUFFER.set(buffer);
+        }
+        if (CarbonNative.CFStringGetCString(cfString, buffer, buffer.length, CarbonNative.kCFStringEncodingUTF8) == 0)
+            return null;
+        int n = 0;
+        while (n < buffer.length && buffer[n] != 0) {
+            n++;
+        }
+        return intern(buffer, n);
+    }
+
+    private static boolean isAscii(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] < 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static String intern(byte[] bytes, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (INTERN_SIZE - 1);
+
+        Entry entry = interned[slot];
+        if (entry != null && Arrays.equals(entry.bytes, 0, entry.bytes.length, bytes, 0, length))
+            return entry.value;
+
+        byte[] copy = Arrays.copyOf(bytes, length);
+        String value = new String(copy, StandardCharsets.UTF_8);
+        interned[slot] = new Entry(copy, value);
+        return value;
+    }
+}
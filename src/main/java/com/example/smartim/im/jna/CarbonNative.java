@@ -0,0 +1,60 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+/**
+ * Carbon / CoreFoundation 的直接映射 (direct mapping) 绑定
+ * <p>
+ * 通过 {@link Native#register(String)} 直接注册 native 方法，调用时不经过
+ * 接口映射 ({@code Native.load}) 那样的动态代理与反射分发，两者的开销对比见 jmh 中的 CarbonBindingBenchmark。
+ */
+final class CarbonNative {
+
+    static {
+        Native.register("Carbon");
+    }
+
+    static final int kCFStringEncodingUTF8 = 0x08000100;
+
+    static final Pointer kTISPropertyInputSourceID = loadKey("kTISPropertyInputSourceID");
+    static final Pointer kTISPropertyInputSourceCategory = loadKey("kTISPropertyInputSourceCategory");
+
+    private CarbonNative() {
+    }
+
+    private static Pointer loadKey(String name) {
+        return NativeLibrary.getInstance("Carbon").getGlobalVariableAddress(name).getPointer(0);
+    }
+
+    // TIS
+    static native Pointer TISCreateInputSourceList(Pointer properties, boolean includeAllInstalled);
+
+    static native Pointer TISCopyCurrentKeyboardInputSource();
+
+    static native int TISSelectInputSource(Pointer inputSource);
+
+    static native Pointer TISGetInputSourceProperty(Pointer inputSource, Pointer propertyKey);
+
+    // CoreFoundation
+    static native long CFArrayGetCount(Pointer theArray);
+
+    static native Pointer CFArrayGetValueAtIndex(Pointer theArray, long idx);
+
+    static native long CFStringGetLength(Pointer theString);
+
+    static native long CFStringGetMaximumSizeForEncoding(long length, int encoding);
+
+    /**
+     * 返回内部 C 字符串指针，无法直接提供时返回 null
+     */
+    static native Pointer CFStringGetCStringPtr(Pointer theString, int encoding);
+
+    // 返回值为 Boolean (unsigned char)
+    static native byte CFStringGetCString(Pointer theString, byte[] buffer, long bufferSize, int encoding);
+
+    static native Pointer CFRetain(Pointer cf);
+
+    static native void CFRelease(Pointer cf);
+}
@@ -0,0 +1,56 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Pointer;
+
+/**
+ * 基于 {@link CarbonNative} 直接映射绑定的 macOS 实现
+ */
+public class CarbonTisApi implements TisApi {
+
+    @Override
+    public Pointer createInputSourceList() {
+        return CarbonNative.TISCreateInputSourceList(null, true);
+    }
+
+    @Override
+    public long getCount(Pointer array) {
+        return CarbonNative.CFArrayGetCount(array);
+    }
+
+    @Override
+    public Pointer getValueAt(Pointer array, long index) {
+        return CarbonNative.CFArrayGetValueAtIndex(array, index);
+    }
+
+    @Override
+    public String getSourceId(Pointer source) {
+        return CFStrings.toJavaString(
+                CarbonNative.TISGetInputSourceProperty(source, CarbonNative.kTISPropertyInputSourceID));
+    }
+
+    @Override
+    public String getSourceCategory(Pointer source) {
+        return CFStrings.toJavaString(
+                CarbonNative.TISGetInputSourceProperty(source, CarbonNative.kTISPropertyInputSourceCategory));
+    }
+
+    @Override
+    public Pointer copyCurrentKeyboardInputSource() {
+        return CarbonNative.TISCopyCurrentKeyboardInputSource();
+    }
+
+    @Override
+    public int select(Pointer source) {
+        return CarbonNative.TISSelectInputSource(source);
+    }
+
+    @Override
+    public Pointer retain(Pointer ref) {
+        return CarbonNative.CFRetain(ref);
+    }
+
+    @Override
+    public void release(Pointer ref) {
+        CarbonNative.CFRelease(ref);
+    }
+}
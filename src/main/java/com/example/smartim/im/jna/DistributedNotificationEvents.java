@@ -0,0 +1,76 @@
+package com.example.smartim.im.jna;
+
+import com.example.smartim.im.InputSourceEvents;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.sun.jna.Callback;
+import com.sun.jna.Library;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.mac.CoreFoundation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * macOS 实现：通过 CFNotificationCenter 订阅 TIS 分布式通知
+ * <p>
+ * 回调在主线程 RunLoop 上触发，这里只把事件转交后台线程处理，不在主线程上做任何原生查询。
+ */
+public class DistributedNotificationEvents implements InputSourceEvents {
+
+    static final String SELECTED_CHANGED = "com.apple.Carbon.TISNotifySelectedKeyboardInputSourceChanged";
+    static final String ENABLED_CHANGED = "com.apple.Carbon.TISNotifyEnabledKeyboardInputSourcesChanged";
+
+    // CFNotificationSuspensionBehaviorDeliverImmediately
+    private static final long DELIVER_IMMEDIATELY = 4;
+
+    interface NotificationCallback extends Callback {
+        void invoke(Pointer center, Pointer observer, Pointer name, Pointer object, Pointer userInfo);
+    }
+
+    interface CFNotifications extends Library {
+        CFNotifications INSTANCE = Native.load("CoreFoundation", CFNotifications.class);
+
+        Pointer CFNotificationCenterGetDistributedCenter();
+
+        void CFNotificationCenterAddObserver(Pointer center, Pointer observer, NotificationCallback callback,
+                                             Pointer name, Pointer object, long suspensionBehavior);
+
+        void CFNotificationCenterRemoveEveryObserver(Pointer center, Pointer observer);
+    }
+
+    private final Executor executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("SmartIM Input Source Events", 1);
+    // 回调对象必须保持强引用，否则被回收后原生侧会调用到无效地址
+    private final List<Object> retained = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void subscribe(Listener listener, Disposable parent) {
+        CFNotifications cf = CFNotifications.INSTANCE;
+        Pointer center = cf.CFNotificationCenterGetDistributedCenter();
+        // 观察者仅作为唯一标识使用
+        Memory observer = new Memory(1);
+
+        NotificationCallback selected = (c, o, name, object, userInfo) -> executor.execute(listener::selectedSourceChanged);
+        NotificationCallback enabled = (c, o, name, object, userInfo) -> executor.execute(listener::enabledSourcesChanged);
+
+        List<Object> references = List.of(observer, selected, enabled);
+        retained.addAll(references);
+
+        CoreFoundation.CFStringRef selectedName = CoreFoundation.CFStringRef.createCFString(SELECTED_CHANGED);
+        CoreFoundation.CFStringRef enabledName = CoreFoundation.CFStringRef.createCFString(ENABLED_CHANGED);
+        cf.CFNotificationCenterAddObserver(center, observer, selected, selectedName.getPointer(), null, DELIVER_IMMEDIATELY);
+        cf.CFNotificationCenterAddObserver(center, observer, enabled, enabledName.getPointer(), null, DELIVER_IMMEDIATELY);
+
+        Disposer.register(parent, () -> {
+            cf.CFNotificationCenterRemoveEveryObserver(center, observer);
+            selectedName.release();
+            enabledName.release();
+            // 退订后才允许回收回调与观察者
+            retained.removeAll(references);
+        });
+    }
+}
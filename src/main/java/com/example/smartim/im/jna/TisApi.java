@@ -0,0 +1,38 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Pointer;
+
+/**
+ * TIS / CoreFoundation 原生调用的最小抽象层
+ * <p>
+ * 注册表等上层逻辑只依赖该接口，便于在非 macOS 环境下用假实现替换。
+ */
+public interface TisApi {
+
+    /**
+     * 创建已安装输入源列表 (Create 规则，调用方负责 release)
+     */
+    Pointer createInputSourceList();
+
+    long getCount(Pointer array);
+
+    Pointer getValueAt(Pointer array, long index);
+
+    String getSourceId(Pointer source);
+
+    String getSourceCategory(Pointer source);
+
+    /**
+     * 当前键盘输入源 (Copy 规则，调用方负责 release)
+     */
+    Pointer copyCurrentKeyboardInputSource();
+
+    /**
+     * 选中输入源，返回 OSStatus (0 表示成功)
+     */
+    int select(Pointer source);
+
+    Pointer retain(Pointer ref);
+
+    void release(Pointer ref);
+}
@@ -0,0 +1,203 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.ContextIndexManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.function.Supplier;
+
+/**
+ * 单个编辑器的自适应调度器 (仅在 EDT 上使用)
+ * <p>
+ * <ul>
+ *     <li>光标跨越索引已知的上下文边界，或是孤立的单次移动 (如鼠标点击) 时立即检测</li>
+ *     <li>连续事件 (按住方向键、快速输入) 期间才防抖，延迟根据观测到的事件间隔自动调整</li>
+ * </ul>
+ * 整个生命周期只复用一个预先创建的任务：防抖期间的新事件仅推迟截止时间，不再重复提交请求；
+ * 只有截止时间提前到已排队的请求之前时才重新提交。
+ */
+final class AdaptiveScheduler {
+
+    // 两次事件间隔小于该值视为处于连续事件中
+    static final long BURST_GAP_MS = 150;
+    static final int MIN_DELAY_MS = 40;
+    static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * 调度器依赖的时钟、定时器与编辑器状态，测试中替换为手动推进的实现
+     */
+    interface Environment {
+        long nanoTime();
+
+        void addRequest(Runnable task, long delayMs);
+
+        void cancelRequest(Runnable task);
+
+        /**
+         * 区间索引中光标处的上下文，未知时为 {@code null}
+         */
+        @Nullable
+        ContextType knownContext();
+
+        boolean isDisposed();
+    }
+
+    private final Environment environment;
+    // 执行一次检测与切换，返回检测到的上下文；转入后台检测时返回 null
+    private final Supplier<ContextType> action;
+    private final Runnable task = this::fire;
+
+    private long lastEventNanos = 0;
+    private double intervalEwmaMs = BURST_GAP_MS;
+    // 0 表示当前没有待执行的检测
+    private long deadlineNanos = 0;
+    private boolean scheduled = false;
+    // 已排队的请求预计执行的时间
+    private long requestNanos = 0;
+    // 最近一次检测得到的上下文，用于判断是否跨越边界
+    private ContextType lastContext = null;
+
+    AdaptiveScheduler(Editor editor, Alarm alarm, ContextIndexManager indexManager, Supplier<ContextType> action) {
+        this(new EditorEnvironment(editor, alarm, indexManager), action);
+    }
+
+    @TestOnly
+    AdaptiveScheduler(Environment environment, Supplier<ContextType> action) {
+        this.environment = environment;
+        this.action = action;
+    }
+
+    /**
+     * @param maxDelayMs 防抖延迟上限
+     */
+    void onCaretMoved(int maxDelayMs) {
+        long now = environment.nanoTime();
+        long intervalMs = (now - lastEventNanos) / 1_000_000;
+        lastEventNanos = now;
+
+        boolean burst = intervalMs < BURST_GAP_MS;
+        if (burst)
+            intervalEwmaMs = EWMA_ALPHA * intervalMs + (1 - EWMA_ALPHA) * intervalEwmaMs;
+
+        ContextType known = environment.knownContext();
+        if (!burst || (known != null && known != lastContext)) {
+            runNow();
+            return;
+        }
+
+        schedule(now, Math.max(MIN_DELAY_MS, Math.min(maxDelayMs, Math.round(intervalEwmaMs * 2))));
+    }
+
+    /**
+     * 在指定延迟后检测一次，期间的光标事件照常调度
+     */
+    void runLater(int delayMs) {
+        schedule(environment.nanoTime(), delayMs);
+    }
+
+    private void schedule(long now, long delayMs) {
+        deadlineNanos = now + delayMs * 1_000_000L;
+        // 已排队的请求会在到期时按新的截止时间顺延
+        if (scheduled && deadlineNanos >= requestNanos)
+            return;
+        if (scheduled)
+            environment.cancelRequest(task);
+        scheduled = true;
+        requestNanos = deadlineNanos;
+        environment.addRequest(task, delayMs);
+    }
+
+    /**
+     * 后台检测完成后回报结果
+     */
+    void onDetected(ContextType context) {
+        lastContext = context;
+    }
+
+    /**
+     * 取消待执行的检测，会话销毁时调用
+     */
+    void cancel() {
+        deadlineNanos = 0;
+        if (scheduled) {
+            scheduled = false;
+            environment.cancelRequest(task);
+        }
+    }
+
+    /**
+     * 立即检测一次，取消待执行的防抖任务
+     */
+    void runNow() {
+        // 已提交的任务到期后发现无截止时间会直接结束
+        deadlineNanos = 0;
+        lastContext = action.get();
+    }
+
+    /**
+     * 当前防抖的剩余时间 (毫秒)，没有待执行的检测时为 -1
+     */
+    @TestOnly
+    long getPendingDelayMs() {
+        return deadlineNanos == 0 ? -1 : (deadlineNanos - environment.nanoTime()) / 1_000_000;
+    }
+
+    private void fire() {
+        if (deadlineNanos == 0) {
+            scheduled = false;
+            return;
+        }
+        long now = environment.nanoTime();
+        long remainingMs = (deadlineNanos - now) / 1_000_000;
+        if (remainingMs > 0) {
+            requestNanos = deadlineNanos;
+            environment.addRequest(task, remainingMs);
+            return;
+        }
+        scheduled = false;
+        deadlineNanos = 0;
+        if (!environment.isDisposed())
+            lastContext = action.get();
+    }
+
+    private static final class EditorEnvironment implements Environment {
+        private final Editor editor;
+        private final Alarm alarm;
+        private final ContextIndexManager indexManager;
+
+        EditorEnvironment(Editor editor, Alarm alarm, ContextIndexManager indexManager) {
+            this.editor = editor;
+            this.alarm = alarm;
+            this.indexManager = indexManager;
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void addRequest(Runnable task, long delayMs) {
+            alarm.addRequest(task, delayMs);
+        }
+
+        @Override
+        public void cancelRequest(Runnable task) {
+            alarm.cancelRequest(task);
+        }
+
+        @Nullable
+        @Override
+        public ContextType knownContext() {
+            return indexManager.lookup(editor, editor.getCaretModel().getOffset());
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return editor.isDisposed();
+        }
+    }
+}
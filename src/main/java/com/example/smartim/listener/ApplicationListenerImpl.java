@@ -1,41 +1,66 @@
 package com.example.smartim.listener;
 
-import com.example.smartim.im.InputMethodService;
-import com.example.smartim.im.MacInputMethodService;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SettingsSnapshot;
 import com.example.smartim.settings.SmartIMSettings;
 import com.intellij.openapi.application.ApplicationActivationListener;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.IdeFrame;
+import com.intellij.openapi.wm.ToolWindowManager;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * 监听 IDE 激活/失去焦点事件
+ * <p>
+ * 回到 IDE 时立即恢复离开前的输入法，无需等待下一次光标事件。
  */
 public class ApplicationListenerImpl implements ApplicationActivationListener {
     private static final Logger LOG = Logger.getInstance(ApplicationListenerImpl.class);
-    private final InputMethodService imService = new MacInputMethodService();
+    private final SwitchExecutor switchExecutor = SwitchExecutor.getInstance();
 
     @Override
     public void applicationDeactivated(@NotNull IdeFrame ideFrame) {
-        SmartIMSettings settings = SmartIMSettings.getInstance();
+        SettingsSnapshot settings = SmartIMSettings.snapshot();
         if (!settings.isEnabled())
             return;
 
-        String mode = settings.leaveIDEMode;
+        SettingsSnapshot.LeaveMode mode = settings.getLeaveMode();
         LOG.info("[SmartIM] 监测到 IDE 失去焦点, 离开模式配置为: " + mode);
 
-        // 处理可能的遗留配置或直接切换
-        if ("中文".equals(mode) || "默认中文".equals(mode)) {
-            imService.switchToNative();
-        } else if ("英文".equals(mode) || "默认英文".equals(mode)) {
-            imService.switchToEnglish();
-        } else if (mode != null && !mode.isEmpty() && !"保持现状".equals(mode)) {
-            imService.switchByName(mode);
+        switch (mode) {
+            case CHINESE:
+                switchExecutor.switchToNative();
+                break;
+            case ENGLISH:
+                switchExecutor.switchToEnglish();
+                break;
+            case NAMED:
+                switchExecutor.switchTo(settings.getDecisionTable().getLeaveTarget());
+                break;
+            default:
+                break;
         }
     }
 
     @Override
     public void applicationActivated(@NotNull IdeFrame ideFrame) {
         LOG.debug("[SmartIM] 监测到 IDE 获得焦点");
+        SettingsSnapshot settings = SmartIMSettings.snapshot();
+        Project project = ideFrame.getProject();
+        if (!settings.isEnabled() || project == null)
+            return;
+
+        // 离开 IDE 时可能已切换过输入法：焦点在编辑器时立即恢复当前文件记住的输入法，在工具窗口时按焦点规则切换
+        ToolWindowManager manager = ToolWindowManager.getInstance(project);
+        String activeId = manager.isEditorComponentActive() ? null : manager.getActiveToolWindowId();
+        if (activeId == null) {
+            EditorSessionRegistry.getInstance().restoreSelected(project);
+            return;
+        }
+        ResolvedTarget target = settings.getDecisionTable().forToolWindowFocus(activeId);
+        if (target != null)
+            switchExecutor.switchTo(target);
     }
 }
@@ -0,0 +1,161 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector;
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.ContextIndexManager;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.LanguageSettingsRegistry;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SettingsSnapshot;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.codeInsight.editorActions.QuoteHandler;
+import com.intellij.codeInsight.editorActions.TypedHandler;
+import com.intellij.codeInsight.editorActions.TypedHandlerDelegate;
+import com.intellij.lang.CodeDocumentationAwareCommenter;
+import com.intellij.lang.Commenter;
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageCommenters;
+import com.intellij.openapi.editor.CaretVisualAttributes;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorKind;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预测式切换：键入注释或字符串的起始定界符时立即切换，不等待防抖与重新解析
+ * <p>
+ * 注释定界符取自当前语言的 {@link Commenter}，引号是否开启字面量由语言的 {@link QuoteHandler} 判断。
+ * 预测只是提前量，光标移动后的常规检测流程会确认或纠正结果。
+ */
+public class DelimiterTypedHandler extends TypedHandlerDelegate {
+
+    private static final class Delimiter {
+        final String text;
+        final ContextType type;
+
+        Delimiter(String text, ContextType type) {
+            this.text = text;
+            this.type = type;
+        }
+    }
+
+    // 按长度降序，保证 "/**" 先于 "/*" 匹配；弱引用键，语言插件卸载后可回收
+    private static final Map<Language, Delimiter[]> DELIMITERS = ContainerUtil.createConcurrentWeakMap();
+
+    @NotNull
+    @Override
+    public Result charTyped(char c, @NotNull Project project, @NotNull Editor editor, @NotNull PsiFile file) {
+        SettingsSnapshot settings = SmartIMSettings.snapshot();
+        if (!settings.isEnabled() || editor.getEditorKind() != EditorKind.MAIN_EDITOR)
+            return Result.CONTINUE;
+
+        ContextType predicted = predict(c, editor, file);
+        if (predicted == null)
+            return Result.CONTINUE;
+
+        DecisionTable table = settings.getDecisionTable();
+        String languageKey = LanguageSettingsRegistry.getInstance().getLanguageKey(editor, table);
+        ResolvedTarget target = table.resolve(table.forLanguage(languageKey), languageKey, predicted, null);
+        if (target.isKeep())
+            return Result.CONTINUE;
+
+        SwitchExecutor.getInstance().switchTo(target);
+        CaretVisualAttributes caret = target.getCaretAttributes();
+        if (caret != null)
+            editor.getCaretModel().getPrimaryCaret().setVisualAttributes(caret);
+        return Result.CONTINUE;
+    }
+
+    @Nullable
+    static ContextType predict(char c, Editor editor, PsiFile file) {
+        CharSequence text = editor.getDocument().getImmutableCharSequence();
+        int offset = editor.getCaretModel().getOffset();
+
+        if (c == '"' || c == '\'' || c == '`')
+            return predictQuote(editor, file, offset - 1);
+
+        for (Delimiter delimiter : delimiters(file.getLanguage())) {
+            String d = delimiter.text;
+            int start = offset - d.length();
+            if (d.charAt(d.length() - 1) != c || start < 0 || !regionEquals(text, start, d))
+                continue;
+            return isCodeBefore(editor, start) ? delimiter.type : null;
+        }
+        return null;
+    }
+
+    /**
+     * 刚键入的引号开启了字符串字面量时返回 {@link ContextType#STRING_LITERAL}
+     * <p>
+     * 高亮器随文档同步更新，引号处的 token 以它开头即为左引号，无论右引号是否已被自动补全；
+     * 输入右引号 (或越过自动补全的右引号) 时 token 在它之前开始。字符字面量等非字符串的字面量不预测。
+     */
+    @Nullable
+    private static ContextType predictQuote(Editor editor, PsiFile file, int quote) {
+        if (quote < 0 || !(editor instanceof EditorEx))
+            return null;
+        QuoteHandler handler = TypedHandler.getQuoteHandler(file, editor);
+        if (handler == null)
+            return null;
+        HighlighterIterator iterator = ((EditorEx) editor).getHighlighter().createIterator(quote);
+        if (iterator.atEnd() || !handler.isOpeningQuote(iterator, quote))
+            return null;
+        // 未闭合的字面量会延伸到行尾，内容恰好形如常量时同样是字符串
+        ContextType literal = ContextDetector.detectLexical(editor, quote);
+        return literal == ContextType.STRING_LITERAL || literal == ContextType.CONSTANT_LITERAL
+                ? ContextType.STRING_LITERAL : null;
+    }
+
+    /**
+     * 定界符之前是否处于代码中；索引尚未覆盖该位置时视为代码，由后续检测纠正
+     */
+    private static boolean isCodeBefore(Editor editor, int start) {
+        if (start <= 0)
+            return true;
+        ContextType before = ContextIndexManager.getInstance().lookup(editor, start - 1);
+        return before == null || before == ContextType.CODE;
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(start + i) != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static Delimiter[] delimiters(Language language) {
+        return DELIMITERS.computeIfAbsent(language, l -> {
+            List<Delimiter> list = new ArrayList<>();
+            Commenter commenter = LanguageCommenters.INSTANCE.forLanguage(l);
+            if (commenter != null) {
+                add(list, commenter.getLineCommentPrefix(), ContextType.SINGLE_LINE_COMMENT);
+                add(list, commenter.getBlockCommentPrefix(), ContextType.MULTI_LINE_COMMENT);
+                if (commenter instanceof CodeDocumentationAwareCommenter)
+                    add(list, ((CodeDocumentationAwareCommenter) commenter).getDocumentationCommentPrefix(),
+                            ContextType.DOC_COMMENT);
+            }
+            list.sort(Comparator.comparingInt((Delimiter d) -> d.text.length()).reversed());
+            return list.toArray(new Delimiter[0]);
+        });
+    }
+
+    private static void add(List<Delimiter> list, String prefix, ContextType type) {
+        if (prefix == null)
+            return;
+        String trimmed = prefix.trim();
+        if (!trimmed.isEmpty())
+            list.add(new Delimiter(trimmed, type));
+    }
+}
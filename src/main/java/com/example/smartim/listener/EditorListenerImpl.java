@@ -2,160 +2,214 @@ package com.example.smartim.listener;
 
 import com.example.smartim.core.ContextDetector;
 import com.example.smartim.core.ContextDetector.ContextType;
-import com.example.smartim.im.InputMethodService;
-import com.example.smartim.im.MacInputMethodService;
+import com.example.smartim.core.ContextIndexManager;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.EditorClassifier;
+import com.example.smartim.core.KeywordMatcher;
+import com.example.smartim.core.LanguageSettingsRegistry;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.metrics.ContextDetectedEvent;
+import com.example.smartim.metrics.SmartIMMetrics;
 import com.example.smartim.settings.SmartIMSettings;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.editor.event.CaretEvent;
-import com.intellij.openapi.editor.event.CaretListener;
 import com.intellij.openapi.editor.event.EditorFactoryEvent;
 import com.intellij.openapi.editor.event.EditorFactoryListener;
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.PsiDocumentManager;
-import com.intellij.psi.PsiFile;
-import com.intellij.openapi.editor.CaretVisualAttributes;
-import com.intellij.util.Alarm;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
 
 /**
  * 编辑器监听器：实现核心切换逻辑
+ * <p>
+ * 索引与词法高亮能确定上下文时直接在 EDT 上完成；需要 PSI 时转入后台非阻塞读操作，
+ * 按编辑器合并 (新请求取消旧请求)、随编辑器会话销毁而失效、遇写操作自动取消重试，
+ * 最后只在 EDT 上执行廉价的决策与切换提交。
+ * <p>
+ * 每个编辑器的监听器与状态由 {@link EditorSessionRegistry} 管理，编辑器释放时一并移除。
+ * 依赖的服务在构造时取一次，逐事件的检测与决策不再查找服务。
  */
 public class EditorListenerImpl implements EditorFactoryListener {
     private static final Logger LOG = Logger.getInstance(EditorListenerImpl.class);
 
-    private final InputMethodService imService = new MacInputMethodService();
-    private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, null);
+    private final SmartIMSettings settings;
+    private final LanguageSettingsRegistry languages;
+    private final ContextIndexManager indexManager;
+    private final SwitchExecutor executor;
+    private final EditorSessionRegistry sessions;
+    private final SmartIMMetrics metrics;
 
-    @Override
-    public void editorCreated(@NotNull EditorFactoryEvent event) {
-        Editor editor = event.getEditor();
-        LOG.info("[SmartIM] 编辑器已创建，注册光标监听器");
-        editor.getCaretModel().addCaretListener(new CaretListener() {
-            @Override
-            public void caretPositionChanged(@NotNull CaretEvent e) {
-                SmartIMSettings settings = SmartIMSettings.getInstance();
-                if (!settings.isEnabled())
-                    return;
-
-                alarm.cancelAllRequests();
-                alarm.addRequest(() -> {
-                    if (editor.isDisposed())
-                        return;
-                    ApplicationManager.getApplication().runReadAction(() -> {
-                        updateInputMethod(editor, settings);
-                    });
-                }, settings.getDebounceMs());
-            }
-        });
+    public EditorListenerImpl() {
+        this(SmartIMSettings.getInstance(), LanguageSettingsRegistry.getInstance(), ContextIndexManager.getInstance(),
+                SwitchExecutor.getInstance(), EditorSessionRegistry.getInstance(), SmartIMMetrics.getInstance());
     }
 
-    private void updateInputMethod(Editor editor, SmartIMSettings settings) {
-        ContextType context = ContextDetector.getContext(editor);
-        SmartIMSettings.ContextSettings langSettings = getSettingsForEditor(editor, settings);
-
-        LOG.info("[SmartIM] 触发上下文检测 -> 场景: " + context + ", 手动关键词匹配检查中...");
-
-        String targetIM = "保持现状";
-
-        // 处理自定义关键词 (在 CODE 场景下生效)
-        if (context == ContextType.CODE && !langSettings.customKeywords.isEmpty()) {
-            if (checkCustomKeywords(editor, langSettings.customKeywords)) {
-                LOG.info("[SmartIM] 命中了自定义场景匹配关键词 -> 切换至中文");
-                targetIM = "默认中文";
-            }
-        }
+    /**
+     * 供测试替换依赖，例如同步记录切换的 {@link SwitchExecutor}
+     */
+    EditorListenerImpl(SmartIMSettings settings, LanguageSettingsRegistry languages, ContextIndexManager indexManager,
+                       SwitchExecutor executor, EditorSessionRegistry sessions, SmartIMMetrics metrics) {
+        this.settings = settings;
+        this.languages = languages;
+        this.indexManager = indexManager;
+        this.executor = executor;
+        this.sessions = sessions;
+        this.metrics = metrics;
+    }
 
-        if (targetIM.equals("保持现状")) {
-            switch (context) {
-                case STRING_LITERAL:
-                    targetIM = langSettings.stringLiteral;
-                    break;
-                case CONSTANT_LITERAL:
-                    targetIM = langSettings.constantLiteral;
-                    break;
-                case SINGLE_LINE_COMMENT:
-                    targetIM = langSettings.singleComment;
-                    break;
-                case MULTI_LINE_COMMENT:
-                    targetIM = langSettings.multiComment;
-                    break;
-                case DOC_COMMENT:
-                    targetIM = langSettings.docComment;
-                    break;
-                case GIT_COMMIT:
-                case CHINESE_KEYWORD:
-                    targetIM = settings.chineseIMName;
-                    break;
-                case CODE:
-                default:
-                    targetIM = settings.englishIMName;
-                    break;
-            }
+    /**
+     * 后台检测结果，JFR 事件在检测线程上计时，回到 EDT 后补全字段再提交
+     */
+    private static final class Detection {
+        final ContextType context;
+        @Nullable
+        final ContextDetectedEvent event;
+
+        Detection(ContextType context, @Nullable ContextDetectedEvent event) {
+            this.context = context;
+            this.event = event;
         }
+    }
 
-        LOG.info("[SmartIM] 最终切换决策: [" + targetIM + "] (基于场景配置)");
+    @Override
+    public void editorCreated(@NotNull EditorFactoryEvent event) {
+        Editor editor = event.getEditor();
+        EditorClassifier.Mode mode = EditorClassifier.classify(editor, settings.getSnapshot().getEditorFilter());
+        LOG.debug("[SmartIM] 编辑器已创建, 模式: " + mode);
+        sessions.open(editor, mode, this::detect);
+    }
 
-        imService.switchByName(targetIM);
-        // 这里判断一下颜色：如果是基础设置里的中文，或者名称里带中文特征，变颜色
-        boolean shouldBeChineseColor = targetIM.equals(settings.chineseIMName)
-                || targetIM.contains("拼音")
-                || targetIM.contains("输入法")
-                || targetIM.contains("Pinyin");
-        updateCaretColor(editor, settings, shouldBeChineseColor);
+    @Override
+    public void editorReleased(@NotNull EditorFactoryEvent event) {
+        sessions.release(event.getEditor());
     }
 
-    private void updateCaretColor(Editor editor, SmartIMSettings settings, boolean isChinese) {
-        String hex = isChinese ? settings.chineseCursorColor : settings.englishCursorColor;
-        LOG.debug("[SmartIM] 尝试更新光标颜色为: " + hex);
+    /**
+     * 在 EDT 上调用
+     *
+     * @return 同步得到的上下文；转入后台检测时返回 {@code null}，结果稍后通过 {@link AdaptiveScheduler#onDetected} 回报
+     */
+    private ContextType detect(EditorSession session) {
+        Editor editor = session.getEditor();
+        long edtStart = metrics.startTimer();
         try {
-            java.awt.Color color = java.awt.Color.decode(hex);
-            editor.getCaretModel().getPrimaryCaret().setVisualAttributes(
-                    new CaretVisualAttributes(color, CaretVisualAttributes.Weight.NORMAL));
-        } catch (Exception e) {
-            LOG.warn("[SmartIM] 光标颜色解析失败: " + hex);
+            int offset = editor.getCaretModel().getOffset();
+            // 未在录制时为 null，不创建事件对象
+            ContextDetectedEvent event = ContextDetectedEvent.beginIfEnabled();
+            if (session.getMode() == EditorClassifier.Mode.PINNED)
+                return apply(session, offset, ContextType.GIT_COMMIT, event);
+
+            long start = metrics.startTimer();
+            boolean lexerFastPath = settings.getSnapshot().isLexerFastPath();
+            ContextType fast = ApplicationManager.getApplication().runReadAction((Computable<ContextType>) () ->
+                    ContextDetector.detectFast(editor, offset, indexManager, lexerFastPath));
+            if (fast != null) {
+                metrics.recordDetection(start);
+                if (event != null)
+                    event.end();
+                return apply(session, offset, fast, event);
+            }
+
+            Project project = editor.getProject();
+            Document document = editor.getDocument();
+            ReadAction.nonBlocking(() -> {
+                        ContextDetectedEvent psiEvent = ContextDetectedEvent.beginIfEnabled();
+                        long psiStart = metrics.startTimer();
+                        ContextType context = ContextDetector.detectWithPsi(project, document, offset);
+                        metrics.recordDetection(psiStart);
+                        if (psiEvent != null)
+                            psiEvent.end();
+                        return new Detection(context, psiEvent);
+                    })
+                    .withDocumentsCommitted(project)
+                    .coalesceBy(session, EditorListenerImpl.class)
+                    .expireWith(session)
+                    .expireWith(project)
+                    .finishOnUiThread(ModalityState.any(), detection -> {
+                        // 光标已移动时丢弃结果，新位置的检测已在排队
+                        if (editor.getCaretModel().getOffset() != offset)
+                            return;
+                        session.getScheduler().onDetected(apply(session, offset, detection.context, detection.event));
+                    })
+                    .submit(AppExecutorUtil.getAppExecutorService());
+            return null;
+        } finally {
+            metrics.recordEdtTime(edtStart);
         }
     }
 
-    private SmartIMSettings.ContextSettings getSettingsForEditor(Editor editor, SmartIMSettings settings) {
-        Project project = editor.getProject();
-        if (project == null)
-            return settings.generalSettings;
-
-        PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(editor.getDocument());
-        if (psiFile == null)
-            return settings.generalSettings;
-
-        String langId = psiFile.getLanguage().getID();
-        LOG.debug("[SmartIM] 当前文件语言 ID: " + langId);
+    /**
+     * 根据检测结果做出决策并提交切换，并按文件记住供恢复使用，在 EDT 上调用
+     *
+     * @return 最终上下文 (可能因自定义关键词变为 {@link ContextType#CHINESE_KEYWORD})
+     */
+    private ContextType apply(EditorSession session, int offset, ContextType detected,
+                              @Nullable ContextDetectedEvent event) {
+        Editor editor = session.getEditor();
+        return ApplicationManager.getApplication().runReadAction((Computable<ContextType>) () -> {
+            ContextType context = detected;
+            DecisionTable table = settings.getSnapshot().getDecisionTable();
+            String languageKey = languages.getLanguageKey(editor, table);
+            DecisionTable.LanguageTable language = table.forLanguage(languageKey);
+
+            // 处理自定义关键词 (在 CODE 场景下生效)
+            if (context == ContextType.CODE && !language.getKeywords().isEmpty()
+                    && checkCustomKeywords(editor, offset, language.getKeywords())) {
+                context = ContextType.CHINESE_KEYWORD;
+            }
 
-        String langIdLower = langId.toLowerCase();
-        if (langIdLower.equals("java"))
-            return settings.javaSettings;
-        if (langIdLower.equals("kotlin"))
-            return settings.kotlinSettings;
-        if (langIdLower.contains("python"))
-            return settings.pythonSettings;
+            ResolvedTarget target = table.resolve(language, languageKey, context, getToolWindowId(editor, table));
+            session.remember(target, table, context);
+            if (event != null && event.shouldCommit()) {
+                event.context = context.name();
+                event.language = languageKey;
+                event.offset = offset;
+                event.target = target.isKeep() ? null : target.getImName();
+                event.commit();
+            }
 
-        return settings.generalSettings;
+            // 原生切换与脚本兜底均在后台执行，避免阻塞 EDT；与上一次提交的目标相同时不再提交
+            session.switchTo(target, executor);
+            return context;
+        });
     }
 
-    private boolean checkCustomKeywords(Editor editor, String keywords) {
-        // 获取当前行文本
-        int offset = editor.getCaretModel().getOffset();
-        int lineNum = editor.getDocument().getLineNumber(offset);
-        int lineStart = editor.getDocument().getLineStartOffset(lineNum);
-        try {
-            String lineText = editor.getDocument().getText(new com.intellij.openapi.util.TextRange(lineStart, offset));
-            for (String keyword : keywords.split(";")) {
-                String trimmed = keyword.trim();
-                if (!trimmed.isEmpty() && lineText.contains(trimmed)) {
-                    return true;
-                }
-            }
-        } catch (Exception ignored) {
+    /**
+     * 包含该编辑器的工具窗口 (如控制台、终端) 的 ID，位于主编辑区时返回 {@code null}，仅在存在工具窗口规则时才查询
+     * <p>
+     * 按组件层级判断而不是取当前激活的工具窗口：焦点停留在工具窗口时，主编辑区中的光标事件不应套用工具窗口规则。
+     */
+    @Nullable
+    private static String getToolWindowId(Editor editor, DecisionTable table) {
+        Project project = editor.getProject();
+        if (project == null || !table.hasToolWindowRules())
+            return null;
+        JComponent component = editor.getComponent();
+        ToolWindowManager manager = ToolWindowManager.getInstance(project);
+        for (String id : manager.getToolWindowIds()) {
+            ToolWindow window = manager.getToolWindow(id);
+            // 隐藏的工具窗口中不会有正在移动光标的编辑器，跳过也避免触发其内容的创建
+            if (window != null && window.isVisible() && SwingUtilities.isDescendingFrom(component, window.getComponent()))
+                return id;
         }
-        return false;
+        return null;
+    }
+
+    private boolean checkCustomKeywords(Editor editor, int offset, KeywordMatcher keywords) {
+        // 在当前行行首到光标之间原地匹配，不复制文本
+        Document document = editor.getDocument();
+        int lineStart = document.getLineStartOffset(document.getLineNumber(offset));
+        return keywords.matches(document.getImmutableCharSequence(), lineStart, offset);
     }
 }
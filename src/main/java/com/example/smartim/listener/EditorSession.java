@@ -0,0 +1,166 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.ContextIndexManager;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.EditorClassifier;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SettingsSnapshot;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.CaretVisualAttributes;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.ex.FocusChangeListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * 单个编辑器的会话状态 (仅在 EDT 上使用)
+ * <p>
+ * 光标监听器、调度器以及后台检测任务都挂在会话这个 {@link Disposable} 下，
+ * 编辑器释放时由 {@link EditorSessionRegistry} 统一销毁，不再留下任何指向编辑器的引用。
+ * <p>
+ * 切换标签或回到 IDE 时从 {@link FileInputMethodMemory} 取回该文件最近一次决策的目标输入法立即恢复，
+ * 无需等待光标事件与检测。
+ */
+final class EditorSession implements Disposable {
+
+    private final Editor editor;
+    private final EditorClassifier.Mode mode;
+    private final AdaptiveScheduler scheduler;
+
+    private boolean disposed = false;
+
+    // 本会话最近一次提交的目标及其请求序号，用于跳过重复提交
+    @Nullable
+    private ResolvedTarget lastTarget;
+    private long lastSequence;
+
+    /**
+     * @param mode     {@link EditorClassifier.Mode#FULL} 或 {@link EditorClassifier.Mode#PINNED}
+     * @param detector 执行一次检测与切换，返回检测到的上下文；转入后台检测时返回 {@code null}
+     */
+    EditorSession(Editor editor, EditorClassifier.Mode mode, Alarm alarm, ContextIndexManager indexManager,
+                  Function<EditorSession, ContextType> detector) {
+        this.editor = editor;
+        this.mode = mode;
+        this.scheduler = new AdaptiveScheduler(editor, alarm, indexManager, () -> detector.apply(this));
+    }
+
+    /**
+     * 注册监听器，随会话一起移除
+     */
+    void attach() {
+        if (mode == EditorClassifier.Mode.PINNED) {
+            // 固定模式不关心光标位置，获得焦点时切换一次即可
+            if (editor instanceof EditorEx) {
+                ((EditorEx) editor).addFocusListener(new FocusChangeListener() {
+                    @Override
+                    public void focusGained(@NotNull Editor focused) {
+                        if (SmartIMSettings.snapshot().isEnabled())
+                            scheduler.runNow();
+                    }
+                }, this);
+            }
+            return;
+        }
+
+        editor.getCaretModel().addCaretListener(new CaretListener() {
+            @Override
+            public void caretPositionChanged(@NotNull CaretEvent e) {
+                SettingsSnapshot settings = SmartIMSettings.snapshot();
+                if (!settings.isEnabled())
+                    return;
+
+                scheduler.onCaretMoved(settings.getDebounceMs());
+            }
+        }, this);
+    }
+
+    Editor getEditor() {
+        return editor;
+    }
+
+    /**
+     * 记住本次决策的目标与上下文，不属于任何文件的编辑器不记录
+     */
+    void remember(ResolvedTarget target, DecisionTable table, ContextType context) {
+        Project project = editor.getProject();
+        VirtualFile file = FileInputMethodMemory.fileOf(editor);
+        if (project != null && file != null)
+            FileInputMethodMemory.getInstance(project).remember(file, target, table, context);
+    }
+
+    /**
+     * 立即恢复该文件记住的输入法，防抖延迟后再检测一次加以确认；没有可用记录时直接检测
+     */
+    void restore() {
+        SettingsSnapshot settings = SmartIMSettings.snapshot();
+        FileInputMethodMemory.Entry entry = recall(settings.getDecisionTable());
+        if (entry == null) {
+            scheduler.runNow();
+            return;
+        }
+        switchTo(entry.getTarget(), SwitchExecutor.getInstance());
+        // 记住的上下文即为调度器已知的上下文，确认检测之前的连续移动也能识别跨越边界
+        scheduler.onDetected(entry.getContext());
+        scheduler.runLater(settings.getDebounceMs());
+    }
+
+    /**
+     * 提交切换并应用目标的光标样式
+     * <p>
+     * 目标与本会话上一次提交的相同、且此后执行器没有收到其他请求 (其他编辑器、焦点变化、分隔符预测等) 时，
+     * 输入法仍停在该目标上，直接跳过；在代码中连续移动光标或输入时因此不会反复提交同一个目标。
+     *
+     * @return 是否提交了切换
+     */
+    boolean switchTo(ResolvedTarget target, SwitchExecutor executor) {
+        if (target.isKeep())
+            return false;
+        if (target == lastTarget && executor.getSubmittedCount() == lastSequence)
+            return false;
+        lastSequence = executor.switchTo(target);
+        lastTarget = target;
+        CaretVisualAttributes caret = target.getCaretAttributes();
+        if (caret != null)
+            editor.getCaretModel().getPrimaryCaret().setVisualAttributes(caret);
+        return true;
+    }
+
+    @Nullable
+    private FileInputMethodMemory.Entry recall(DecisionTable table) {
+        Project project = editor.getProject();
+        VirtualFile file = FileInputMethodMemory.fileOf(editor);
+        if (project == null || file == null)
+            return null;
+        return FileInputMethodMemory.getInstance(project).recall(file, table);
+    }
+
+    EditorClassifier.Mode getMode() {
+        return mode;
+    }
+
+    AdaptiveScheduler getScheduler() {
+        return scheduler;
+    }
+
+    boolean isDisposed() {
+        return disposed;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        scheduler.cancel();
+    }
+}
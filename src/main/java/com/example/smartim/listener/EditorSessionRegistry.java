@@ -0,0 +1,157 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.ContextIndexManager;
+import com.example.smartim.core.EditorClassifier;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.settings.SmartIMSettingsListener;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * 编辑器会话注册表 (仅在 EDT 上使用)
+ * <p>
+ * 会话保存在编辑器自身的 user data 中，注册表只持有计数；会话以注册表为父 {@link Disposable}，
+ * 插件卸载时一并销毁。编辑器释放时会话立即销毁，因此打开/关闭大量编辑器 (差异视图、控制台、预览)
+ * 后内存占用保持不变，可在统计面板中核对创建数与释放数。
+ * <p>
+ * 被 {@link EditorClassifier} 判定为跳过的编辑器不创建会话，只计数。
+ */
+public final class EditorSessionRegistry implements Disposable {
+    private static final Logger LOG = Logger.getInstance(EditorSessionRegistry.class);
+
+    private static final Key<EditorSession> SESSION_KEY = Key.create("SmartIM.EditorSession");
+
+    // 所有会话共用一个调度队列，注册表销毁时取消全部待执行检测
+    private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    // 调度器判断是否跨越上下文边界时查询
+    private final ContextIndexManager indexManager = ContextIndexManager.getInstance();
+
+    private int active = 0;
+    private long opened = 0;
+    private long released = 0;
+    private long skipped = 0;
+
+    public EditorSessionRegistry() {
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(SmartIMSettingsListener.TOPIC, snapshot -> {
+                    // 关闭插件时丢弃所有待执行的检测，避免关闭后仍有切换
+                    if (!snapshot.isEnabled())
+                        ApplicationManager.getApplication().invokeLater(this::cancelPending);
+                });
+
+        SmartIMMetrics metrics = SmartIMMetrics.getInstance();
+        metrics.registerGauge("editorSessionsActive", "编辑器会话", this::getActiveCount);
+        metrics.registerGauge("editorSessionsOpened", "累计创建会话", this::getOpenedCount);
+        metrics.registerGauge("editorSessionsReleased", "累计释放会话", this::getReleasedCount);
+        metrics.registerGauge("editorsSkipped", "跳过的编辑器", this::getSkippedCount);
+    }
+
+    public static EditorSessionRegistry getInstance() {
+        return ApplicationManager.getApplication().getService(EditorSessionRegistry.class);
+    }
+
+    /**
+     * 按分类结果为编辑器创建会话并注册监听器；已存在时直接返回
+     *
+     * @return 编辑器被跳过时返回 {@code null}
+     */
+    @Nullable
+    EditorSession open(@NotNull Editor editor, @NotNull EditorClassifier.Mode mode,
+                       @NotNull Function<EditorSession, ContextType> detector) {
+        EditorSession session = editor.getUserData(SESSION_KEY);
+        if (session != null)
+            return session;
+        if (mode == EditorClassifier.Mode.SKIP) {
+            skipped++;
+            return null;
+        }
+
+        session = new EditorSession(editor, mode, alarm, indexManager, detector);
+        Disposer.register(this, session);
+        session.attach();
+        editor.putUserData(SESSION_KEY, session);
+        active++;
+        opened++;
+        return session;
+    }
+
+    @Nullable
+    EditorSession get(@NotNull Editor editor) {
+        return editor.getUserData(SESSION_KEY);
+    }
+
+    /**
+     * 恢复项目当前选中编辑器的输入法
+     *
+     * @see EditorSession#restore()
+     */
+    void restoreSelected(@NotNull Project project) {
+        Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+        EditorSession session = editor == null ? null : get(editor);
+        if (session != null)
+            session.restore();
+    }
+
+    private void cancelPending() {
+        for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+            EditorSession session = get(editor);
+            if (session != null)
+                session.getScheduler().cancel();
+        }
+    }
+
+    /**
+     * 编辑器释放时调用，移除监听器并取消待执行的检测
+     */
+    void release(@NotNull Editor editor) {
+        EditorSession session = editor.getUserData(SESSION_KEY);
+        if (session == null)
+            return;
+        editor.putUserData(SESSION_KEY, null);
+        Disposer.dispose(session);
+        active--;
+        released++;
+    }
+
+    /**
+     * 当前存活的会话数，应与打开的编辑器数一致
+     */
+    public int getActiveCount() {
+        return active;
+    }
+
+    public long getOpenedCount() {
+        return opened;
+    }
+
+    public long getReleasedCount() {
+        return released;
+    }
+
+    /**
+     * 因编辑器类型或过滤规则而未创建会话的编辑器数
+     */
+    public long getSkippedCount() {
+        return skipped;
+    }
+
+    @Override
+    public void dispose() {
+        if (active != 0)
+            LOG.debug("[SmartIM] 注册表销毁时仍有 " + active + " 个编辑器会话");
+        active = 0;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.ResolvedTarget;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按文件记住最近一次决策的目标输入法及光标所在的上下文 (项目级，仅在 EDT 上使用)
+ * <p>
+ * 以 {@link VirtualFile} 为键而不是编辑器会话：同一文件的分屏编辑器共享记录，关闭后重新打开的标签也能立即恢复。
+ * 记录按最近使用淘汰，最多保留 {@link #CAPACITY} 个文件；配置变更后旧记录不再可信，查询时直接忽略。
+ * 每次决策都会写入，同一文件的记录原地更新，不为每次决策分配新对象。
+ */
+public final class FileInputMethodMemory {
+
+    static final int CAPACITY = 256;
+
+    static final class Entry {
+        private ResolvedTarget target;
+        private DecisionTable table;
+        private ContextType context;
+
+        private Entry(ResolvedTarget target, DecisionTable table, ContextType context) {
+            this.target = target;
+            this.table = table;
+            this.context = context;
+        }
+
+        ResolvedTarget getTarget() {
+            return target;
+        }
+
+        /**
+         * 决策时光标所在的上下文
+         */
+        ContextType getContext() {
+            return context;
+        }
+    }
+
+    private final Map<VirtualFile, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<VirtualFile, Entry> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    public static FileInputMethodMemory getInstance(@NotNull Project project) {
+        return project.getService(FileInputMethodMemory.class);
+    }
+
+    /**
+     * 编辑器对应的文件，不属于任何文件的编辑器 (如控制台、提交信息) 返回 {@code null}
+     */
+    @Nullable
+    static VirtualFile fileOf(@NotNull Editor editor) {
+        return FileDocumentManager.getInstance().getFile(editor.getDocument());
+    }
+
+    void remember(@NotNull VirtualFile file, @NotNull ResolvedTarget target, @NotNull DecisionTable table,
+                  @NotNull ContextType context) {
+        // get 同时把该文件移到最近使用的位置
+        Entry entry = entries.get(file);
+        if (entry == null) {
+            entries.put(file, new Entry(target, table, context));
+            return;
+        }
+        entry.target = target;
+        entry.table = table;
+        entry.context = context;
+    }
+
+    /**
+     * @return 该文件在当前决策表下的记录；没有记录或记录来自旧配置时返回 {@code null}
+     */
+    @Nullable
+    Entry recall(@NotNull VirtualFile file, @NotNull DecisionTable table) {
+        Entry entry = entries.get(file);
+        return entry == null || entry.table != table ? null : entry;
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.fileEditor.TextEditor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 切换编辑器标签时立即恢复该文件记住的输入法，不等待光标事件与检测
+ */
+public class FileSelectionListenerImpl implements FileEditorManagerListener {
+
+    @Override
+    public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+        if (!SmartIMSettings.snapshot().isEnabled())
+            return;
+
+        FileEditor selected = event.getNewEditor();
+        if (!(selected instanceof TextEditor))
+            return;
+        EditorSession session = EditorSessionRegistry.getInstance().get(((TextEditor) selected).getEditor());
+        if (session != null)
+            session.restore();
+    }
+}
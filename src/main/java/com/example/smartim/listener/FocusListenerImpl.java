@@ -1,29 +1,59 @@
 package com.example.smartim.listener;
 
-import com.example.smartim.im.InputMethodService;
-import com.example.smartim.im.MacInputMethodService;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SettingsSnapshot;
 import com.example.smartim.settings.SmartIMSettings;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Objects;
+
+/**
+ * 工具窗口焦点监听：按焦点规则切换输入法
+ * <p>
+ * {@code stateChanged} 会随任意布局变化 (调整大小、显示/隐藏、切换标签) 触发，
+ * 这里只在活动窗口真正变化时才处理：进入有规则的工具窗口时切换到规则指定的输入法，
+ * 回到编辑器时立即恢复当前文件记住的输入法。
+ */
 public class FocusListenerImpl implements ToolWindowManagerListener {
-    private final InputMethodService imService = new MacInputMethodService();
-    private final SmartIMSettings settings = SmartIMSettings.getInstance();
+    private final Project project;
+    private final SwitchExecutor switchExecutor = SwitchExecutor.getInstance();
+
+    // 上一次的活动工具窗口，编辑器处于活动状态时为 null (仅在 EDT 上访问)
+    private String lastActiveId = null;
+    // 离开编辑器时是否因规则切换过输入法，回到编辑器时据此决定是否恢复
+    private boolean switchedAway = false;
+
+    public FocusListenerImpl(Project project) {
+        this.project = project;
+    }
 
     @Override
     public void stateChanged(@NotNull ToolWindowManager toolWindowManager) {
+        SettingsSnapshot settings = SmartIMSettings.snapshot();
         if (!settings.isEnabled())
             return;
 
-        String activeId = toolWindowManager.getActiveToolWindowId();
-        if (activeId == null)
+        String activeId = toolWindowManager.isEditorComponentActive() ? null : toolWindowManager.getActiveToolWindowId();
+        if (Objects.equals(activeId, lastActiveId))
             return;
+        lastActiveId = activeId;
 
-        // 当切到 Terminal 或 Project View 时，自动切回英文
-        if (activeId.equals("Terminal") || activeId.equals("Project")) {
-            imService.switchToEnglish();
+        if (activeId == null) {
+            if (switchedAway) {
+                switchedAway = false;
+                EditorSessionRegistry.getInstance().restoreSelected(project);
+            }
+            return;
         }
+
+        ResolvedTarget target = settings.getDecisionTable().forToolWindowFocus(activeId);
+        if (target == null || target.isKeep())
+            return;
+        switchExecutor.switchTo(target);
+        switchedAway = true;
     }
 }
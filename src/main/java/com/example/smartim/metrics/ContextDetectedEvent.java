@@ -0,0 +1,44 @@
+package com.example.smartim.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一次光标上下文检测及其切换决策，持续时间为检测耗时
+ */
+@Name("com.example.smartim.ContextDetected")
+@Label("Context Detected")
+@Category("SmartIM")
+@Description("Caret context detection and the resulting input method decision")
+public class ContextDetectedEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(ContextDetectedEvent.class);
+
+    @Label("Context")
+    public String context;
+
+    @Label("Language")
+    public String language;
+
+    @Label("Offset")
+    public int offset;
+
+    @Label("Target")
+    public String target;
+
+    /**
+     * 有录制启用了该事件时创建并开始计时；否则返回 {@code null}，每次检测不再分配一个被丢弃的事件对象
+     */
+    @Nullable
+    public static ContextDetectedEvent beginIfEnabled() {
+        if (!TYPE.isEnabled())
+            return null;
+        ContextDetectedEvent event = new ContextDetectedEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.smartim.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 原生切换失败后执行的兜底脚本，持续时间为脚本进程耗时
+ */
+@Name("com.example.smartim.FallbackScript")
+@Label("Fallback Script")
+@Category("SmartIM")
+@Description("Fallback switch script run after a native switch failed")
+public class FallbackScriptEvent extends Event {
+    @Label("Target")
+    public String target;
+
+    @Label("Exit Code")
+    public int exitCode;
+}
@@ -0,0 +1,105 @@
+package com.example.smartim.metrics;
+
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.Project;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * 统计面板：每秒刷新一次，显示期间开启计时
+ */
+class MetricsPanel extends JPanel {
+
+    private static final int REFRESH_MS = 1000;
+
+    private final Project project;
+    private final SmartIMMetrics metrics = SmartIMMetrics.getInstance();
+    private final JTextArea text = new JTextArea();
+    private final Timer timer = new Timer(REFRESH_MS, e -> refresh());
+
+    MetricsPanel(Project project) {
+        super(new BorderLayout());
+        this.project = project;
+
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, text.getFont().getSize()));
+        add(new JScrollPane(text), BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton exportBtn = new JButton("复制为 JSON");
+        exportBtn.addActionListener(e -> exportJson());
+        JButton resetBtn = new JButton("重置");
+        resetBtn.addActionListener(e -> {
+            metrics.reset();
+            refresh();
+        });
+        buttons.add(exportBtn);
+        buttons.add(resetBtn);
+        add(buttons, BorderLayout.NORTH);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        metrics.acquireTiming();
+        refresh();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        metrics.releaseTiming();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("检测次数            %d%n", metrics.getDetections()));
+        sb.append(String.format("实际切换            %d%n", metrics.getSwitchesIssued()));
+        sb.append(String.format("缓存跳过            %d%n", metrics.getSwitchesElided()));
+        sb.append(String.format("兜底脚本            %d%n", metrics.getFallbackScripts()));
+        for (SmartIMMetrics.Gauge gauge : metrics.getGauges()) {
+            sb.append(pad(gauge.getLabel())).append(gauge.getValue()).append(System.lineSeparator());
+        }
+        sb.append(System.lineSeparator());
+        sb.append(String.format("%-18s %8s %10s %10s %10s %10s%n", "耗时", "次数", "平均(us)", "P50(us)", "P99(us)", "最大(us)"));
+        appendHistogram(sb, "上下文检测", metrics.getDetectionTime());
+        appendHistogram(sb, "原生切换", metrics.getNativeSwitchTime());
+        appendHistogram(sb, "EDT 占用", metrics.getEdtTime());
+        text.setText(sb.toString());
+    }
+
+    /**
+     * 按显示宽度 (中文占两列) 补齐到 20 列，与上面的固定标签对齐
+     */
+    private static String pad(String label) {
+        StringBuilder sb = new StringBuilder(label);
+        int width = 0;
+        for (int i = 0; i < label.length(); i++) {
+            width += label.charAt(i) >= 0x2E80 ? 2 : 1;
+        }
+        for (int i = width; i < 20; i++) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static void appendHistogram(StringBuilder sb, String name, LatencyHistogram.Snapshot snapshot) {
+        sb.append(String.format("%-18s %8d %10d %10d %10d %10d%n", name, snapshot.getCount(),
+                snapshot.getAverageNanos() / 1000, snapshot.percentileMicros(0.5),
+                snapshot.percentileMicros(0.99), snapshot.getMaxNanos() / 1000));
+    }
+
+    private void exportJson() {
+        CopyPasteManager.getInstance().setContents(new StringSelection(metrics.toJson()));
+        NotificationGroupManager.getInstance()
+                .getNotificationGroup("SmartIM Notifications")
+                .createNotification("SmartIM", "统计数据已复制到剪贴板", NotificationType.INFORMATION)
+                .notify(project);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.smartim.metrics;
+
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 插件运行时统计：计数器与延迟直方图
+ * <p>
+ * 计数器始终开启，每次只是一次 {@link LongAdder} 累加；计时需要额外读取时钟，
+ * 仅在统计面板打开期间开启，关闭时 {@link #startTimer()} 返回 0，记录方法只累加计数。
+ * <p>
+ * 其他组件 (切换执行器、编辑器会话注册表等) 自行持有的状态通过 {@link #registerGauge} 登记为读数，
+ * 统计包只在显示与导出时读取，不依赖这些组件。
+ */
+public final class SmartIMMetrics {
+
+    /**
+     * 由其他组件登记的读数，显示与导出时才读取
+     */
+    public static final class Gauge {
+        private final String key;
+        private final String label;
+        private final LongSupplier value;
+
+        Gauge(String key, String label, LongSupplier value) {
+            this.key = key;
+            this.label = label;
+            this.value = value;
+        }
+
+        /**
+         * JSON 导出使用的名称
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 统计面板显示的名称
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        public long getValue() {
+            return value.getAsLong();
+        }
+    }
+
+    private final LongAdder detections = new LongAdder();
+    private final LongAdder switchesIssued = new LongAdder();
+    private final LongAdder switchesElided = new LongAdder();
+    private final LongAdder fallbackScripts = new LongAdder();
+
+    private final LatencyHistogram detectionTime = new LatencyHistogram();
+    private final LatencyHistogram nativeSwitchTime = new LatencyHistogram();
+    private final LatencyHistogram edtTime = new LatencyHistogram();
+
+    // 按登记顺序排列，由自身保护
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+
+    // 正在显示统计的面板数
+    private final AtomicInteger viewers = new AtomicInteger();
+    private volatile boolean timing = false;
+
+    public static SmartIMMetrics getInstance() {
+        return ApplicationManager.getApplication().getService(SmartIMMetrics.class);
+    }
+
+    /**
+     * 开始计时，未开启计时时返回 0
+     */
+    public long startTimer() {
+        return timing ? System.nanoTime() : 0;
+    }
+
+    public void recordDetection(long start) {
+        detections.increment();
+        if (start != 0)
+            detectionTime.record(System.nanoTime() - start);
+    }
+
+    public void recordNativeSwitch(long start) {
+        switchesIssued.increment();
+        if (start != 0)
+            nativeSwitchTime.record(System.nanoTime() - start);
+    }
+
+    public void recordEdtTime(long start) {
+        if (start != 0)
+            edtTime.record(System.nanoTime() - start);
+    }
+
+    public void countSwitchElided() {
+        switchesElided.increment();
+    }
+
+    public void countFallbackScript() {
+        fallbackScripts.increment();
+    }
+
+    /**
+     * 登记一个读数；同名读数被替换 (如服务实例被替换时)，保持原有顺序
+     *
+     * @param key   JSON 导出使用的名称
+     * @param label 统计面板显示的名称
+     */
+    public void registerGauge(String key, String label, LongSupplier value) {
+        synchronized (gauges) {
+            gauges.put(key, new Gauge(key, label, value));
+        }
+    }
+
+    /**
+     * 按登记顺序返回所有读数
+     */
+    public List<Gauge> getGauges() {
+        synchronized (gauges) {
+            return new ArrayList<>(gauges.values());
+        }
+    }
+
+    /**
+     * 面板显示时调用，与 {@link #releaseTiming()} 成对使用
+     */
+    public void acquireTiming() {
+        if (viewers.incrementAndGet() > 0)
+            timing = true;
+    }
+
+    public void releaseTiming() {
+        if (viewers.decrementAndGet() <= 0)
+            timing = false;
+    }
+
+    public boolean isTiming() {
+        return timing;
+    }
+
+    public long getDetections() {
+        return detections.sum();
+    }
+
+    public long getSwitchesIssued() {
+        return switchesIssued.sum();
+    }
+
+    public long getSwitchesElided() {
+        return switchesElided.sum();
+    }
+
+    public long getFallbackScripts() {
+        return fallbackScripts.sum();
+    }
+
+    public LatencyHistogram.Snapshot getDetectionTime() {
+        return detectionTime.snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getNativeSwitchTime() {
+        return nativeSwitchTime.snapshot();
+    }
+
+    public LatencyHistogram.Snapshot getEdtTime() {
+        return edtTime.snapshot();
+    }
+
+    public void reset() {
+        detections.reset();
+        switchesIssued.reset();
+        switchesElided.reset();
+        fallbackScripts.reset();
+        detectionTime.reset();
+        nativeSwitchTime.reset();
+        edtTime.reset();
+    }
+
+    /**
+     * 导出为 JSON，包含其他组件登记的读数
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        json.append("  \"timing\": ").append(timing).append(",\n");
+        json.append("  \"counters\": {\n");
+        json.append("    \"detections\": ").append(getDetections()).append(",\n");
+        json.append("    \"switchesIssued\": ").append(getSwitchesIssued()).append(",\n");
+        json.append("    \"switchesElided\": ").append(getSwitchesElided()).append(",\n");
+        json.append("    \"fallbackScripts\": ").append(getFallbackScripts());
+        for (Gauge gauge : getGauges()) {
+            json.append(",\n    \"").append(gauge.getKey()).append("\": ").append(gauge.getValue());
+        }
+        json.append("\n  },\n");
+        json.append("  \"histograms\": {\n");
+        appendHistogram(json, "detectionTime", getDetectionTime()).append(",\n");
+        appendHistogram(json, "nativeSwitchTime", getNativeSwitchTime()).append(",\n");
+        appendHistogram(json, "edtTime", getEdtTime()).append('\n');
+        json.append("  }\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static StringBuilder appendHistogram(StringBuilder json, String name, LatencyHistogram.Snapshot snapshot) {
+        json.append("    \"").append(name).append("\": {");
+        json.append("\"count\": ").append(snapshot.getCount());
+        json.append(", \"avgNanos\": ").append(snapshot.getAverageNanos());
+        json.append(", \"maxNanos\": ").append(snapshot.getMaxNanos());
+        json.append(", \"p50Micros\": ").append(snapshot.percentileMicros(0.5));
+        json.append(", \"p99Micros\": ").append(snapshot.percentileMicros(0.99));
+        json.append(", \"bucketsMicrosLog2\": [");
+        long[] counts = snapshot.getCounts();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0)
+                json.append(", ");
+            json.append(counts[i]);
+        }
+        json.append("]}");
+        return json;
+    }
+}
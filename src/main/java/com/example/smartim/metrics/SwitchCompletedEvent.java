@@ -0,0 +1,42 @@
+package com.example.smartim.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次切换的执行结果，持续时间为原生切换耗时
+ */
+@Name("com.example.smartim.SwitchCompleted")
+@Label("Switch Completed")
+@Category("SmartIM")
+@Description("Input method switch executed by the backend")
+public class SwitchCompletedEvent extends Event {
+    @Label("Target")
+    public String target;
+
+    @Label("Elided")
+    @Description("Skipped because the target was already the current input method")
+    public boolean elided;
+
+    @Label("Success")
+    public boolean success;
+
+    /**
+     * 结束计时并在记录开启时提交
+     *
+     * @return {@code success}，便于直接作为切换结果返回
+     */
+    public boolean finish(String target, boolean elided, boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.target = target;
+            this.elided = elided;
+            this.success = success;
+            commit();
+        }
+        return success;
+    }
+}
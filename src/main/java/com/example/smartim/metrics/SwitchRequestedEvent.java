@@ -0,0 +1,23 @@
+package com.example.smartim.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 提交到切换执行器的请求
+ */
+@Name("com.example.smartim.SwitchRequested")
+@Label("Switch Requested")
+@Category("SmartIM")
+@Description("Input method switch submitted to the switch executor")
+public class SwitchRequestedEvent extends Event {
+    @Label("Target")
+    public String target;
+
+    @Label("Superseded Pending")
+    @Description("Whether a pending request was replaced by this one")
+    public boolean supersededPending;
+}
@@ -0,0 +1,114 @@
+package com.example.smartim.settings;
+
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.EditorClassifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 编译后的不可变配置快照
+ * <p>
+ * 配置加载或写回时由 {@link SmartIMSettings} 一次性编译：离开模式解析为枚举，光标颜色、关键词与切换目标
+ * 编译进 {@link DecisionTable}，编辑器过滤规则编译为 {@link EditorClassifier.Filter}。
+ * 热路径只读取快照，不再访问 {@link SmartIMSettings.Options} 的可变字段。
+ */
+public final class SettingsSnapshot {
+
+    /**
+     * 离开 IDE 时的处理方式
+     */
+    public enum LeaveMode {
+        KEEP,
+        CHINESE,
+        ENGLISH,
+        // 切换到指定名称的输入法，目标见 {@link DecisionTable#getLeaveTarget()}
+        NAMED
+    }
+
+    private final boolean enabled;
+    private final int debounceMs;
+    private final boolean lexerFastPath;
+    private final String chineseIMName;
+    private final String englishIMName;
+    private final String chineseIMScript;
+    private final String englishIMScript;
+    private final LeaveMode leaveMode;
+    private final DecisionTable decisionTable;
+    private final EditorClassifier.Filter editorFilter;
+
+    private SettingsSnapshot(SmartIMSettings.Options s) {
+        this.enabled = s.enabled;
+        this.debounceMs = s.debounceMs;
+        this.lexerFastPath = s.lexerFastPath;
+        this.chineseIMName = s.chineseIMName;
+        this.englishIMName = s.englishIMName;
+        this.chineseIMScript = s.chineseIMScript;
+        this.englishIMScript = s.englishIMScript;
+        this.leaveMode = parseLeaveMode(s.leaveIDEMode);
+        this.decisionTable = DecisionTable.compile(s);
+        this.editorFilter = EditorClassifier.Filter.compile(s.editorAllowList, s.editorDenyList);
+    }
+
+    @NotNull
+    static SettingsSnapshot compile(@NotNull SmartIMSettings.Options settings) {
+        return new SettingsSnapshot(settings);
+    }
+
+    private static LeaveMode parseLeaveMode(@Nullable String mode) {
+        if (mode == null || mode.isEmpty() || "保持现状".equals(mode))
+            return LeaveMode.KEEP;
+        if ("中文".equals(mode) || "默认中文".equals(mode))
+            return LeaveMode.CHINESE;
+        if ("英文".equals(mode) || "默认英文".equals(mode))
+            return LeaveMode.ENGLISH;
+        return LeaveMode.NAMED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getDebounceMs() {
+        return debounceMs;
+    }
+
+    /**
+     * 输入时是否优先使用编辑器高亮器的词法 token 判断上下文
+     */
+    public boolean isLexerFastPath() {
+        return lexerFastPath;
+    }
+
+    public String getChineseIMName() {
+        return chineseIMName;
+    }
+
+    public String getEnglishIMName() {
+        return englishIMName;
+    }
+
+    public String getChineseIMScript() {
+        return chineseIMScript;
+    }
+
+    public String getEnglishIMScript() {
+        return englishIMScript;
+    }
+
+    public LeaveMode getLeaveMode() {
+        return leaveMode;
+    }
+
+    @NotNull
+    public DecisionTable getDecisionTable() {
+        return decisionTable;
+    }
+
+    /**
+     * 编辑器过滤规则，仅影响此后创建的编辑器
+     */
+    @NotNull
+    public EditorClassifier.Filter getEditorFilter() {
+        return editorFilter;
+    }
+}
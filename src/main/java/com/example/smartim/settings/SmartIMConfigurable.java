@@ -1,19 +1,27 @@
 package com.example.smartim.settings;
 
-import com.example.smartim.im.MacInputMethodService;
-import com.example.smartim.settings.SmartIMSettings;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.KeywordMatcher;
+import com.example.smartim.im.InputMethodService;
+import com.intellij.lang.Language;
 import com.intellij.notification.NotificationGroupManager;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.JBColor;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 插件设置界面
@@ -23,6 +31,7 @@ public class SmartIMConfigurable implements Configurable {
     private JPanel mainPanel;
     private JCheckBox enabledCheckBox;
     private JTextField debounceField;
+    private JCheckBox lexerFastPathCheckBox;
     private JComboBox<String> leaveIDEModeCombo;
 
     private JComboBox<String> chineseIMCombo;
@@ -30,6 +39,11 @@ public class SmartIMConfigurable implements Configurable {
     private JTextField englishColorField;
     private JTextField chineseColorField;
     private JTextField capsColorField;
+    private JTextField editorAllowField;
+    private JTextField editorDenyField;
+    private final JTextArea customRulesArea = new JTextArea(12, 40);
+    private final JTextArea toolWindowRulesArea = new JTextArea(6, 40);
+    private final JLabel customRulesProblemLabel = new JLabel();
 
     // 场景配置组件辅助类
     private static class LangUI {
@@ -39,6 +53,8 @@ public class SmartIMConfigurable implements Configurable {
         JComboBox<String> multiCommentIM = new JComboBox<>();
         JComboBox<String> docCommentIM = new JComboBox<>();
         JTextArea customKeywords = new JTextArea(4, 30);
+        // 无效的 re: 正则在输入框下方列出
+        final JLabel keywordProblemLabel = new JLabel();
 
         void load(SmartIMSettings.ContextSettings s) {
             stringIM.setSelectedItem(s.stringLiteral);
@@ -103,6 +119,13 @@ public class SmartIMConfigurable implements Configurable {
     private final LangUI kotlinUI = new LangUI();
     private final LangUI pythonUI = new LangUI();
 
+    // 其他语言：按语言 ID 独立配置，编辑中的配置先保存在草稿里
+    private final LangUI otherUI = new LangUI();
+    private final JComboBox<String> languageCombo = new JComboBox<>();
+    private final JCheckBox languageEnabledCheckBox = new JCheckBox("为该语言使用独立配置（否则沿基础语言查找，最终使用通用配置）");
+    private final Map<String, SmartIMSettings.ContextSettings> languageDraft = new LinkedHashMap<>();
+    private String currentLanguage;
+
     @Nls(capitalization = Nls.Capitalization.Title)
     @Override
     public String getDisplayName() {
@@ -119,7 +142,9 @@ public class SmartIMConfigurable implements Configurable {
         tabbedPane.addTab("通用场景配置", createLangPanel(generalUI));
         tabbedPane.addTab("Java场景配置", createLangPanel(javaUI));
         tabbedPane.addTab("Kotlin场景配置", createLangPanel(kotlinUI));
-        tabbedPane.addTab("Python/GO/JS等场景配置", createLangPanel(pythonUI));
+        tabbedPane.addTab("Python场景配置", createLangPanel(pythonUI));
+        tabbedPane.addTab("其他语言场景配置", createOtherLanguagePanel());
+        tabbedPane.addTab("自定义规则", createRulesPanel());
 
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
         return mainPanel;
@@ -132,6 +157,7 @@ public class SmartIMConfigurable implements Configurable {
 
         enabledCheckBox = new JCheckBox("启用智能输入法切换");
         debounceField = new JTextField(10);
+        lexerFastPathCheckBox = new JCheckBox("输入时基于词法高亮快速识别场景");
         leaveIDEModeCombo = new JComboBox<>();
 
         chineseIMCombo = new JComboBox<>();
@@ -145,9 +171,12 @@ public class SmartIMConfigurable implements Configurable {
         englishColorField = new JTextField(10);
         chineseColorField = new JTextField(10);
         capsColorField = new JTextField(10);
+        editorAllowField = new JTextField(20);
+        editorDenyField = new JTextField(20);
 
         addLabeledComponent(p, "核心开关:", enabledCheckBox);
-        addLabeledComponent(p, "防抖延迟 (ms):", debounceField);
+        addLabeledComponent(p, "防抖延迟上限 (ms):", debounceField);
+        addLabeledComponent(p, "快速检测:", lexerFastPathCheckBox);
 
         JPanel imPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
         imPanel.add(refreshBtn);
@@ -164,6 +193,7 @@ public class SmartIMConfigurable implements Configurable {
                 javaUI.syncChinese(name);
                 kotlinUI.syncChinese(name);
                 pythonUI.syncChinese(name);
+                otherUI.syncChinese(name);
             }
         });
         englishIMCombo.addActionListener(e -> {
@@ -173,12 +203,15 @@ public class SmartIMConfigurable implements Configurable {
                 javaUI.syncEnglish(name);
                 kotlinUI.syncEnglish(name);
                 pythonUI.syncEnglish(name);
+                otherUI.syncEnglish(name);
             }
         });
         addLabeledComponent(p, "离开IDE切换输入法:", leaveIDEModeCombo);
         addLabeledComponent(p, "英文状态时光标颜色 (Hex):", englishColorField);
         addLabeledComponent(p, "中文状态时光标颜色 (Hex):", chineseColorField);
         addLabeledComponent(p, "大写锁定时光标颜色 (Hex):", capsColorField);
+        addLabeledComponent(p, "始终处理的编辑器 (类型或 *.扩展名):", editorAllowField);
+        addLabeledComponent(p, "忽略的编辑器 (类型或 *.扩展名):", editorDenyField);
 
         // 初始化时也刷新一下
         refreshIMNames();
@@ -204,13 +237,129 @@ public class SmartIMConfigurable implements Configurable {
         c.gridx = 0;
         c.gridy = row++;
         c.gridwidth = 2;
-        p.add(new JLabel("自定义字符串内容检测（匹配则切中文，分号分隔）:"), c);
+        p.add(new JLabel("自定义字符串内容检测（匹配则切中文，分号分隔；re: 前缀为正则，word: 前缀为整词）:"), c);
         c.gridy = row++;
         p.add(new JScrollPane(ui.customKeywords), c);
+        c.gridy = row++;
+        ui.keywordProblemLabel.setForeground(JBColor.RED);
+        p.add(ui.keywordProblemLabel, c);
+        ui.customKeywords.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateKeywordProblems(ui);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateKeywordProblems(ui);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateKeywordProblems(ui);
+            }
+        });
+
+        return p;
+    }
+
+    private JPanel createOtherLanguagePanel() {
+        List<String> ids = new ArrayList<>();
+        for (Language language : Language.getRegisteredLanguages()) {
+            if (language != Language.ANY)
+                ids.add(language.getID());
+        }
+        ids.sort(String.CASE_INSENSITIVE_ORDER);
+        for (String id : ids) {
+            languageCombo.addItem(id);
+        }
+        languageCombo.addActionListener(e -> selectLanguage((String) languageCombo.getSelectedItem()));
+
+        JPanel header = new JPanel();
+        header.setLayout(new BoxLayout(header, BoxLayout.Y_AXIS));
+        addLabeledComponent(header, "语言:", languageCombo);
+        addLabeledComponent(header, "", languageEnabledCheckBox);
+
+        JPanel p = new JPanel(new BorderLayout());
+        p.add(header, BorderLayout.NORTH);
+        p.add(createLangPanel(otherUI), BorderLayout.CENTER);
+        return p;
+    }
+
+    private void selectLanguage(String id) {
+        commitCurrentLanguage();
+        currentLanguage = id;
+        if (id == null)
+            return;
+        SmartIMSettings.ContextSettings s = languageDraft.get(id);
+        languageEnabledCheckBox.setSelected(s != null);
+        otherUI.load(s != null ? s : SmartIMSettings.getInstance().copyOptions().generalSettings);
+    }
+
+    private void commitCurrentLanguage() {
+        if (currentLanguage == null)
+            return;
+        if (languageEnabledCheckBox.isSelected()) {
+            otherUI.apply(languageDraft.computeIfAbsent(currentLanguage, k -> new SmartIMSettings.ContextSettings()));
+        } else {
+            languageDraft.remove(currentLanguage);
+        }
+    }
+
+    private JPanel createRulesPanel() {
+        JPanel p = new JPanel(new BorderLayout(0, 8));
+        p.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        p.add(new JLabel("<html>每行一条：语言,场景,工具窗口=目标输入法（* 表示任意）<br>"
+                + "场景取值：CODE / STRING_LITERAL / CONSTANT_LITERAL / SINGLE_LINE_COMMENT / MULTI_LINE_COMMENT / DOC_COMMENT<br>"
+                + "优先级：工具窗口 &gt; 语言 &gt; 场景，例如 <code>*,*,Terminal=默认英文</code></html>"), BorderLayout.NORTH);
+        JPanel rules = new JPanel(new BorderLayout(0, 4));
+        rules.add(new JScrollPane(customRulesArea), BorderLayout.CENTER);
+        // 被忽略或语言未知的规则直接在输入框下方列出，不再只写日志
+        customRulesProblemLabel.setForeground(JBColor.RED);
+        rules.add(customRulesProblemLabel, BorderLayout.SOUTH);
+        p.add(rules, BorderLayout.CENTER);
+        customRulesArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateRuleProblems();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateRuleProblems();
+            }
 
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateRuleProblems();
+            }
+        });
+
+        JPanel focus = new JPanel(new BorderLayout(0, 8));
+        focus.add(new JLabel("<html>工具窗口焦点规则，每行一条：工具窗口ID=目标输入法<br>"
+                + "切换到该工具窗口时生效，回到编辑器时恢复编辑器的输入法，例如 <code>Run=默认英文</code>、"
+                + "<code>Database Console=默认英文</code></html>"), BorderLayout.NORTH);
+        focus.add(new JScrollPane(toolWindowRulesArea), BorderLayout.CENTER);
+        p.add(focus, BorderLayout.SOUTH);
         return p;
     }
 
+    private void updateRuleProblems() {
+        customRulesProblemLabel.setText(toHtml(DecisionTable.checkRules(customRulesArea.getText())));
+    }
+
+    private static void updateKeywordProblems(LangUI ui) {
+        ui.keywordProblemLabel.setText(toHtml(KeywordMatcher.checkKeywords(ui.customKeywords.getText())));
+    }
+
+    private static String toHtml(List<String> problems) {
+        StringBuilder html = new StringBuilder();
+        for (String problem : problems) {
+            html.append(html.length() == 0 ? "<html>" : "<br>").append(StringUtil.escapeXmlEntities(problem));
+        }
+        return html.toString();
+    }
+
     private void addLabeledComponent(JPanel parent, String label, JComponent comp) {
         JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT));
         row.add(new JLabel(label));
@@ -229,66 +378,110 @@ public class SmartIMConfigurable implements Configurable {
 
     @Override
     public boolean isModified() {
-        SmartIMSettings s = SmartIMSettings.getInstance();
+        SmartIMSettings.Options s = SmartIMSettings.getInstance().copyOptions();
         return enabledCheckBox.isSelected() != s.enabled ||
                 !debounceField.getText().equals(String.valueOf(s.debounceMs)) ||
+                lexerFastPathCheckBox.isSelected() != s.lexerFastPath ||
                 !String.valueOf(leaveIDEModeCombo.getSelectedItem()).equals(s.leaveIDEMode) ||
                 !String.valueOf(chineseIMCombo.getSelectedItem()).equals(s.chineseIMName) ||
                 !String.valueOf(englishIMCombo.getSelectedItem()).equals(s.englishIMName) ||
                 !englishColorField.getText().equals(s.englishCursorColor) ||
                 !chineseColorField.getText().equals(s.chineseCursorColor) ||
                 !capsColorField.getText().equals(s.capsLockCursorColor) ||
+                !editorAllowField.getText().equals(s.editorAllowList) ||
+                !editorDenyField.getText().equals(s.editorDenyList) ||
                 generalUI.isModified(s.generalSettings) ||
                 javaUI.isModified(s.javaSettings) ||
                 kotlinUI.isModified(s.kotlinSettings) ||
-                pythonUI.isModified(s.pythonSettings);
+                pythonUI.isModified(s.pythonSettings) ||
+                isLanguageDraftModified(s) ||
+                !customRulesArea.getText().equals(s.customRules) ||
+                !toolWindowRulesArea.getText().equals(s.toolWindowRules);
+    }
+
+    /**
+     * 把当前语言正在编辑的内容叠加到草稿上比较，不写回草稿 (草稿只在切换语言或应用时提交)
+     */
+    private boolean isLanguageDraftModified(SmartIMSettings.Options s) {
+        if (currentLanguage == null)
+            return !languageDraft.equals(s.languageSettings);
+        Map<String, SmartIMSettings.ContextSettings> pending = new LinkedHashMap<>(languageDraft);
+        if (languageEnabledCheckBox.isSelected()) {
+            SmartIMSettings.ContextSettings edited = new SmartIMSettings.ContextSettings();
+            otherUI.apply(edited);
+            pending.put(currentLanguage, edited);
+        } else {
+            pending.remove(currentLanguage);
+        }
+        return !pending.equals(s.languageSettings);
     }
 
     @Override
     public void apply() {
-        SmartIMSettings s = SmartIMSettings.getInstance();
+        SmartIMSettings settings = SmartIMSettings.getInstance();
+        SmartIMSettings.Options s = settings.copyOptions();
         s.enabled = enabledCheckBox.isSelected();
         try {
             s.debounceMs = Integer.parseInt(debounceField.getText());
         } catch (NumberFormatException ignored) {
         }
+        s.lexerFastPath = lexerFastPathCheckBox.isSelected();
         s.leaveIDEMode = (String) leaveIDEModeCombo.getSelectedItem();
         s.chineseIMName = (String) chineseIMCombo.getSelectedItem();
         s.englishIMName = (String) englishIMCombo.getSelectedItem();
         s.englishCursorColor = englishColorField.getText();
         s.chineseCursorColor = chineseColorField.getText();
         s.capsLockCursorColor = capsColorField.getText();
+        s.editorAllowList = editorAllowField.getText();
+        s.editorDenyList = editorDenyField.getText();
 
         generalUI.apply(s.generalSettings);
         javaUI.apply(s.javaSettings);
         kotlinUI.apply(s.kotlinSettings);
         pythonUI.apply(s.pythonSettings);
+        s.customRules = customRulesArea.getText();
+        s.toolWindowRules = toolWindowRulesArea.getText();
+
+        commitCurrentLanguage();
+        // update 会深拷贝，草稿之后的编辑不会影响已写回的配置
+        s.languageSettings = new LinkedHashMap<>(languageDraft);
+
+        settings.update(s);
     }
 
     @Override
     public void reset() {
-        SmartIMSettings s = SmartIMSettings.getInstance();
+        SmartIMSettings.Options s = SmartIMSettings.getInstance().copyOptions();
         enabledCheckBox.setSelected(s.enabled);
         debounceField.setText(String.valueOf(s.debounceMs));
+        lexerFastPathCheckBox.setSelected(s.lexerFastPath);
         leaveIDEModeCombo.setSelectedItem(s.leaveIDEMode);
         chineseIMCombo.setSelectedItem(s.chineseIMName);
         englishIMCombo.setSelectedItem(s.englishIMName);
         englishColorField.setText(s.englishCursorColor);
         chineseColorField.setText(s.chineseCursorColor);
         capsColorField.setText(s.capsLockCursorColor);
+        editorAllowField.setText(s.editorAllowList);
+        editorDenyField.setText(s.editorDenyList);
 
         generalUI.load(s.generalSettings);
         javaUI.load(s.javaSettings);
         kotlinUI.load(s.kotlinSettings);
         pythonUI.load(s.pythonSettings);
+        customRulesArea.setText(s.customRules);
+        toolWindowRulesArea.setText(s.toolWindowRules);
+
+        languageDraft.clear();
+        s.languageSettings.forEach((id, cs) -> languageDraft.put(id, cs.copy()));
+        currentLanguage = null;
+        selectLanguage((String) languageCombo.getSelectedItem());
     }
 
     private void refreshIMNames() {
         Logger LOG = Logger.getInstance(SmartIMConfigurable.class);
-        LOG.info("[SmartIM] 正在调用 MacInputMethodService.getInstalledInputMethods()...");
+        LOG.info("[SmartIM] 正在调用 InputMethodService.getInstalledInputMethods()...");
 
-        MacInputMethodService service = new MacInputMethodService();
-        List<String> names = service.getInstalledInputMethods();
+        List<String> names = InputMethodService.getInstance().getInstalledInputMethods();
 
         LOG.info("[SmartIM] 最终确定列表项总数: " + names.size());
 
@@ -314,6 +507,7 @@ public class SmartIMConfigurable implements Configurable {
         javaUI.updateOptions(names);
         kotlinUI.updateOptions(names);
         pythonUI.updateOptions(names);
+        otherUI.updateOptions(names);
 
         if (chineseSel != null)
             chineseIMCombo.setSelectedItem(chineseSel);
@@ -1,34 +1,27 @@
 package com.example.smartim.settings;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
-import com.intellij.util.xmlb.XmlSerializerUtil;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * 插件设置持久化存储
+ * <p>
+ * 配置项保存在 {@link Options} 中，服务自身不暴露可变字段：读取时取副本 ({@link #copyOptions()})，
+ * 修改后通过 {@link #update(Options)} 整体写回，写回时编译出不可变的 {@link SettingsSnapshot}，
+ * 经 volatile 引用发布并在 {@link SmartIMSettingsListener#TOPIC} 上通知，因此任何修改都不会绕过发布。
+ * 热路径通过 {@link #getSnapshot()} 无锁读取，得到的始终是一致的视图。
  */
 @Service
 @State(name = "SmartIMSettings", storages = @Storage("SmartIMSwitcher.xml"))
-public final class SmartIMSettings implements PersistentStateComponent<SmartIMSettings> {
-
-    public boolean enabled = true;
-    public int debounceMs = 300;
-
-    // 基础配置
-    public String chineseIMScript = "tell application \"System Events\" to key code 102";
-    public String englishIMScript = "tell application \"System Events\" to key code 104";
-    public String chineseIMName = "搜狗拼音";
-    public String englishIMName = "ABC";
-    public String leaveIDEMode = "英文";
-
-    // 光标颜色 (Hex)
-    public String englishCursorColor = "#808080";
-    public String chineseCursorColor = "#FF0000";
-    public String capsLockCursorColor = "#FFD700";
+public final class SmartIMSettings implements PersistentStateComponent<SmartIMSettings.Options> {
 
     // 场景配置类
     public static class ContextSettings {
@@ -39,33 +32,171 @@ public final class SmartIMSettings implements PersistentStateComponent<SmartIMSe
         public String multiComment = "默认中文";
         public String docComment = "默认中文";
         public String customKeywords = "";
+
+        public ContextSettings copy() {
+            ContextSettings copy = new ContextSettings();
+            copy.stringLiteral = stringLiteral;
+            copy.constantLiteral = constantLiteral;
+            copy.singleComment = singleComment;
+            copy.multiComment = multiComment;
+            copy.docComment = docComment;
+            copy.customKeywords = customKeywords;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof ContextSettings))
+                return false;
+            ContextSettings that = (ContextSettings) o;
+            return Objects.equals(stringLiteral, that.stringLiteral)
+                    && Objects.equals(constantLiteral, that.constantLiteral)
+                    && Objects.equals(singleComment, that.singleComment)
+                    && Objects.equals(multiComment, that.multiComment)
+                    && Objects.equals(docComment, that.docComment)
+                    && Objects.equals(customKeywords, that.customKeywords);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stringLiteral, constantLiteral, singleComment, multiComment, docComment, customKeywords);
+        }
     }
 
-    public ContextSettings generalSettings = new ContextSettings();
-    public ContextSettings javaSettings = new ContextSettings();
-    public ContextSettings kotlinSettings = new ContextSettings();
-    public ContextSettings pythonSettings = new ContextSettings();
+    /**
+     * 可持久化的配置项，公共字段供序列化与配置界面的草稿使用
+     */
+    public static final class Options {
+        public boolean enabled = true;
+        public int debounceMs = 300;
+        // 输入时优先使用编辑器高亮器的词法 token 判断上下文，避免等待 PSI 提交
+        public boolean lexerFastPath = true;
+
+        // 基础配置
+        public String chineseIMScript = "tell application \"System Events\" to key code 102";
+        public String englishIMScript = "tell application \"System Events\" to key code 104";
+        public String chineseIMName = "搜狗拼音";
+        public String englishIMName = "ABC";
+        public String leaveIDEMode = "英文";
+
+        // 光标颜色 (Hex)
+        public String englishCursorColor = "#808080";
+        public String chineseCursorColor = "#FF0000";
+        public String capsLockCursorColor = "#FFD700";
+
+        public ContextSettings generalSettings = new ContextSettings();
+        public ContextSettings javaSettings = new ContextSettings();
+        public ContextSettings kotlinSettings = new ContextSettings();
+        public ContextSettings pythonSettings = new ContextSettings();
+        // 其他语言 (Go、TypeScript、SQL、Markdown 等) 的独立配置，键为语言 ID
+        public Map<String, ContextSettings> languageSettings = new LinkedHashMap<>();
 
-    @Nullable
+        // 自定义规则，每行: 语言,场景,工具窗口=目标输入法 (* 表示任意)
+        public String customRules = "";
+        // 工具窗口焦点规则，每行: 工具窗口ID=目标输入法，工具窗口成为活动窗口时切换
+        public String toolWindowRules = "Terminal=默认英文\nProject=默认英文";
+
+        // 编辑器过滤，分号分隔的编辑器类型 (CONSOLE、PREVIEW、DIFF、UNTYPED、MAIN_EDITOR) 或 *.扩展名，白名单优先
+        public String editorAllowList = "";
+        public String editorDenyList = "CONSOLE;PREVIEW;UNTYPED";
+
+        /**
+         * 深拷贝，语言配置逐项复制
+         */
+        public Options copy() {
+            Options copy = new Options();
+            copy.enabled = enabled;
+            copy.debounceMs = debounceMs;
+            copy.lexerFastPath = lexerFastPath;
+            copy.chineseIMScript = chineseIMScript;
+            copy.englishIMScript = englishIMScript;
+            copy.chineseIMName = chineseIMName;
+            copy.englishIMName = englishIMName;
+            copy.leaveIDEMode = leaveIDEMode;
+            copy.englishCursorColor = englishCursorColor;
+            copy.chineseCursorColor = chineseCursorColor;
+            copy.capsLockCursorColor = capsLockCursorColor;
+            copy.generalSettings = generalSettings.copy();
+            copy.javaSettings = javaSettings.copy();
+            copy.kotlinSettings = kotlinSettings.copy();
+            copy.pythonSettings = pythonSettings.copy();
+            copy.languageSettings = new LinkedHashMap<>();
+            languageSettings.forEach((id, cs) -> copy.languageSettings.put(id, cs == null ? null : cs.copy()));
+            copy.customRules = customRules;
+            copy.toolWindowRules = toolWindowRules;
+            copy.editorAllowList = editorAllowList;
+            copy.editorDenyList = editorDenyList;
+            return copy;
+        }
+    }
+
+    // 只在 update 中整体替换，从不原地修改
+    private Options options = new Options();
+    // 当前发布的快照
+    private volatile SettingsSnapshot current;
+
+    /**
+     * 供持久化使用，返回副本
+     */
+    @NotNull
     @Override
-    public SmartIMSettings getState() {
-        return this;
+    public synchronized Options getState() {
+        return options.copy();
     }
 
     @Override
-    public void loadState(@NotNull SmartIMSettings state) {
-        XmlSerializerUtil.copyBean(state, this);
+    public void loadState(@NotNull Options state) {
+        update(state);
+    }
+
+    /**
+     * 当前配置项的副本，修改后通过 {@link #update(Options)} 写回
+     */
+    @NotNull
+    public synchronized Options copyOptions() {
+        return options.copy();
+    }
+
+    /**
+     * 写回配置项，编译新快照并发布
+     */
+    public void update(@NotNull Options updated) {
+        SettingsSnapshot snapshot;
+        synchronized (this) {
+            options = updated.copy();
+            snapshot = SettingsSnapshot.compile(options);
+            current = snapshot;
+        }
+        ApplicationManager.getApplication().getMessageBus()
+                .syncPublisher(SmartIMSettingsListener.TOPIC).settingsChanged(snapshot);
     }
 
-    public boolean isEnabled() {
-        return enabled;
+    /**
+     * 当前配置快照；需要频繁读取的组件应持有服务实例并调用 {@link #getSnapshot()}，避免每次查找服务
+     */
+    @NotNull
+    public static SettingsSnapshot snapshot() {
+        return getInstance().getSnapshot();
     }
 
-    public int getDebounceMs() {
-        return debounceMs;
+    /**
+     * 当前配置快照，尚未编译时先编译一次
+     */
+    @NotNull
+    public SettingsSnapshot getSnapshot() {
+        SettingsSnapshot snapshot = current;
+        if (snapshot != null)
+            return snapshot;
+        synchronized (this) {
+            if (current == null)
+                current = SettingsSnapshot.compile(options);
+            return current;
+        }
     }
 
     public static SmartIMSettings getInstance() {
-        return com.intellij.openapi.application.ApplicationManager.getApplication().getService(SmartIMSettings.class);
+        return ApplicationManager.getApplication().getService(SmartIMSettings.class);
     }
 }
@@ -0,0 +1,14 @@
+package com.example.smartim.settings;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 配置快照变更通知，在发布新快照的线程上 (通常是 EDT) 同步回调
+ */
+public interface SmartIMSettingsListener {
+
+    Topic<SmartIMSettingsListener> TOPIC = Topic.create("SmartIM Settings", SmartIMSettingsListener.class);
+
+    void settingsChanged(@NotNull SettingsSnapshot snapshot);
+}
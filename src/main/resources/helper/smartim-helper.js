@@ -0,0 +1,67 @@
+// SmartIM 常驻辅助进程 (osascript -l JavaScript)
+// 协议：每行一个请求 "<id> <命令> [参数]"，每行一个响应 "<id> OK|ERR [信息]"
+//   PING           存活检查
+//   RUN <base64>   执行 Base64 编码的 AppleScript 源码
+ObjC.import('Foundation');
+
+function write(text) {
+    $.NSFileHandle.fileHandleWithStandardOutput.writeData($(text + '\n').dataUsingEncoding($.NSUTF8StringEncoding));
+}
+
+function decode(base64) {
+    const data = $.NSData.alloc.initWithBase64EncodedStringOptions($(base64), 0);
+    return $.NSString.alloc.initWithDataEncoding(data, $.NSUTF8StringEncoding).js;
+}
+
+function runAppleScript(source) {
+    const script = $.NSAppleScript.alloc.initWithSource($(source));
+    const error = Ref();
+    const result = script.executeAndReturnError(error);
+    if (result.isNil()) {
+        const info = error[0];
+        const message = info.isNil() ? 'unknown' : ObjC.unwrap(info.objectForKey('NSAppleScriptErrorMessage'));
+        return 'ERR ' + String(message).replace(/\n/g, ' ');
+    }
+    return 'OK';
+}
+
+function handle(line) {
+    const first = line.indexOf(' ');
+    if (first < 0)
+        return null;
+    const id = line.substring(0, first);
+    const rest = line.substring(first + 1);
+    const second = rest.indexOf(' ');
+    const command = second < 0 ? rest : rest.substring(0, second);
+    const argument = second < 0 ? '' : rest.substring(second + 1);
+    try {
+        switch (command) {
+            case 'PING':
+                return id + ' OK';
+            case 'RUN':
+                return id + ' ' + runAppleScript(decode(argument));
+            default:
+                return id + ' ERR unknown command ' + command;
+        }
+    } catch (e) {
+        return id + ' ERR ' + String(e).replace(/\n/g, ' ');
+    }
+}
+
+function run() {
+    const stdin = $.NSFileHandle.fileHandleWithStandardInput;
+    let buffer = '';
+    while (true) {
+        const data = stdin.availableData;
+        if (data.length === 0)
+            break; // stdin 关闭，IDE 已退出
+        buffer += $.NSString.alloc.initWithDataEncoding(data, $.NSUTF8StringEncoding).js;
+        let newline;
+        while ((newline = buffer.indexOf('\n')) >= 0) {
+            const reply = handle(buffer.substring(0, newline));
+            buffer = buffer.substring(newline + 1);
+            if (reply !== null)
+                write(reply);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.smartim.core;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+/**
+ * 编辑后 {@link ContextIndexManager} 只重新扫描脏区，结果必须与全量构建一致
+ */
+public class ContextIndexManagerTest extends BasePlatformTestCase {
+
+    private static final String SOURCE = String.join("\n",
+            "class Sample {",
+            "    // 中文注释",
+            "    int code = 1;",
+            "    /** 文档注释 */",
+            "    String text = \"value\";",
+            "    int other = 2; /* 块注释 */",
+            "}",
+            "");
+
+    private ContextIndexManager manager;
+    private Document document;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.configureByText("Sample.java", SOURCE);
+        manager = ContextIndexManager.getInstance();
+        document = myFixture.getEditor().getDocument();
+        // 第一次查询触发全量构建
+        manager.lookup(myFixture.getEditor(), 0);
+        waitForCleanIndex();
+    }
+
+    public void testEditOutsideIntervalsDoesNotWalkWholeFile() {
+        long fullBuilds = manager.getFullBuildCount();
+        long incremental = manager.getIncrementalUpdateCount();
+
+        insert(offsetOf("code = 1") + 4, "Value");
+
+        assertEquals(fullBuilds, manager.getFullBuildCount());
+        assertEquals(incremental + 1, manager.getIncrementalUpdateCount());
+        assertMatchesFullBuild();
+    }
+
+    public void testEditInsideCommentRescansOnlyThatComment() {
+        long fullBuilds = manager.getFullBuildCount();
+
+        insert(offsetOf("中文注释") + 2, "更多");
+        insert(offsetOf("value") + 2, " ");
+
+        assertEquals(fullBuilds, manager.getFullBuildCount());
+        assertMatchesFullBuild();
+    }
+
+    public void testUnterminatedBlockCommentStillMatchesFullBuild() {
+        // 新注释一直延伸到后面的 */，吞掉中间的代码与字符串
+        insert(offsetOf("int code"), "/* ");
+        assertMatchesFullBuild();
+
+        insert(document.getTextLength(), "// 结尾");
+        assertMatchesFullBuild();
+    }
+
+    public void testWholeTextReplacementRebuildsIndex() {
+        long fullBuilds = manager.getFullBuildCount();
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.setText(SOURCE + "// 新注释\n"));
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+        manager.lookup(myFixture.getEditor(), 0);
+        waitForCleanIndex();
+
+        assertEquals(fullBuilds + 1, manager.getFullBuildCount());
+        assertMatchesFullBuild();
+    }
+
+    private int offsetOf(String anchor) {
+        return document.getText().indexOf(anchor);
+    }
+
+    private void insert(int offset, String text) {
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(offset, text));
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+        waitForCleanIndex();
+    }
+
+    private void waitForCleanIndex() {
+        PlatformTestUtil.waitWithEventsDispatching("索引没有更新", () -> {
+            ContextIndex index = document.getUserData(ContextIndexManager.INDEX_KEY);
+            return index != null && !index.isDirty() && index.getStamp() == document.getModificationStamp();
+        }, 5);
+    }
+
+    private void assertMatchesFullBuild() {
+        ContextIndex index = document.getUserData(ContextIndexManager.INDEX_KEY);
+        ContextIndex expected = ReadAction.compute(() -> ContextIndexManager.build(getProject(), document));
+        assertNotNull(index);
+        assertEquals(expected.size(), index.size());
+        Editor editor = myFixture.getEditor();
+        for (int offset = 0; offset <= document.getTextLength(); offset++) {
+            assertEquals(document.getText() + "\n@" + offset, expected.lookup(offset), index.lookup(offset));
+            assertEquals(expected.lookup(offset), manager.lookup(editor, offset));
+        }
+    }
+}
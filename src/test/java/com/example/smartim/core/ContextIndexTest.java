@@ -0,0 +1,244 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 增量平移必须与逐个复制区间的参考实现给出完全相同的查询结果
+ */
+public class ContextIndexTest {
+
+    private static final ContextType[] TYPES = {
+            ContextType.SINGLE_LINE_COMMENT, ContextType.STRING_LITERAL, ContextType.MULTI_LINE_COMMENT
+    };
+
+    @Test
+    public void lookupInsideAndOutsideIntervals() {
+        ContextIndex index = new ContextIndex.Builder()
+                .add(10, 20, ContextType.STRING_LITERAL)
+                .add(30, 40, ContextType.SINGLE_LINE_COMMENT)
+                .build(1);
+
+        assertEquals(ContextType.CODE, index.lookup(5));
+        assertEquals(ContextType.STRING_LITERAL, index.lookup(10));
+        assertEquals(ContextType.CODE, index.lookup(20));
+        // 单行注释末尾仍视为在注释中
+        assertEquals(ContextType.SINGLE_LINE_COMMENT, index.lookup(40));
+        assertFalse(index.isDirty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void typingMarksOnlyTouchedIntervalDirty() {
+        ContextIndex index = new ContextIndex.Builder()
+                .add(10, 20, ContextType.STRING_LITERAL)
+                .add(30, 40, ContextType.MULTI_LINE_COMMENT)
+                .add(50, 60, ContextType.STRING_LITERAL)
+                .build(1);
+
+        ContextIndex shifted = index.shift(35, 0, 3, 2);
+
+        assertTrue(shifted.isDirty());
+        assertEquals(2L, shifted.getStamp());
+        assertEquals(ContextType.STRING_LITERAL, shifted.lookup(15));
+        assertNull(shifted.lookup(35));
+        assertEquals(ContextType.STRING_LITERAL, shifted.lookup(55));
+        assertEquals(ContextType.CODE, shifted.lookup(63));
+        assertEquals(2, shifted.size());
+        // 原索引不受影响
+        assertEquals(ContextType.MULTI_LINE_COMMENT, index.lookup(35));
+        assertSame(ContextType.STRING_LITERAL, index.lookup(55));
+    }
+
+    @Test
+    public void survivingSpanCoversIntersectingIntervals() {
+        ContextIndex index = new ContextIndex.Builder()
+                .add(10, 20, ContextType.STRING_LITERAL)
+                .add(30, 40, ContextType.SINGLE_LINE_COMMENT)
+                .build(1);
+
+        assertArrayEquals(new int[]{10, 40}, index.survivingSpan(15, 31));
+        // 只是首尾相接不算相交
+        assertNull(index.survivingSpan(20, 30));
+
+        ContextIndex shifted = index.shift(25, 0, 1, 2);
+        assertArrayEquals(new int[]{10, 20}, shifted.survivingSpan(18, 27));
+        assertArrayEquals(new int[]{31, 41}, shifted.survivingSpan(25, 32));
+    }
+
+    @Test
+    public void spliceReplacesDirtyRangeAndShiftsSuffix() {
+        ContextIndex index = new ContextIndex.Builder()
+                .add(10, 20, ContextType.STRING_LITERAL)
+                .add(30, 40, ContextType.MULTI_LINE_COMMENT)
+                .add(50, 60, ContextType.STRING_LITERAL)
+                .build(1);
+        ContextIndex shifted = index.shift(35, 0, 3, 2);
+        int from = shifted.getDirtyStart();
+        int to = shifted.getDirtyEnd();
+        assertNull(shifted.survivingSpan(from, to));
+
+        // 重新扫描发现块注释被拆成了一段单行注释
+        ContextIndex spliced = shifted.splice(from, to,
+                new ContextIndex.Builder().add(30, 35, ContextType.SINGLE_LINE_COMMENT), 3);
+
+        assertFalse(spliced.isDirty());
+        assertEquals(3L, spliced.getStamp());
+        assertEquals(3, spliced.size());
+        assertEquals(ContextType.STRING_LITERAL, spliced.lookup(15));
+        assertEquals(ContextType.SINGLE_LINE_COMMENT, spliced.lookup(32));
+        assertEquals(ContextType.CODE, spliced.lookup(38));
+        assertEquals(ContextType.STRING_LITERAL, spliced.lookup(55));
+        assertEquals(ContextType.CODE, spliced.lookup(63));
+    }
+
+    @Test
+    public void randomSplicesKeepIntervalsOutsideRange() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            ContextIndex.Builder builder = new ContextIndex.Builder();
+            int offset = 0;
+            int count = random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                int start = offset + random.nextInt(10);
+                int end = start + 1 + random.nextInt(10);
+                builder.add(start, end, TYPES[random.nextInt(TYPES.length)]);
+                offset = end;
+            }
+            ContextIndex index = builder.build(0);
+            int length = offset + 10;
+            for (int edit = 0; edit < 1 + random.nextInt(5); edit++) {
+                int editOffset = random.nextInt(length + 1);
+                int oldLength = random.nextInt(Math.min(20, length - editOffset) + 1);
+                int newLength = random.nextInt(20);
+                index = index.shift(editOffset, oldLength, newLength, edit + 1);
+                length += newLength - oldLength;
+            }
+
+            int from = index.getDirtyStart();
+            int to = index.getDirtyEnd();
+            int[] span = index.survivingSpan(from, to);
+            if (span != null) {
+                from = Math.min(from, span[0]);
+                to = Math.max(to, span[1]);
+            }
+            ContextIndex spliced = index.splice(from, to, new ContextIndex.Builder(), 100);
+
+            assertFalse(spliced.isDirty());
+            for (int probe = 0; probe <= length + 2; probe++) {
+                // 范围首尾可能与存活区间相接，只核对两侧与严格内部
+                if (probe == from || probe == to)
+                    continue;
+                ContextType expected = probe < from || probe > to ? index.lookup(probe) : ContextType.CODE;
+                assertNotNull(expected);
+                assertEquals("round " + round + " offset " + probe, expected, spliced.lookup(probe));
+            }
+        }
+    }
+
+    @Test
+    public void randomEditsMatchReference() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            ContextIndex.Builder builder = new ContextIndex.Builder();
+            Reference reference = new Reference();
+            int offset = 0;
+            int count = random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                int start = offset + random.nextInt(10);
+                int end = start + 1 + random.nextInt(10);
+                ContextType type = TYPES[random.nextInt(TYPES.length)];
+                builder.add(start, end, type);
+                reference.add(start, end, type);
+                offset = end;
+            }
+            ContextIndex index = builder.build(0);
+            int length = offset + 10;
+
+            for (int edit = 0; edit < 20; edit++) {
+                int editOffset = random.nextInt(length + 1);
+                int oldLength = random.nextInt(Math.min(20, length - editOffset) + 1);
+                int newLength = random.nextInt(20);
+                index = index.shift(editOffset, oldLength, newLength, edit + 1);
+                reference = reference.shift(editOffset, oldLength, newLength);
+                length += newLength - oldLength;
+
+                for (int probe = 0; probe <= length + 2; probe++)
+                    assertEquals("round " + round + " edit " + edit + " offset " + probe,
+                            reference.lookup(probe), index.lookup(probe));
+            }
+        }
+    }
+
+    /**
+     * 每次编辑复制全部区间的原始实现，作为正确性参考
+     */
+    private static final class Reference {
+        final List<int[]> intervals = new ArrayList<>();
+        final List<ContextType> types = new ArrayList<>();
+        int dirtyStart = -1;
+        int dirtyEnd = -1;
+
+        void add(int start, int end, ContextType type) {
+            intervals.add(new int[]{start, end});
+            types.add(type);
+        }
+
+        ContextType lookup(int offset) {
+            if (dirtyStart != -1 && offset >= dirtyStart && offset <= dirtyEnd)
+                return null;
+            for (int i = intervals.size() - 1; i >= 0; i--) {
+                int[] interval = intervals.get(i);
+                if (interval[0] > offset)
+                    continue;
+                if (offset < interval[1])
+                    return types.get(i);
+                if (offset == interval[1] && types.get(i) == ContextType.SINGLE_LINE_COMMENT)
+                    return types.get(i);
+                return ContextType.CODE;
+            }
+            return ContextType.CODE;
+        }
+
+        Reference shift(int offset, int oldLength, int newLength) {
+            int delta = newLength - oldLength;
+            int editEnd = offset + oldLength;
+            Reference next = new Reference();
+            int affectedStart = offset;
+            int affectedEnd = offset + newLength;
+            for (int i = 0; i < intervals.size(); i++) {
+                int s = intervals.get(i)[0];
+                int e = intervals.get(i)[1];
+                if (e < offset) {
+                    next.add(s, e, types.get(i));
+                } else if (s > editEnd) {
+                    next.add(s + delta, e + delta, types.get(i));
+                } else {
+                    affectedStart = Math.min(affectedStart, s);
+                    affectedEnd = Math.max(affectedEnd, e + delta);
+                }
+            }
+            next.dirtyStart = affectedStart;
+            next.dirtyEnd = affectedEnd;
+            if (dirtyStart != -1) {
+                int oldDirtyStart = dirtyStart > editEnd ? dirtyStart + delta : Math.min(dirtyStart, offset);
+                int oldDirtyEnd = dirtyEnd >= offset ? Math.max(dirtyEnd + delta, offset + newLength) : dirtyEnd;
+                next.dirtyStart = Math.min(next.dirtyStart, oldDirtyStart);
+                next.dirtyEnd = Math.max(next.dirtyEnd, oldDirtyEnd);
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.settings.SmartIMSettings;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DecisionTableTest {
+
+    @Test
+    public void ruleForUnconfiguredLanguageGetsOwnTable() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.customRules = "sql,STRING_LITERAL,*=默认中文";
+
+        DecisionTable table = DecisionTable.compile(settings);
+
+        assertTrue(table.hasLanguage("sql"));
+        DecisionTable.LanguageTable sql = table.forLanguage("sql");
+        assertSame(table.getChineseTarget(), sql.get(ContextType.STRING_LITERAL));
+        // 其余场景沿用通用配置
+        DecisionTable.LanguageTable general = table.forLanguage(DecisionTable.GENERAL);
+        assertSame(table.getEnglishTarget(), general.get(ContextType.STRING_LITERAL));
+        assertSame(general.get(ContextType.SINGLE_LINE_COMMENT), sql.get(ContextType.SINGLE_LINE_COMMENT));
+        assertSame(general.get(ContextType.CONSTANT_LITERAL), sql.get(ContextType.CONSTANT_LITERAL));
+    }
+
+    @Test
+    public void toolWindowRuleForLanguageAlsoGetsTable() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.customRules = "sql,*,Database=默认英文";
+
+        DecisionTable table = DecisionTable.compile(settings);
+
+        assertTrue(table.hasLanguage("sql"));
+        assertSame(table.getEnglishTarget(), table.resolve(table.forLanguage("sql"), "sql",
+                ContextType.SINGLE_LINE_COMMENT, "Database"));
+        assertSame(table.getChineseTarget(), table.resolve(table.forLanguage("sql"), "sql",
+                ContextType.SINGLE_LINE_COMMENT, null));
+    }
+
+    @Test
+    public void wildcardLanguageDoesNotCreateTable() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.customRules = "*,STRING_LITERAL,*=默认中文";
+
+        DecisionTable table = DecisionTable.compile(settings);
+
+        assertFalse(table.hasLanguage("*"));
+        assertSame(table.getChineseTarget(), table.forLanguage(DecisionTable.GENERAL).get(ContextType.STRING_LITERAL));
+    }
+
+    @Test
+    public void checkRulesReportsIgnoredAndUnknownEntries() {
+        List<String> problems = DecisionTable.checkRules(String.join("\n",
+                "# 注释行",
+                "*,STRING_LITERAL,*=默认中文",
+                "*,STRNG,*=默认中文",
+                "no-equals-sign",
+                "nosuchlang,*,*=默认英文"));
+
+        assertEquals(3, problems.size());
+        assertTrue(problems.get(0), problems.get(0).startsWith("第 3 行") && problems.get(0).contains("STRNG"));
+        assertTrue(problems.get(1), problems.get(1).startsWith("第 4 行"));
+        assertTrue(problems.get(2), problems.get(2).startsWith("第 5 行") && problems.get(2).contains("nosuchlang"));
+    }
+
+    @Test
+    public void checkRulesAcceptsEmptyText() {
+        assertTrue(DecisionTable.checkRules("").isEmpty());
+        assertTrue(DecisionTable.checkRules(null).isEmpty());
+    }
+}
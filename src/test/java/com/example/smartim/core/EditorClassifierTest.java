@@ -0,0 +1,84 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.EditorKind;
+import com.intellij.openapi.util.Key;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+/**
+ * {@link EditorClassifier} 在编辑器创建时决定的处理模式：完整检测、固定为提交场景或跳过
+ */
+public class EditorClassifierTest extends BasePlatformTestCase {
+
+    private final EditorFactory factory = EditorFactory.getInstance();
+
+    public void testMainEditorIsFull() {
+        myFixture.configureByText("Sample.java", "class Sample {}");
+        assertEquals(EditorClassifier.Mode.FULL, EditorClassifier.classify(myFixture.getEditor(), EditorClassifier.Filter.EMPTY));
+
+        // 可写的非主编辑器同样完整检测
+        Editor editor = factory.createEditor(factory.createDocument("text"), getProject(), EditorKind.UNTYPED);
+        try {
+            assertEquals(EditorClassifier.Mode.FULL, EditorClassifier.classify(editor, EditorClassifier.Filter.EMPTY));
+        } finally {
+            factory.releaseEditor(editor);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCommitMessageEditorIsPinned() {
+        Document document = factory.createDocument("提交信息");
+        // 版本控制插件尚未创建该 key 时由测试创建同名 key
+        Key<Object> key = (Key<Object>) Key.findKeyByName("Vcs.CommitMessage.Panel");
+        if (key == null)
+            key = Key.create("Vcs.CommitMessage.Panel");
+        document.putUserData(key, new Object());
+
+        Editor editor = factory.createEditor(document, getProject(), EditorKind.MAIN_EDITOR);
+        try {
+            assertTrue(EditorClassifier.isCommitMessageEditor(editor));
+            // 白名单也不会让提交信息编辑器进入完整检测
+            assertEquals(EditorClassifier.Mode.PINNED,
+                    EditorClassifier.classify(editor, EditorClassifier.Filter.compile("MAIN_EDITOR", null)));
+            assertEquals(ContextType.GIT_COMMIT, ContextDetector.getContext(editor));
+        } finally {
+            factory.releaseEditor(editor);
+        }
+    }
+
+    public void testViewersAndReadOnlyEditorsAreSkipped() {
+        Document document = factory.createDocument("output");
+        Editor viewer = factory.createViewer(document, getProject(), EditorKind.PREVIEW);
+        Document readOnly = factory.createDocument("log");
+        readOnly.setReadOnly(true);
+        Editor console = factory.createEditor(readOnly, getProject(), EditorKind.CONSOLE);
+        Editor noProject = factory.createEditor(factory.createDocument("text"), null, EditorKind.UNTYPED);
+        try {
+            assertEquals(EditorClassifier.Mode.SKIP, EditorClassifier.classify(viewer, EditorClassifier.Filter.EMPTY));
+            assertEquals(EditorClassifier.Mode.SKIP, EditorClassifier.classify(console, EditorClassifier.Filter.EMPTY));
+            assertEquals(EditorClassifier.Mode.SKIP, EditorClassifier.classify(noProject, EditorClassifier.Filter.EMPTY));
+        } finally {
+            factory.releaseEditor(viewer);
+            factory.releaseEditor(console);
+            factory.releaseEditor(noProject);
+        }
+    }
+
+    public void testFilterOverridesDefaults() {
+        myFixture.configureByText("notes.md", "# 标题");
+        Editor main = myFixture.getEditor();
+        Editor viewer = factory.createViewer(main.getDocument(), getProject(), EditorKind.PREVIEW);
+        try {
+            // 白名单优先于默认规则与黑名单
+            assertEquals(EditorClassifier.Mode.FULL,
+                    EditorClassifier.classify(viewer, EditorClassifier.Filter.compile("*.md", "PREVIEW")));
+            assertEquals(EditorClassifier.Mode.SKIP,
+                    EditorClassifier.classify(main, EditorClassifier.Filter.compile(null, "*.MD")));
+        } finally {
+            factory.releaseEditor(viewer);
+        }
+    }
+}
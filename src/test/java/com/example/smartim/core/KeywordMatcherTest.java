@@ -0,0 +1,187 @@
+package com.example.smartim.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 关键词匹配只看 [行首, 光标) 之间的文本：普通关键词为子串，{@code word:} 以区间首尾为词边界，{@code re:} 为正则
+ */
+public class KeywordMatcherTest {
+
+    @Test
+    public void emptyKeywords() {
+        assertSame(KeywordMatcher.EMPTY, KeywordMatcher.compile(null));
+        assertTrue(KeywordMatcher.compile(" ; ;").isEmpty());
+        assertTrue(KeywordMatcher.EMPTY.isEmpty());
+        assertFalse(KeywordMatcher.EMPTY.matches("TODO", 0, 4));
+    }
+
+    @Test
+    public void plainKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.compile("TODO; FIXME ;翻译");
+
+        assertFalse(matcher.isEmpty());
+        assertTrue(matches(matcher, "// TODO 补充"));
+        assertTrue(matches(matcher, "x = \"FIXME\""));
+        assertTrue(matches(matcher, "待翻译的文本"));
+        assertFalse(matches(matcher, "// todo"));
+        assertFalse(matches(matcher, "// FIXM"));
+    }
+
+    @Test
+    public void overlappingAndSuffixSharingKeywords() {
+        // 沿 abcd 前进时 bc 只能从失败链上命中
+        KeywordMatcher matcher = KeywordMatcher.compile("abcd;bc");
+        assertTrue(matches(matcher, "xabcx"));
+        assertFalse(matches(matcher, "xabx"));
+
+        // 共享后缀
+        matcher = KeywordMatcher.compile("she;he;hers");
+        assertTrue(matches(matcher, "ushe"));
+        assertTrue(matches(matcher, "ahe"));
+        assertFalse(matches(matcher, "hs"));
+
+        // 失败后从较短的前缀重新开始
+        matcher = KeywordMatcher.compile("aab");
+        assertTrue(matches(matcher, "aaab"));
+    }
+
+    @Test
+    public void wholeWordAtLineStartAndCaret() {
+        KeywordMatcher matcher = KeywordMatcher.compile("word:note");
+        String text = "code\nnote here";
+        int lineStart = text.indexOf("note");
+
+        // 行首即词边界
+        assertTrue(matcher.matches(text, lineStart, text.length()));
+        // 光标紧跟在词后同样是边界，光标之后的文本不参与匹配
+        assertTrue(matcher.matches("notebook", 0, 4));
+        assertFalse(matcher.matches("notebook", 0, 8));
+        assertFalse(matches(matcher, "keynote"));
+        assertFalse(matches(matcher, "note_1"));
+        assertTrue(matches(matcher, "a note."));
+        assertTrue(matches(matcher, "(note)"));
+    }
+
+    @Test
+    public void wholeWordOnFailureChain() {
+        // 较长的整词不成立时，失败链上较短的整词仍需检查
+        KeywordMatcher matcher = KeywordMatcher.compile("word:abc;word:bc");
+        assertTrue(matches(matcher, "x bc"));
+        assertFalse(matches(matcher, "xabc"));
+        assertTrue(matches(matcher, "x abc"));
+        assertFalse(matches(matcher, "xbcd"));
+    }
+
+    @Test
+    public void regexKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.compile("re:[\\u4e00-\\u9fa5]{2,};re:^\\s*//\\s*NOTE");
+
+        assertTrue(matches(matcher, "x = \"你好\""));
+        assertFalse(matches(matcher, "x = \"好\""));
+        assertTrue(matches(matcher, "  // NOTE"));
+        // ^ 锚定在区间起点 (行首)
+        String text = "a\n// NOTE";
+        assertTrue(matcher.matches(text, 2, text.length()));
+        assertFalse(matcher.matches(text, 0, text.length()));
+    }
+
+    @Test
+    public void matchesStayWithinBounds() {
+        KeywordMatcher matcher = KeywordMatcher.compile("TODO;word:ok;re:\\d{3}");
+        String text = "TODO ok 123";
+
+        assertTrue(matcher.matches(text, 0, 4));
+        assertFalse(matcher.matches(text, 1, 4));
+        assertFalse(matcher.matches(text, 0, 3));
+        assertTrue(matcher.matches(text, 5, 7));
+        assertFalse(matcher.matches(text, 5, 6));
+        assertTrue(matcher.matches(text, 8, 11));
+        assertFalse(matcher.matches(text, 8, 10));
+        assertFalse(matcher.matches(text, 4, 4));
+    }
+
+    @Test
+    public void invalidRegexIsReported() {
+        List<String> problems = KeywordMatcher.checkKeywords("re:(;TODO;re:[a;re:\\d");
+
+        assertEquals(problems.toString(), 2, problems.size());
+        assertTrue(problems.get(0), problems.get(0).contains("("));
+        assertTrue(problems.get(1), problems.get(1).contains("[a"));
+        assertTrue(KeywordMatcher.checkKeywords("TODO;word:x;re:\\d").isEmpty());
+
+        // 其余关键词照常生效
+        KeywordMatcher matcher = KeywordMatcher.compile("re:(;TODO;re:[a;re:\\d", new ArrayList<>());
+        assertTrue(matches(matcher, "TODO"));
+        assertTrue(matches(matcher, "x1"));
+        assertFalse(matches(matcher, "(["));
+    }
+
+    @Test
+    public void randomKeywordsMatchReference() {
+        Random random = new Random(6);
+        String alphabet = "ab _";
+        for (int round = 0; round < 2000; round++) {
+            List<String> plain = new ArrayList<>();
+            List<String> words = new ArrayList<>();
+            StringBuilder keywords = new StringBuilder();
+            for (int i = 0, count = 1 + random.nextInt(4); i < count; i++) {
+                String keyword = randomText(random, "ab", 1 + random.nextInt(3));
+                boolean whole = random.nextBoolean();
+                (whole ? words : plain).add(keyword);
+                keywords.append(whole ? "word:" : "").append(keyword).append(';');
+            }
+            KeywordMatcher matcher = KeywordMatcher.compile(keywords.toString());
+
+            String text = randomText(random, alphabet, random.nextInt(12));
+            int start = random.nextInt(text.length() + 1);
+            int end = start + random.nextInt(text.length() - start + 1);
+            assertEquals(keywords + " in '" + text + "' [" + start + ", " + end + ")",
+                    reference(plain, words, text, start, end), matcher.matches(text, start, end));
+        }
+    }
+
+    private static boolean matches(KeywordMatcher matcher, String text) {
+        return matcher.matches(text, 0, text.length());
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * 逐个位置比较子串的朴素实现
+     */
+    private static boolean reference(List<String> plain, List<String> words, String text, int start, int end) {
+        String region = text.substring(start, end);
+        for (String keyword : plain) {
+            if (region.contains(keyword))
+                return true;
+        }
+        for (String keyword : words) {
+            for (int i = region.indexOf(keyword); i >= 0; i = region.indexOf(keyword, i + 1)) {
+                int after = i + keyword.length();
+                if ((i == 0 || !isWordChar(region.charAt(i - 1)))
+                        && (after == region.length() || !isWordChar(region.charAt(after))))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
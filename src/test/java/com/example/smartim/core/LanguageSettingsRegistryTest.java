@@ -0,0 +1,50 @@
+package com.example.smartim.core;
+
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.lang.Language;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LanguageSettingsRegistryTest {
+
+    // 语言 ID 全局唯一，只能注册一次
+    private static final Language BASE = new TestLanguage(null, "SmartIMTestBase");
+    private static final Language DIALECT = new TestLanguage(BASE, "SmartIMTestDialect");
+    private static final Language PYTHON_LIKE = new TestLanguage(null, "SmartIMTestPythonic");
+
+    private static final class TestLanguage extends Language {
+        TestLanguage(Language base, String id) {
+            super(base, id);
+        }
+    }
+
+    @Test
+    public void dialectResolvesToConfiguredBaseLanguage() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.languageSettings.put("SmartIMTestBase", new SmartIMSettings.ContextSettings());
+        DecisionTable table = DecisionTable.compile(settings);
+
+        assertEquals("smartimtestbase", LanguageSettingsRegistry.resolveKey(DIALECT, table));
+        assertEquals("smartimtestbase", LanguageSettingsRegistry.resolveKey(BASE, table));
+    }
+
+    @Test
+    public void unconfiguredLanguageFallsBackToGeneral() {
+        DecisionTable table = DecisionTable.compile(new SmartIMSettings.Options());
+
+        // ID 中带 python 不再被当作 Python
+        assertEquals(DecisionTable.GENERAL, LanguageSettingsRegistry.resolveKey(PYTHON_LIKE, table));
+        assertEquals(DecisionTable.GENERAL, LanguageSettingsRegistry.resolveKey(DIALECT, table));
+        assertEquals(DecisionTable.GENERAL, LanguageSettingsRegistry.resolveKey(null, table));
+    }
+
+    @Test
+    public void ruleNamedLanguageResolvesToItsOwnKey() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.customRules = "smartimtestdialect,STRING_LITERAL,*=默认中文";
+        DecisionTable table = DecisionTable.compile(settings);
+
+        assertEquals("smartimtestdialect", LanguageSettingsRegistry.resolveKey(DIALECT, table));
+    }
+}
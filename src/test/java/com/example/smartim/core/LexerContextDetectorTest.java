@@ -0,0 +1,264 @@
+package com.example.smartim.core;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.intellij.lang.Language;
+import com.intellij.lexer.Lexer;
+import com.intellij.lexer.LexerBase;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.TextAttributesKey;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.fileTypes.SyntaxHighlighterBase;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link LexerContextDetector} 按 token 名称与语言的 token 集判断上下文：
+ * Java 文件覆盖真实高亮器 (含文本块) 与名称不足以区分注释种类时的 PSI 回退；
+ * 另用一个只有高亮器、没有 PSI 的测试语言覆盖各类名称启发式。
+ */
+public class LexerContextDetectorTest extends BasePlatformTestCase {
+
+    private static final String JAVA = String.join("\n",
+            "class Sample {",
+            "    // 行注释",
+            "    /* 单行块注释 */",
+            "    /*",
+            "     * 跨行块注释",
+            "     */",
+            "    /** 文档注释 */",
+            "    String text = \"普通字符串\";",
+            "    String constant = \"MAX_VALUE\";",
+            "    String block = \"\"\"",
+            "            文本块",
+            "            \"\"\";",
+            "    int code = 1;",
+            "}",
+            "");
+
+    private static final String PLAIN = String.join("\n",
+            "code // 行注释",
+            "/* 块注释",
+            "   第二行 */",
+            "/** 文档注释 */",
+            "# 井号注释",
+            "say \"字符串\" and '''文本块'''",
+            "");
+
+    public void testJavaTokens() {
+        myFixture.configureByText("Sample.java", JAVA);
+        Editor editor = myFixture.getEditor();
+
+        assertResult(editor, JAVA, "行注释", ContextType.SINGLE_LINE_COMMENT, false);
+        assertResult(editor, JAVA, "文档注释", ContextType.DOC_COMMENT, false);
+        assertResult(editor, JAVA, "普通字符串", ContextType.STRING_LITERAL, false);
+        assertResult(editor, JAVA, "MAX_VALUE", ContextType.CONSTANT_LITERAL, false);
+        assertResult(editor, JAVA, "文本块", ContextType.STRING_LITERAL, false);
+        assertResult(editor, JAVA, "code", ContextType.CODE, false);
+        // C_STYLE_COMMENT 的名称不区分单行/多行，按是否跨行粗略判断
+        assertResult(editor, JAVA, "单行块注释", ContextType.SINGLE_LINE_COMMENT, true);
+        assertResult(editor, JAVA, "跨行块注释", ContextType.MULTI_LINE_COMMENT, true);
+
+        // 单行注释末尾 (换行符之前) 仍在注释中
+        int lineEnd = JAVA.indexOf("行注释") + "行注释".length();
+        assertEquals(ContextType.SINGLE_LINE_COMMENT, LexerContextDetector.detect(editor, lineEnd).type);
+    }
+
+    public void testAmbiguousJavaCommentFallsBackToPsi() {
+        myFixture.configureByText("Sample.java", JAVA);
+        Editor editor = myFixture.getEditor();
+        int offset = JAVA.indexOf("单行块注释");
+
+        // 文档已提交时快速路径放弃判断，交由 PSI 细分
+        assertNull(ContextDetector.detectFast(editor, offset));
+        assertEquals(ContextType.MULTI_LINE_COMMENT, ReadAction.compute(
+                () -> ContextDetector.detectWithPsi(getProject(), editor.getDocument(), offset)));
+    }
+
+    public void testLanguageWithoutPsi() {
+        Document document = EditorFactory.getInstance().createDocument(PLAIN);
+        EditorEx editor = (EditorEx) EditorFactory.getInstance().createEditor(document, getProject());
+        try {
+            editor.setHighlighter(EditorHighlighterFactory.getInstance().createEditorHighlighter(
+                    new PlainHighlighter(), EditorColorsManager.getInstance().getGlobalScheme()));
+
+            assertResult(editor, PLAIN, "code", ContextType.CODE, false);
+            assertResult(editor, PLAIN, "行注释", ContextType.SINGLE_LINE_COMMENT, false);
+            assertResult(editor, PLAIN, "第二行", ContextType.MULTI_LINE_COMMENT, false);
+            assertResult(editor, PLAIN, "文档注释", ContextType.DOC_COMMENT, false);
+            assertResult(editor, PLAIN, "井号注释", ContextType.SINGLE_LINE_COMMENT, true);
+            assertResult(editor, PLAIN, "字符串", ContextType.STRING_LITERAL, false);
+            assertResult(editor, PLAIN, "文本块", ContextType.STRING_LITERAL, false);
+            assertResult(editor, PLAIN, "and", ContextType.CODE, false);
+            // 引号本身是 QUOTE token
+            assertEquals(ContextType.STRING_LITERAL, LexerContextDetector.detect(editor, PLAIN.indexOf('"')).type);
+        } finally {
+            EditorFactory.getInstance().releaseEditor(editor);
+        }
+    }
+
+    private static void assertResult(Editor editor, String text, String anchor, ContextType type, boolean ambiguous) {
+        LexerContextDetector.Result result = LexerContextDetector.detect(editor, text.indexOf(anchor) + 1);
+        assertNotNull(anchor, result);
+        assertEquals(anchor, type, result.type);
+        assertEquals(anchor, ambiguous, result.ambiguousComment);
+    }
+
+    private static final class PlainLanguage extends Language {
+        static final PlainLanguage INSTANCE = new PlainLanguage();
+
+        private PlainLanguage() {
+            super("SmartIMPlainTest");
+        }
+    }
+
+    // 名称覆盖 LexerContextDetector 识别的各种写法；没有 ParserDefinition，token 集为空
+    private static final IElementType LINE_COMMENT = new IElementType("LINE_COMMENT", PlainLanguage.INSTANCE);
+    private static final IElementType BLOCK_COMMENT = new IElementType("BLOCK_COMMENT", PlainLanguage.INSTANCE);
+    private static final IElementType DOC_COMMENT = new IElementType("DOC_COMMENT", PlainLanguage.INSTANCE);
+    private static final IElementType HASH_COMMENT = new IElementType("COMMENT", PlainLanguage.INSTANCE);
+    private static final IElementType QUOTE = new IElementType("QUOTE", PlainLanguage.INSTANCE);
+    private static final IElementType STRING_PART = new IElementType("REGULAR_STRING_PART", PlainLanguage.INSTANCE);
+    private static final IElementType TEXT_BLOCK = new IElementType("TEXT_BLOCK", PlainLanguage.INSTANCE);
+    private static final IElementType WORD = new IElementType("WORD", PlainLanguage.INSTANCE);
+
+    private static final class PlainHighlighter extends SyntaxHighlighterBase {
+        @NotNull
+        @Override
+        public Lexer getHighlightingLexer() {
+            return new PlainLexer();
+        }
+
+        @Override
+        public TextAttributesKey @NotNull [] getTokenHighlights(IElementType tokenType) {
+            return TextAttributesKey.EMPTY_ARRAY;
+        }
+    }
+
+    /**
+     * 逐 token 扫描，字符串拆成引号与内容两类 token；状态记录当前 token 是否处于字符串内部
+     */
+    private static final class PlainLexer extends LexerBase {
+        private static final int NORMAL = 0;
+        private static final int AFTER_OPEN_QUOTE = 1;
+        private static final int AFTER_CONTENT = 2;
+
+        private CharSequence buffer;
+        private int end;
+        private int tokenStart;
+        private int tokenEnd;
+        private IElementType tokenType;
+        private int tokenState;
+        private int state;
+
+        @Override
+        public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
+            this.buffer = buffer;
+            this.end = endOffset;
+            this.tokenEnd = startOffset;
+            this.state = initialState;
+            advance();
+        }
+
+        @Override
+        public int getState() {
+            return tokenState;
+        }
+
+        @Override
+        public IElementType getTokenType() {
+            return tokenType;
+        }
+
+        @Override
+        public int getTokenStart() {
+            return tokenStart;
+        }
+
+        @Override
+        public int getTokenEnd() {
+            return tokenEnd;
+        }
+
+        @Override
+        public void advance() {
+            tokenStart = tokenEnd;
+            tokenState = state;
+            if (tokenStart >= end) {
+                tokenType = null;
+                return;
+            }
+            char c = buffer.charAt(tokenStart);
+            if (state == AFTER_OPEN_QUOTE && c != '"') {
+                tokenEnd = indexOf("\"", tokenStart);
+                tokenType = STRING_PART;
+                state = AFTER_CONTENT;
+            } else if (state != NORMAL) {
+                tokenEnd = tokenStart + 1;
+                tokenType = QUOTE;
+                state = NORMAL;
+            } else if (c == '"') {
+                tokenEnd = tokenStart + 1;
+                tokenType = QUOTE;
+                state = AFTER_OPEN_QUOTE;
+            } else if (startsWith("/**")) {
+                tokenEnd = indexOf("*/", tokenStart) + 2;
+                tokenType = DOC_COMMENT;
+            } else if (startsWith("/*")) {
+                tokenEnd = indexOf("*/", tokenStart) + 2;
+                tokenType = BLOCK_COMMENT;
+            } else if (startsWith("//")) {
+                tokenEnd = indexOf("\n", tokenStart);
+                tokenType = LINE_COMMENT;
+            } else if (c == '#') {
+                tokenEnd = indexOf("\n", tokenStart);
+                tokenType = HASH_COMMENT;
+            } else if (startsWith("'''")) {
+                tokenEnd = indexOf("'''", tokenStart + 3) + 3;
+                tokenType = TEXT_BLOCK;
+            } else if (Character.isWhitespace(c)) {
+                tokenEnd = skip(tokenStart, true);
+                tokenType = TokenType.WHITE_SPACE;
+            } else {
+                tokenEnd = skip(tokenStart, false);
+                tokenType = WORD;
+            }
+            tokenEnd = Math.min(tokenEnd, end);
+        }
+
+        private int skip(int from, boolean whitespace) {
+            int i = from + 1;
+            while (i < end && Character.isWhitespace(buffer.charAt(i)) == whitespace && buffer.charAt(i) != '"') {
+                i++;
+            }
+            return i;
+        }
+
+        private boolean startsWith(String prefix) {
+            return tokenStart + prefix.length() <= end
+                    && buffer.subSequence(tokenStart, tokenStart + prefix.length()).toString().equals(prefix);
+        }
+
+        private int indexOf(String text, int from) {
+            int index = buffer.toString().indexOf(text, from);
+            return index < 0 || index > end ? end : index;
+        }
+
+        @NotNull
+        @Override
+        public CharSequence getBufferSequence() {
+            return buffer;
+        }
+
+        @Override
+        public int getBufferEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.smartim.im;
+
+import com.intellij.openapi.util.Disposer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * 用 sh 脚本充当辅助进程，核对请求失败时能否区分"没有送达"与"可能已执行"
+ */
+public class HelperProcessTest {
+
+    private HelperProcess helper;
+
+    private HelperProcess start(List<String> command) {
+        helper = new HelperProcess(command, 300);
+        return helper;
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null)
+            Disposer.dispose(helper);
+    }
+
+    @Test
+    public void repliesAreMatchedById() throws IOException {
+        HelperProcess helper = start(List.of("sh", "-c", "while read id cmd arg; do echo \"$id $cmd:$arg\"; done"));
+
+        assertEquals("RUN:a", helper.request("RUN", "a"));
+        assertEquals("PING:", helper.request("PING", null));
+    }
+
+    @Test
+    public void unstartableProcessIsNotDelivered() throws IOException {
+        HelperProcess helper = start(List.of("/nonexistent/smartim-helper"));
+        try {
+            helper.request("RUN", "a");
+            fail();
+        } catch (HelperProcess.NotDeliveredException expected) {
+            // 调用方可以安全地改用其他方式执行
+        }
+    }
+
+    @Test
+    public void timeoutMayHaveBeenExecuted() {
+        HelperProcess helper = start(List.of("sh", "-c", "cat > /dev/null"));
+        try {
+            helper.request("RUN", "a");
+            fail();
+        } catch (HelperProcess.NotDeliveredException e) {
+            fail("请求已写入进程: " + e);
+        } catch (IOException expected) {
+            // 超时后重启进程
+        }
+    }
+
+    @Test
+    public void exitAfterReadMayHaveBeenExecuted() {
+        HelperProcess helper = start(List.of("sh", "-c", "read line; exit 0"));
+        try {
+            helper.request("RUN", "a");
+            fail();
+        } catch (HelperProcess.NotDeliveredException e) {
+            fail("请求已写入进程: " + e);
+        } catch (IOException expected) {
+            assertFalse(helper.isAlive());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.smartim.im;
+
+import com.example.smartim.im.jna.CFRef;
+import com.example.smartim.im.jna.FakeTisApi;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 反复查找、切换、失效与增删输入源后，所有 {@link CFRef} 都必须归还
+ */
+public class InputSourceLeakTest {
+
+    private static final String[] IDS = {
+            "com.apple.keylayout.ABC",
+            "com.apple.keylayout.US",
+            "com.sogou.inputmethod.sogou.pinyin",
+            "com.apple.inputmethod.SCIM.ITABC",
+            "com.apple.inputmethod.SCIM.WBX"
+    };
+
+    @Test
+    public void randomCyclesReturnEveryHandle() {
+        assertEquals("其他测试遗留了句柄", 0, CFRef.getOutstandingCount());
+
+        FakeTisApi tis = new FakeTisApi(IDS[0], IDS[1], IDS[2]);
+        InputSourceRegistry registry = new InputSourceRegistry(tis);
+        Random random = new Random(7);
+
+        InputSourceRegistry.Source held = null;
+        for (int i = 0; i < 5_000; i++) {
+            String id = IDS[random.nextInt(IDS.length)];
+            switch (random.nextInt(8)) {
+                case 0:
+                    registry.lookup(id);
+                    break;
+                case 1:
+                    registry.select(id);
+                    break;
+                case 2:
+                    // 跨代次持有的句柄必须能安全地回退到按 ID 查找
+                    InputSourceRegistry.Source source = registry.lookup(id);
+                    if (source != null)
+                        held = source;
+                    if (held != null)
+                        registry.select(held);
+                    break;
+                case 3:
+                    registry.invalidate();
+                    break;
+                case 4:
+                    registry.readCurrentId();
+                    registry.getKeyboardSourceIds();
+                    break;
+                case 5:
+                    tis.install(id);
+                    break;
+                case 6:
+                    if (!id.equals(tis.getCurrent()))
+                        tis.uninstall(id);
+                    break;
+                default:
+                    tis.failNextSelects(1 + random.nextInt(2));
+                    registry.select(id);
+                    break;
+            }
+            // 注册表只保留当前代次每个输入源的一个引用
+            assertTrue("第 " + i + " 步句柄数 " + CFRef.getOutstandingCount(),
+                    CFRef.getOutstandingCount() <= IDS.length);
+        }
+
+        registry.dispose();
+        assertEquals(0, CFRef.getOutstandingCount());
+        assertEquals(0, tis.liveHandles());
+    }
+
+    @Test
+    public void repeatedInvalidateDoesNotAccumulate() {
+        FakeTisApi tis = new FakeTisApi(IDS);
+        InputSourceRegistry registry = new InputSourceRegistry(tis);
+
+        registry.getKeyboardSourceIds();
+        long steady = CFRef.getOutstandingCount();
+        assertEquals(IDS.length, steady);
+        for (int i = 0; i < 1_000; i++) {
+            registry.invalidate();
+            assertTrue(registry.select(IDS[i % IDS.length]));
+            assertEquals(steady, CFRef.getOutstandingCount());
+        }
+
+        registry.dispose();
+        assertEquals(0, CFRef.getOutstandingCount());
+        assertEquals(0, tis.liveHandles());
+    }
+}
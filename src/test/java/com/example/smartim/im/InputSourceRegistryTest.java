@@ -0,0 +1,117 @@
+package com.example.smartim.im;
+
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.core.ResolvedTarget;
+import com.example.smartim.im.jna.FakeTisApi;
+import com.example.smartim.settings.SmartIMSettings;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InputSourceRegistryTest {
+
+    private final FakeTisApi tis = new FakeTisApi("com.apple.keylayout.ABC", "com.sogou.inputmethod.sogou.pinyin");
+    private final InputSourceRegistry registry = new InputSourceRegistry(tis);
+
+    @After
+    public void tearDown() {
+        registry.dispose();
+        assertEquals(0, tis.liveHandles());
+    }
+
+    @Test
+    public void missReloadsOncePerGeneration() {
+        assertNull(registry.lookup("missing"));
+        // 首次加载 + 未命中后重新加载一次
+        assertEquals(2, tis.listCreations);
+
+        assertNull(registry.lookup("missing"));
+        assertNull(registry.lookup("another-missing"));
+        assertEquals(2, tis.listCreations);
+
+        registry.invalidate();
+        assertNull(registry.lookup("missing"));
+        assertEquals(4, tis.listCreations);
+    }
+
+    @Test
+    public void missFindsNewlyInstalledSource() {
+        assertNotNull(registry.lookup("com.apple.keylayout.ABC"));
+        tis.install("com.apple.keylayout.US");
+
+        assertNotNull(registry.lookup("com.apple.keylayout.US"));
+        assertEquals(2, tis.listCreations);
+    }
+
+    @Test
+    public void selectRetriesAfterInvalidate() {
+        registry.lookup("com.apple.keylayout.ABC");
+        tis.failNextSelects(1);
+
+        assertTrue(registry.select("com.sogou.inputmethod.sogou.pinyin"));
+        assertEquals(2, tis.selectCalls);
+        // 失败后失效并重新加载
+        assertEquals(2, tis.listCreations);
+        assertEquals("com.sogou.inputmethod.sogou.pinyin", tis.getCurrent());
+    }
+
+    @Test
+    public void selectGivesUpAfterSecondFailure() {
+        tis.failNextSelects(2);
+
+        assertFalse(registry.select("com.sogou.inputmethod.sogou.pinyin"));
+        assertEquals(2, tis.selectCalls);
+    }
+
+    @Test
+    public void staleHandleFallsBackToId() {
+        InputSourceRegistry.Source stale = registry.lookup("com.sogou.inputmethod.sogou.pinyin");
+        assertNotNull(stale);
+        registry.invalidate();
+        assertFalse(registry.isCurrent(stale));
+
+        // 旧句柄已归还，select 必须按 ID 重新解析，否则假实现会因访问已释放句柄而失败
+        assertTrue(registry.select(stale));
+        assertEquals("com.sogou.inputmethod.sogou.pinyin", tis.getCurrent());
+        InputSourceRegistry.Source fresh = registry.lookup("com.sogou.inputmethod.sogou.pinyin");
+        assertTrue(registry.isCurrent(fresh));
+        assertSame(fresh, registry.lookup("com.sogou.inputmethod.sogou.pinyin"));
+    }
+
+    @Test
+    public void handleFromAnotherRegistryIsNotCurrent() {
+        InputSourceRegistry other = new InputSourceRegistry(tis);
+        try {
+            InputSourceRegistry.Source foreign = other.lookup("com.apple.keylayout.ABC");
+            assertFalse(registry.isCurrent(foreign));
+            assertTrue(registry.select(foreign));
+        } finally {
+            other.dispose();
+        }
+    }
+
+    @Test
+    public void targetLookupIsCachedUntilInvalidated() {
+        SmartIMSettings.Options settings = new SmartIMSettings.Options();
+        settings.englishIMName = "com.apple.keylayout.ABC";
+        ResolvedTarget target = DecisionTable.compile(settings).getEnglishTarget();
+
+        InputSourceRegistry.Source first = registry.lookup(target);
+        assertNotNull(first);
+        assertSame(first, registry.lookup(target));
+        assertEquals(1, tis.listCreations);
+
+        // 失效后按名称重新解析，缓存随之更新
+        registry.invalidate();
+        InputSourceRegistry.Source fresh = registry.lookup(target);
+        assertTrue(registry.isCurrent(fresh));
+        assertSame(fresh, registry.lookup(target));
+        assertEquals(2, tis.listCreations);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.smartim.im;
+
+import com.example.smartim.im.dbus.Fcitx5Backend;
+import com.example.smartim.im.dbus.FakeBus;
+import com.example.smartim.im.dbus.IBusBackend;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用模拟总线驱动 {@link LinuxInputMethodService} 的 Fcitx5 与 IBus 后端
+ */
+public class LinuxInputMethodServiceTest {
+
+    /**
+     * 由测试手动触发的事件源
+     */
+    private static final class ManualEvents implements InputSourceEvents {
+        Listener listener;
+
+        @Override
+        public void subscribe(Listener listener, Disposable parent) {
+            this.listener = listener;
+        }
+    }
+
+    private final ManualEvents events = new ManualEvents();
+    private final SmartIMSettings settings = new SmartIMSettings();
+    private LinuxInputMethodService service;
+
+    private LinuxInputMethodService fcitx(FakeBus bus) {
+        service = new LinuxInputMethodService(new Fcitx5Backend(bus), events, new SmartIMMetrics(), settings);
+        return service;
+    }
+
+    @After
+    public void tearDown() {
+        if (service != null)
+            Disposer.dispose(service);
+    }
+
+    @Test
+    public void switchIsElidedWhenEngineAlreadyCurrent() {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin");
+        LinuxInputMethodService service = fcitx(bus);
+
+        bus.userSelect("pinyin");
+        events.listener.selectedSourceChanged();
+        assertTrue(service.switchByName("pinyin"));
+        assertEquals(0, bus.count("SetCurrentIM"));
+
+        assertTrue(service.switchByName("keyboard-us"));
+        assertEquals(1, bus.count("SetCurrentIM keyboard-us"));
+        assertEquals("keyboard-us", bus.getCurrent());
+    }
+
+    @Test
+    public void newlyEnabledEngineReloadsListOnce() {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin");
+        LinuxInputMethodService service = fcitx(bus);
+        assertTrue(service.switchByName("pinyin"));
+        int lists = bus.count("CurrentInputMethodGroup");
+
+        bus.install("rime");
+        assertTrue(service.switchByName("rime"));
+        assertEquals(lists + 1, bus.count("CurrentInputMethodGroup"));
+
+        // 同一列表代次内只重新加载一次
+        assertFalse(service.switchByName("mozc"));
+        assertFalse(service.switchByName("mozc"));
+        assertEquals(lists + 1, bus.count("CurrentInputMethodGroup"));
+        assertEquals(0, bus.count("SetCurrentIM mozc"));
+
+        // 引擎列表变化事件使列表失效
+        bus.install("mozc");
+        events.listener.enabledSourcesChanged();
+        assertTrue(service.switchByName("mozc"));
+        assertEquals("mozc", bus.getCurrent());
+    }
+
+    @Test
+    public void failedSelectIsRetriedNextTime() {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin");
+        LinuxInputMethodService service = fcitx(bus);
+
+        bus.failNext("SetCurrentIM", 1);
+        assertFalse(service.switchByName("pinyin"));
+        // 失败后当前输入法未知，不能跳过下一次切换
+        assertTrue(service.switchByName("pinyin"));
+        assertEquals(2, bus.count("SetCurrentIM pinyin"));
+        assertEquals("pinyin", bus.getCurrent());
+    }
+
+    @Test
+    public void isChineseMatchesConfiguredTargetOnly() {
+        String chinese = settings.getSnapshot().getDecisionTable().getChineseTarget().getImName();
+        FakeBus bus = new FakeBus("keyboard-us", chinese, "mozc");
+        LinuxInputMethodService service = fcitx(bus);
+
+        bus.userSelect(chinese);
+        assertTrue(service.isChinese());
+        // 日文等其他非键盘布局引擎不是中文
+        bus.userSelect("mozc");
+        assertFalse(service.isChinese());
+        bus.userSelect("keyboard-us");
+        assertFalse(service.isChinese());
+    }
+
+    @Test
+    public void ibusBackendSwitchesThroughPrivateBus() {
+        FakeBus bus = new FakeBus("xkb:us::eng", "libpinyin");
+        service = new LinuxInputMethodService(new IBusBackend(bus), events, new SmartIMMetrics(), settings);
+
+        assertEquals(List.of("xkb:us::eng", "libpinyin"), service.getInstalledInputMethods());
+        assertTrue(service.switchByName("libpinyin"));
+        assertEquals("libpinyin", service.getCurrentInputMethod());
+        assertFalse(service.switchByName("anthy"));
+        assertEquals("libpinyin", bus.getCurrent());
+    }
+
+    @Test
+    public void signalsKeepCacheInSync() {
+        FakeBus bus = new FakeBus("xkb:us::eng", "libpinyin");
+        service = new LinuxInputMethodService(new IBusBackend(bus), null, new SmartIMMetrics(), settings);
+        assertEquals(1, bus.openSubscriptions());
+
+        // 用户在托盘中切换，信号到达后缓存随之更新，切回时不能被跳过
+        assertTrue(service.switchByName("libpinyin"));
+        bus.userSelect("xkb:us::eng");
+        bus.emit("org.freedesktop.IBus", "GlobalEngineChanged");
+        assertTrue(service.switchByName("libpinyin"));
+        assertEquals(2, bus.count("SetGlobalEngine libpinyin"));
+
+        // 新启用的引擎：注册表变化信号使列表失效
+        assertFalse(service.switchByName("anthy"));
+        bus.install("anthy");
+        bus.emit("org.freedesktop.IBus", "RegistryChanged");
+        assertTrue(service.switchByName("anthy"));
+
+        Disposer.dispose(service);
+        service = null;
+        assertEquals(0, bus.openSubscriptions());
+    }
+
+    @Test
+    public void disposeClosesConnection() {
+        FakeBus bus = new FakeBus("keyboard-us");
+        fcitx(bus);
+        Disposer.dispose(service);
+        service = null;
+        assertTrue(bus.closed);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.smartim.im;
+
+import com.example.smartim.im.jna.FakeTisApi;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用模拟的输入源事件流驱动 {@link MacInputMethodService} 的当前输入法缓存
+ */
+public class MacInputMethodServiceTest {
+
+    /**
+     * 由测试手动触发的事件源
+     */
+    private static final class ManualEvents implements InputSourceEvents {
+        Listener listener;
+
+        @Override
+        public void subscribe(Listener listener, Disposable parent) {
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * 模拟无法加载 CoreFoundation 时的订阅失败
+     */
+    private static final class FailingEvents implements InputSourceEvents {
+        @Override
+        public void subscribe(Listener listener, Disposable parent) {
+            throw new UnsatisfiedLinkError("CoreFoundation");
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final FakeTisApi tis = new FakeTisApi("com.apple.keylayout.ABC", "com.sogou.inputmethod.pinyin");
+    private final InputSourceRegistry registry = new InputSourceRegistry(tis);
+    private final SmartIMSettings settings = new SmartIMSettings();
+    private MacInputMethodService service;
+
+    private MacInputMethodService create(InputSourceEvents events, long pollIntervalMs) {
+        service = new MacInputMethodService(registry, events, pollIntervalMs, null, List.of("false"),
+                new SmartIMMetrics(), settings);
+        return service;
+    }
+
+    /**
+     * 兜底脚本经由替身辅助进程执行；辅助进程不可用时改用的单次命令把脚本追加到 {@code scriptLog}
+     */
+    private MacInputMethodService createWithHelper(List<String> helperCommand, File scriptLog) {
+        // 配置的中文输入法未安装，切换必然走兜底脚本
+        HelperProcess helper = new HelperProcess(helperCommand, 300);
+        List<String> scriptCommand = List.of("sh", "-c", "printf '%s\\n' \"$1\" >> '" + scriptLog + "'", "sh");
+        service = new MacInputMethodService(registry, new ManualEvents(), 60_000, helper, scriptCommand,
+                new SmartIMMetrics(), settings);
+        return service;
+    }
+
+    private static List<String> sh(String script) {
+        return List.of("sh", "-c", script);
+    }
+
+    @After
+    public void tearDown() {
+        if (service != null)
+            Disposer.dispose(service);
+    }
+
+    @Test
+    public void selectedChangeUpdatesCachedInputMethod() {
+        ManualEvents events = new ManualEvents();
+        MacInputMethodService service = create(events, 60_000);
+        assertNull(service.getCachedInputMethod());
+
+        tis.userSelect("com.sogou.inputmethod.pinyin");
+        events.listener.selectedSourceChanged();
+
+        assertEquals("com.sogou.inputmethod.pinyin", service.getCachedInputMethod());
+        // 与缓存相同的目标直接跳过，不调用系统接口
+        assertTrue(service.switchByName("com.sogou.inputmethod.pinyin"));
+        assertEquals(0, tis.selectCalls);
+    }
+
+    @Test
+    public void manualSwitchIsNotElided() {
+        ManualEvents events = new ManualEvents();
+        MacInputMethodService service = create(events, 60_000);
+
+        assertTrue(service.switchByName("com.apple.keylayout.ABC"));
+        assertEquals(1, tis.selectCalls);
+        assertEquals("com.apple.keylayout.ABC", service.getCachedInputMethod());
+
+        // 用户手动切到拼音后，再切回 ABC 必须真正调用系统接口
+        tis.userSelect("com.sogou.inputmethod.pinyin");
+        events.listener.selectedSourceChanged();
+        assertTrue(service.switchByName("com.apple.keylayout.ABC"));
+        assertEquals(2, tis.selectCalls);
+        assertEquals("com.apple.keylayout.ABC", tis.getCurrent());
+    }
+
+    @Test
+    public void enabledChangeReloadsSources() {
+        ManualEvents events = new ManualEvents();
+        MacInputMethodService service = create(events, 60_000);
+        assertTrue(service.switchByName("com.apple.keylayout.ABC"));
+        int creations = tis.listCreations;
+
+        tis.install("com.apple.inputmethod.SCIM.WBX");
+        tis.userSelect("com.apple.inputmethod.SCIM.WBX");
+        events.listener.enabledSourcesChanged();
+
+        assertEquals("com.apple.inputmethod.SCIM.WBX", service.getCachedInputMethod());
+        assertTrue(service.switchByName("com.apple.keylayout.ABC"));
+        // 事件使句柄失效，下一次查找重新加载列表
+        assertEquals(creations + 1, tis.listCreations);
+    }
+
+    @Test
+    public void pollingTakesOverWhenSubscriptionFails() throws InterruptedException {
+        MacInputMethodService service = create(new FailingEvents(), 10);
+
+        tis.userSelect("com.sogou.inputmethod.pinyin");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!"com.sogou.inputmethod.pinyin".equals(service.getCachedInputMethod())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("com.sogou.inputmethod.pinyin", service.getCachedInputMethod());
+
+        tis.userSelect("com.apple.keylayout.ABC");
+        deadline = System.currentTimeMillis() + 5_000;
+        while (!"com.apple.keylayout.ABC".equals(service.getCachedInputMethod())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("com.apple.keylayout.ABC", service.getCachedInputMethod());
+    }
+
+    @Test
+    public void fallbackScriptRunsInHelper() throws IOException {
+        File scriptLog = new File(temp.getRoot(), "scripts.log");
+        MacInputMethodService service = createWithHelper(sh("while read id cmd arg; do echo \"$id OK\"; done"), scriptLog);
+
+        assertTrue(service.switchToNative());
+        assertFalse(scriptLog.exists());
+    }
+
+    @Test
+    public void timedOutHelperDoesNotRerunScript() throws IOException {
+        File scriptLog = new File(temp.getRoot(), "scripts.log");
+        // 读取请求但从不响应，如脚本卡在模拟按键上
+        MacInputMethodService service = createWithHelper(sh("cat > /dev/null"), scriptLog);
+
+        long start = System.nanoTime();
+        assertFalse(service.switchToNative());
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 300);
+        // 脚本可能已经执行，不能再启动 osascript 重复切换
+        assertFalse(scriptLog.exists());
+    }
+
+    @Test
+    public void helperExitingAfterRequestDoesNotRerunScript() throws IOException {
+        File scriptLog = new File(temp.getRoot(), "scripts.log");
+        MacInputMethodService service = createWithHelper(sh("read line; exit 0"), scriptLog);
+
+        assertFalse(service.switchToNative());
+        assertFalse(scriptLog.exists());
+    }
+
+    @Test
+    public void unstartableHelperFallsBackToOneShotScript() throws IOException {
+        File scriptLog = new File(temp.getRoot(), "scripts.log");
+        File missing = new File(temp.getRoot(), "no-such-helper");
+        MacInputMethodService service = createWithHelper(List.of(missing.getPath()), scriptLog);
+
+        assertTrue(service.switchToNative());
+        String script = settings.getSnapshot().getChineseIMScript();
+        assertEquals(List.of(script), Files.readAllLines(scriptLog.toPath()));
+    }
+}
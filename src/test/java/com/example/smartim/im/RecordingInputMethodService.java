@@ -0,0 +1,192 @@
+package com.example.smartim.im;
+
+import com.example.smartim.core.ResolvedTarget;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 记录每次切换请求及结果的输入法服务
+ * <p>
+ * 传入 delegate 时作为装饰器转发实际切换；不传时作为不访问系统的假后端，只维护当前输入法。
+ * 测试中用它构造 {@link SwitchExecutor} 并替换应用服务，在无 macOS 的环境中驱动监听器并核对切换次数与延迟。
+ */
+public class RecordingInputMethodService implements InputMethodService {
+
+    // 保留的最大记录数，超出后丢弃最早的记录
+    private static final int CAPACITY = 1024;
+
+    /**
+     * 单次切换记录，时间为 {@link System#nanoTime()}
+     */
+    public static final class SwitchRecord {
+        private final String target;
+        private final long startedAt;
+        private final long finishedAt;
+        private final boolean success;
+
+        SwitchRecord(String target, long startedAt, long finishedAt, boolean success) {
+            this.target = target;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.success = success;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public long getDurationNanos() {
+            return finishedAt - startedAt;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        @Override
+        public String toString() {
+            return target + (success ? " ok " : " failed ") + getDurationNanos() / 1000 + "us";
+        }
+    }
+
+    @Nullable
+    private final InputMethodService delegate;
+    // 配置中的中文目标输入法，仅在无 delegate 时用于判断当前是否为中文
+    @Nullable
+    private final String chineseTarget;
+    private final ArrayDeque<SwitchRecord> records = new ArrayDeque<>();
+    // 仅在无 delegate 时使用
+    private volatile String current;
+
+    public RecordingInputMethodService() {
+        this(null, null);
+    }
+
+    /**
+     * 作为假后端使用，切换到 {@code chineseTarget} 或原生输入法后 {@link #isChinese()} 为真
+     */
+    public RecordingInputMethodService(@Nullable String chineseTarget) {
+        this(null, chineseTarget);
+    }
+
+    public RecordingInputMethodService(@Nullable InputMethodService delegate) {
+        this(delegate, null);
+    }
+
+    private RecordingInputMethodService(@Nullable InputMethodService delegate, @Nullable String chineseTarget) {
+        this.delegate = delegate;
+        this.chineseTarget = chineseTarget;
+    }
+
+    @Override
+    public boolean switchToNative() {
+        long start = System.nanoTime();
+        boolean success;
+        if (delegate != null) {
+            success = delegate.switchToNative();
+        } else {
+            current = "<native>";
+            success = true;
+        }
+        record("<native>", start, success);
+        return success;
+    }
+
+    @Override
+    public boolean switchToEnglish() {
+        long start = System.nanoTime();
+        boolean success;
+        if (delegate != null) {
+            success = delegate.switchToEnglish();
+        } else {
+            current = "<english>";
+            success = true;
+        }
+        record("<english>", start, success);
+        return success;
+    }
+
+    @Override
+    public boolean switchByName(String name) {
+        long start = System.nanoTime();
+        boolean success;
+        if (delegate != null) {
+            success = delegate.switchByName(name);
+        } else {
+            current = name;
+            success = true;
+        }
+        record(name, start, success);
+        return success;
+    }
+
+    @Override
+    public boolean switchTo(ResolvedTarget target) {
+        if (target.isKeep())
+            return true;
+        long start = System.nanoTime();
+        boolean success;
+        if (delegate != null) {
+            success = delegate.switchTo(target);
+        } else {
+            current = target.getImName();
+            success = true;
+        }
+        record(target.getImName(), start, success);
+        return success;
+    }
+
+    @Override
+    public boolean isChinese() {
+        if (delegate != null)
+            return delegate.isChinese();
+        String name = current;
+        return "<native>".equals(name) || name != null && name.equals(chineseTarget);
+    }
+
+    @Override
+    public String getCurrentInputMethod() {
+        return delegate != null ? delegate.getCurrentInputMethod() : current;
+    }
+
+    @Override
+    public List<String> getInstalledInputMethods() {
+        return delegate != null ? delegate.getInstalledInputMethods() : Collections.emptyList();
+    }
+
+    private void record(String target, long start, boolean success) {
+        SwitchRecord record = new SwitchRecord(target, start, System.nanoTime(), success);
+        synchronized (records) {
+            if (records.size() == CAPACITY)
+                records.pollFirst();
+            records.addLast(record);
+        }
+    }
+
+    /**
+     * 按时间顺序返回已记录的切换
+     */
+    public List<SwitchRecord> getRecords() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    public void clear() {
+        synchronized (records) {
+            records.clear();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.smartim.im;
+
+import com.example.smartim.im.RecordingInputMethodService.SwitchRecord;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordingInputMethodServiceTest {
+
+    @Test
+    public void failedDelegateSwitchIsRecordedAsFailure() {
+        // 空实现不切换输入法，所有切换都返回失败
+        RecordingInputMethodService recorder = new RecordingInputMethodService(new NoopInputMethodService());
+
+        assertFalse(recorder.switchToNative());
+        assertFalse(recorder.switchToEnglish());
+        assertFalse(recorder.switchByName("ABC"));
+
+        List<SwitchRecord> records = recorder.getRecords();
+        assertEquals(3, records.size());
+        for (SwitchRecord record : records) {
+            assertFalse(record.toString(), record.isSuccess());
+        }
+    }
+
+    @Test
+    public void standaloneRecorderTracksCurrentInputMethod() {
+        RecordingInputMethodService recorder = new RecordingInputMethodService();
+
+        assertTrue(recorder.switchToNative());
+        assertTrue(recorder.isChinese());
+        assertTrue(recorder.switchToEnglish());
+        assertFalse(recorder.isChinese());
+        assertEquals("<english>", recorder.getCurrentInputMethod());
+
+        List<SwitchRecord> records = recorder.getRecords();
+        assertEquals(2, records.size());
+        assertEquals("<native>", records.get(0).getTarget());
+        assertTrue(records.get(0).isSuccess());
+        assertTrue(records.get(1).isSuccess());
+    }
+
+    @Test
+    public void configuredChineseTargetCountsAsChinese() {
+        RecordingInputMethodService recorder = new RecordingInputMethodService("搜狗拼音");
+
+        assertTrue(recorder.switchByName("搜狗拼音"));
+        assertTrue(recorder.isChinese());
+        assertTrue(recorder.switchByName("ABC"));
+        assertFalse(recorder.isChinese());
+
+        // 未配置中文目标时只有原生输入法算中文
+        RecordingInputMethodService plain = new RecordingInputMethodService();
+        assertTrue(plain.switchByName("搜狗拼音"));
+        assertFalse(plain.isChinese());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.smartim.im;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwitchExecutorTest {
+
+    /**
+     * 手动推进的执行器，任务只在 {@link #runAll()} 时执行
+     */
+    private static final class ManualExecutor implements java.util.concurrent.Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static List<String> targets(RecordingInputMethodService service) {
+        List<String> targets = new ArrayList<>();
+        for (RecordingInputMethodService.SwitchRecord record : service.getRecords()) {
+            targets.add(record.getTarget());
+        }
+        return targets;
+    }
+
+    @Test
+    public void burstCollapsesToLastRequest() {
+        RecordingInputMethodService service = new RecordingInputMethodService();
+        ManualExecutor executor = new ManualExecutor();
+        SwitchExecutor switches = new SwitchExecutor(service, executor);
+
+        switches.switchByName("A");
+        switches.switchByName("B");
+        switches.switchToEnglish();
+        switches.switchByName("C");
+
+        // 只有第一次提交调度了任务，其余请求只替换待执行项
+        assertEquals(1, executor.tasks.size());
+        assertEquals(1, switches.getQueueDepth());
+
+        executor.runAll();
+        assertEquals(List.of("C"), targets(service));
+        assertEquals(4, switches.getSubmittedCount());
+        assertEquals(3, switches.getSupersededCount());
+        assertEquals(1, switches.getCompletedCount());
+        assertEquals(0, switches.getQueueDepth());
+    }
+
+    @Test
+    public void requestSubmittedDuringExecutionRunsInSameDrain() {
+        ManualExecutor executor = new ManualExecutor();
+        AtomicInteger depthDuringFirst = new AtomicInteger(-1);
+        AtomicInteger depthAfterResubmit = new AtomicInteger(-1);
+        SwitchExecutor[] holder = new SwitchExecutor[1];
+        RecordingInputMethodService service = new RecordingInputMethodService() {
+            @Override
+            public boolean switchByName(String name) {
+                if ("first".equals(name)) {
+                    depthDuringFirst.set(holder[0].getQueueDepth());
+                    holder[0].switchByName("second");
+                    depthAfterResubmit.set(holder[0].getQueueDepth());
+                }
+                return super.switchByName(name);
+            }
+        };
+        holder[0] = new SwitchExecutor(service, executor);
+
+        holder[0].switchByName("first");
+        executor.runAll();
+
+        assertEquals(1, depthDuringFirst.get());
+        assertEquals(2, depthAfterResubmit.get());
+        assertEquals(List.of("first", "second"), targets(service));
+        assertEquals(2, holder[0].getCompletedCount());
+        assertEquals(0, holder[0].getSupersededCount());
+        assertEquals(0, holder[0].getQueueDepth());
+    }
+
+    @Test
+    public void noStaleTargetAppliedAfterNewerOne() throws Exception {
+        int requests = 20_000;
+        List<Integer> applied = new ArrayList<>();
+        InputMethodService service = new RecordingInputMethodService() {
+            @Override
+            public boolean switchByName(String name) {
+                // 只有执行线程会写入
+                applied.add(Integer.parseInt(name));
+                return true;
+            }
+        };
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        SwitchExecutor switches = new SwitchExecutor(service, worker);
+        try {
+            for (int i = 0; i < requests; i++) {
+                switches.switchByName(Integer.toString(i));
+            }
+        } finally {
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        for (int i = 1; i < applied.size(); i++) {
+            assertTrue("stale target " + applied.get(i) + " after " + applied.get(i - 1),
+                    applied.get(i) > applied.get(i - 1));
+        }
+        assertEquals(requests - 1, (int) applied.get(applied.size() - 1));
+        assertEquals(requests, switches.getSubmittedCount());
+        assertEquals(requests, switches.getSupersededCount() + switches.getCompletedCount());
+        assertEquals(applied.size(), switches.getCompletedCount());
+        assertEquals(0, switches.getQueueDepth());
+    }
+}
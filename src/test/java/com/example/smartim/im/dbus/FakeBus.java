@@ -0,0 +1,195 @@
+package com.example.smartim.im.dbus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存中的模拟总线：同时扮演 Fcitx5 控制接口与 IBus 守护进程，按真实返回值的结构编码结果
+ * <p>
+ * 与真实框架一致，Fcitx5 静默忽略未启用的引擎，IBus 则返回错误。
+ */
+public final class FakeBus implements DBusTransport {
+
+    private static final String DBUS = "org.freedesktop.DBus";
+    private static final String FCITX = "org.fcitx.Fcitx.Controller1";
+    private static final String IBUS = "org.freedesktop.IBus";
+
+    private final List<String> engines = new ArrayList<>();
+    private final Map<String, Integer> failNext = new HashMap<>();
+    private String current;
+
+    public boolean fcitxRunning = true;
+    public boolean kimpanelRunning = true;
+    public boolean closed = false;
+    // 为 true 时拒绝订阅信号
+    public boolean rejectSubscriptions = false;
+    private final List<FakeSubscription> subscriptions = new ArrayList<>();
+    // 按顺序记录的调用，形如 "SetCurrentIM pinyin"
+    public final List<String> calls = new ArrayList<>();
+
+    public FakeBus(String... enabled) {
+        for (String engine : enabled) {
+            install(engine);
+        }
+        current = enabled.length > 0 ? enabled[0] : null;
+    }
+
+    public void install(String engine) {
+        if (!engines.contains(engine))
+            engines.add(engine);
+    }
+
+    public void uninstall(String engine) {
+        engines.remove(engine);
+    }
+
+    /**
+     * 模拟用户在系统托盘中切换引擎，不经过总线调用
+     */
+    public void userSelect(String engine) {
+        current = engine;
+    }
+
+    public String getCurrent() {
+        return current;
+    }
+
+    /**
+     * 让接下来 {@code count} 次指定方法的调用以超时失败
+     */
+    public void failNext(String method, int count) {
+        failNext.put(method, count);
+    }
+
+    public int count(String method) {
+        int count = 0;
+        for (String call : calls) {
+            if (call.equals(method) || call.startsWith(method + " "))
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public List<Object> call(String destination, String path, String iface, String method, String... args)
+            throws DBusException {
+        if (closed)
+            throw new DBusException("org.freedesktop.DBus.Error.Disconnected", "连接已关闭");
+        calls.add(args.length == 0 ? method : method + " " + String.join(" ", args));
+        Integer failures = failNext.get(method);
+        if (failures != null && failures > 0) {
+            failNext.put(method, failures - 1);
+            throw new DBusException("org.freedesktop.DBus.Error.NoReply", method + " 超时");
+        }
+
+        switch (iface + "." + method) {
+            case DBUS + ".NameHasOwner":
+                return List.of(fcitxRunning && Fcitx5Backend.SERVICE.equals(args[0])
+                        || kimpanelRunning && Fcitx5Backend.KIMPANEL.equals(args[0]));
+            case FCITX + ".CurrentInputMethod":
+                return List.of(current == null ? "" : current);
+            case FCITX + ".SetCurrentIM":
+                if (engines.contains(args[0]))
+                    current = args[0];
+                return List.of();
+            case FCITX + ".CurrentInputMethodGroup":
+                return List.of("Default");
+            case FCITX + ".InputMethodGroupInfo": {
+                List<Object> items = new ArrayList<>();
+                for (String engine : engines) {
+                    items.add(List.of(engine, ""));
+                }
+                return List.of("us", items);
+            }
+            case IBUS + ".GetGlobalEngine":
+                if (current == null)
+                    throw new DBusException("org.freedesktop.DBus.Error.Failed", "No global engine");
+                return List.of(describe(current));
+            case IBUS + ".SetGlobalEngine":
+                if (!engines.contains(args[0]))
+                    throw new DBusException("org.freedesktop.DBus.Error.Failed", "Cannot find engine " + args[0]);
+                current = args[0];
+                return List.of();
+            case IBUS + ".ListActiveEngines": {
+                List<Object> descs = new ArrayList<>();
+                for (String engine : engines) {
+                    descs.add(describe(engine));
+                }
+                return List.of(descs);
+            }
+            default:
+                throw new DBusException("org.freedesktop.DBus.Error.UnknownMethod", iface + "." + method);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(List<String> rules, SignalListener listener) throws DBusException {
+        if (closed || rejectSubscriptions)
+            throw new DBusException("org.freedesktop.DBus.Error.AccessDenied", "拒绝订阅");
+        FakeSubscription subscription = new FakeSubscription(rules, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * 向规则匹配的订阅者广播信号
+     */
+    public void emit(String iface, String member) {
+        String rule = DBusTransport.signalRule(iface, member);
+        for (FakeSubscription subscription : new ArrayList<>(subscriptions)) {
+            if (!subscription.closed && subscription.rules.contains(rule))
+                subscription.listener.signalReceived(iface, member);
+        }
+    }
+
+    /**
+     * 模拟订阅连接断开
+     */
+    public void disconnectSubscriptions() {
+        for (FakeSubscription subscription : new ArrayList<>(subscriptions)) {
+            if (!subscription.closed) {
+                subscription.closed = true;
+                subscription.listener.disconnected();
+            }
+        }
+    }
+
+    public int openSubscriptions() {
+        int count = 0;
+        for (FakeSubscription subscription : subscriptions) {
+            if (!subscription.closed)
+                count++;
+        }
+        return count;
+    }
+
+    private static final class FakeSubscription implements Subscription {
+        final List<String> rules;
+        final SignalListener listener;
+        boolean closed;
+
+        FakeSubscription(List<String> rules, SignalListener listener) {
+            this.rules = rules;
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * IBusEngineDesc 的解码形式：(类型名, 附件, 引擎名, 显示名, ...)
+     */
+    private static List<Object> describe(String engine) {
+        return List.of("IBusEngineDesc", Map.of(), engine, engine + " (long name)");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.smartim.im.dbus;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Fcitx5BackendTest {
+
+    @Test
+    public void isRunningAsksForNameOwner() throws Exception {
+        FakeBus bus = new FakeBus();
+        assertTrue(Fcitx5Backend.isRunning(bus));
+        assertEquals(List.of("NameHasOwner org.fcitx.Fcitx5"), bus.calls);
+
+        bus.fcitxRunning = false;
+        assertFalse(Fcitx5Backend.isRunning(bus));
+
+        // 总线无响应时视为未运行，继续尝试 IBus
+        bus.failNext("NameHasOwner", 1);
+        bus.fcitxRunning = true;
+        assertFalse(Fcitx5Backend.isRunning(bus));
+    }
+
+    @Test
+    public void listReadsCurrentGroup() throws Exception {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin", "mozc");
+        Fcitx5Backend backend = new Fcitx5Backend(bus);
+
+        assertEquals(List.of("keyboard-us", "pinyin", "mozc"), backend.list());
+        assertEquals("InputMethodGroupInfo Default", bus.calls.get(1));
+    }
+
+    @Test
+    public void selectAndReadCurrent() throws Exception {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin");
+        Fcitx5Backend backend = new Fcitx5Backend(bus);
+
+        assertEquals("keyboard-us", backend.current());
+        backend.select("pinyin");
+        assertEquals("pinyin", backend.current());
+        assertEquals(1, bus.count("SetCurrentIM pinyin"));
+    }
+
+    @Test(expected = DBusException.class)
+    public void selectPropagatesBusFailure() throws Exception {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin");
+        bus.failNext("SetCurrentIM", 1);
+        new Fcitx5Backend(bus).select("pinyin");
+    }
+
+    @Test
+    public void closeClosesTransport() {
+        FakeBus bus = new FakeBus();
+        new Fcitx5Backend(bus).close();
+        assertTrue(bus.closed);
+    }
+
+    @Test
+    public void watchMapsControllerAndPanelSignals() throws Exception {
+        FakeBus bus = new FakeBus("keyboard-us", "pinyin");
+        CountingWatcher watcher = new CountingWatcher();
+        DBusTransport.Subscription subscription = new Fcitx5Backend(bus).watch(watcher);
+
+        bus.emit("org.kde.kimpanel.inputmethod", "UpdateProperty");
+        bus.emit("org.fcitx.Fcitx.Controller1", "InputMethodGroupsChanged");
+        bus.emit("org.fcitx.Fcitx.Controller1", "Unrelated");
+        assertEquals(1, watcher.selections);
+        assertEquals(1, watcher.engines);
+
+        subscription.close();
+        bus.emit("org.kde.kimpanel.inputmethod", "UpdateProperty");
+        assertEquals(1, watcher.selections);
+    }
+
+    @Test(expected = DBusException.class)
+    public void watchWithoutPanelFails() throws Exception {
+        FakeBus bus = new FakeBus("keyboard-us");
+        bus.kimpanelRunning = false;
+        new Fcitx5Backend(bus).watch(new CountingWatcher());
+    }
+
+    static final class CountingWatcher implements EngineBackend.Watcher {
+        int selections;
+        int engines;
+        int lost;
+
+        @Override
+        public void selectionChanged() {
+            selections++;
+        }
+
+        @Override
+        public void enginesChanged() {
+            engines++;
+        }
+
+        @Override
+        public void lost() {
+            lost++;
+        }
+    }
+}
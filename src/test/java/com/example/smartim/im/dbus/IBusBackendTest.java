@@ -0,0 +1,64 @@
+package com.example.smartim.im.dbus;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class IBusBackendTest {
+
+    @Test
+    public void currentDecodesEngineDescription() throws Exception {
+        FakeBus bus = new FakeBus("xkb:us::eng", "libpinyin");
+        IBusBackend backend = new IBusBackend(bus);
+
+        assertEquals("xkb:us::eng", backend.current());
+        backend.select("libpinyin");
+        assertEquals("libpinyin", backend.current());
+        assertEquals(List.of("GetGlobalEngine", "SetGlobalEngine libpinyin", "GetGlobalEngine"), bus.calls);
+    }
+
+    @Test
+    public void listReturnsActiveEngineNames() throws Exception {
+        FakeBus bus = new FakeBus("xkb:us::eng", "libpinyin", "anthy");
+        assertEquals(List.of("xkb:us::eng", "libpinyin", "anthy"), new IBusBackend(bus).list());
+    }
+
+    @Test
+    public void selectingUnknownEngineFails() {
+        FakeBus bus = new FakeBus("xkb:us::eng");
+        try {
+            new IBusBackend(bus).select("rime");
+            fail();
+        } catch (DBusException e) {
+            assertEquals("org.freedesktop.DBus.Error.Failed", e.getErrorName());
+        }
+        assertEquals("xkb:us::eng", bus.getCurrent());
+    }
+
+    @Test
+    public void malformedDescriptionHasNoName() {
+        assertNull(IBusBackend.engineName("libpinyin"));
+        assertNull(IBusBackend.engineName(List.of("IBusEngineDesc", Map.of())));
+        assertNull(IBusBackend.engineName(List.of("IBusEngineDesc", Map.of(), 42)));
+    }
+
+    @Test
+    public void watchMapsDaemonSignals() throws Exception {
+        FakeBus bus = new FakeBus("xkb:us::eng", "libpinyin");
+        Fcitx5BackendTest.CountingWatcher watcher = new Fcitx5BackendTest.CountingWatcher();
+        new IBusBackend(bus).watch(watcher);
+
+        bus.emit("org.freedesktop.IBus", "GlobalEngineChanged");
+        bus.emit("org.freedesktop.IBus", "RegistryChanged");
+        assertEquals(1, watcher.selections);
+        assertEquals(1, watcher.engines);
+
+        bus.disconnectSubscriptions();
+        assertEquals(1, watcher.lost);
+    }
+}
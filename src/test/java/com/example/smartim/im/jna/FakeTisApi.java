@@ -0,0 +1,175 @@
+package com.example.smartim.im.jna;
+
+import com.sun.jna.Pointer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存中的 TIS 假实现：按句柄记录引用计数，对已释放句柄的任何访问都会直接失败
+ */
+public final class FakeTisApi implements TisApi {
+
+    public static final String KEYBOARD = "TISCategoryKeyboardInputSource";
+    public static final int PARAM_ERR = -50;
+
+    private final Map<String, Pointer> sources = new LinkedHashMap<>();
+    private final Map<Long, String> ids = new HashMap<>();
+    private final Map<Long, Integer> refCounts = new HashMap<>();
+    private final Map<Long, List<Pointer>> lists = new HashMap<>();
+    private long nextAddress = 0x1000;
+
+    private String current;
+    private int failNextSelects = 0;
+
+    public int listCreations = 0;
+    public int selectCalls = 0;
+    public Pointer lastSelected;
+
+    public FakeTisApi(String... installed) {
+        for (String id : installed) {
+            install(id);
+        }
+        current = installed.length > 0 ? installed[0] : null;
+    }
+
+    /**
+     * 安装输入源；输入源对象本身由系统持有一次引用，已安装时忽略
+     */
+    public synchronized void install(String id) {
+        if (sources.containsKey(id))
+            return;
+        Pointer source = allocate();
+        ids.put(Pointer.nativeValue(source), id);
+        sources.put(id, source);
+    }
+
+    /**
+     * 卸载输入源，系统持有的引用随之释放，之后选中旧句柄会返回错误
+     */
+    public synchronized void uninstall(String id) {
+        Pointer source = sources.remove(id);
+        if (source != null)
+            release(source);
+    }
+
+    /**
+     * 接下来的 n 次 select 返回错误码
+     */
+    public synchronized void failNextSelects(int n) {
+        failNextSelects = n;
+    }
+
+    /**
+     * 模拟用户通过快捷键或菜单栏切换输入法，不经过 select
+     */
+    public synchronized void userSelect(String id) {
+        current = id;
+    }
+
+    public synchronized String getCurrent() {
+        return current;
+    }
+
+    /**
+     * 当前仍存活的句柄数 (不含系统持有的输入源)
+     */
+    public synchronized int liveHandles() {
+        int live = 0;
+        for (int count : refCounts.values()) {
+            live += count;
+        }
+        return live - sources.size();
+    }
+
+    @Override
+    public synchronized Pointer createInputSourceList() {
+        listCreations++;
+        Pointer list = allocate();
+        lists.put(Pointer.nativeValue(list), new ArrayList<>(sources.values()));
+        return list;
+    }
+
+    @Override
+    public synchronized long getCount(Pointer array) {
+        return items(array).size();
+    }
+
+    @Override
+    public synchronized Pointer getValueAt(Pointer array, long index) {
+        return items(array).get((int) index);
+    }
+
+    @Override
+    public synchronized String getSourceId(Pointer source) {
+        checkAlive(source);
+        return ids.get(Pointer.nativeValue(source));
+    }
+
+    @Override
+    public synchronized String getSourceCategory(Pointer source) {
+        checkAlive(source);
+        return KEYBOARD;
+    }
+
+    @Override
+    public synchronized Pointer copyCurrentKeyboardInputSource() {
+        Pointer source = current == null ? null : sources.get(current);
+        return source == null ? null : retain(source);
+    }
+
+    @Override
+    public synchronized int select(Pointer source) {
+        selectCalls++;
+        checkAlive(source);
+        lastSelected = source;
+        if (failNextSelects > 0) {
+            failNextSelects--;
+            return PARAM_ERR;
+        }
+        String id = ids.get(Pointer.nativeValue(source));
+        if (!sources.containsKey(id))
+            return PARAM_ERR;
+        current = id;
+        return 0;
+    }
+
+    @Override
+    public synchronized Pointer retain(Pointer ref) {
+        checkAlive(ref);
+        refCounts.merge(Pointer.nativeValue(ref), 1, Integer::sum);
+        return ref;
+    }
+
+    @Override
+    public synchronized void release(Pointer ref) {
+        checkAlive(ref);
+        long address = Pointer.nativeValue(ref);
+        int count = refCounts.merge(address, -1, Integer::sum);
+        if (count == 0) {
+            // CFArray 释放时不影响元素，元素引用由系统持有
+            refCounts.remove(address);
+            lists.remove(address);
+        }
+    }
+
+    private List<Pointer> items(Pointer array) {
+        checkAlive(array);
+        return lists.get(Pointer.nativeValue(array));
+    }
+
+    private void checkAlive(Pointer ref) {
+        if (ref == null || !refCounts.containsKey(Pointer.nativeValue(ref)))
+            throw new IllegalStateException("access to released handle " + ref);
+    }
+
+    private Pointer allocate() {
+        Pointer pointer = new Pointer(nextAddress);
+        nextAddress += 0x10;
+        refCounts.put(Pointer.nativeValue(pointer), 1);
+        return pointer;
+    }
+}
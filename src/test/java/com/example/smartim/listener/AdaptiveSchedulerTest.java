@@ -0,0 +1,257 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用手动推进的时钟与定时器核对 {@link AdaptiveScheduler} 的立即检测、EWMA 防抖与任务复用
+ */
+public class AdaptiveSchedulerTest {
+
+    private static final int MAX_DELAY_MS = 300;
+
+    private final FakeEnvironment environment = new FakeEnvironment();
+    private final List<Long> runs = new ArrayList<>();
+    private ContextType detected = ContextType.CODE;
+    private AdaptiveScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        // 时钟从一个较大的值开始，第一次事件与初始状态的间隔视为孤立移动
+        environment.now = 10_000_000_000L;
+        scheduler = new AdaptiveScheduler(environment, () -> {
+            runs.add(environment.nowMs());
+            return detected;
+        });
+    }
+
+    @Test
+    public void isolatedEventsRunImmediately() {
+        moveAt(10_000);
+        moveAt(10_200);
+        moveAt(10_500);
+
+        assertEquals(List.of(10_000L, 10_200L, 10_500L), runs);
+        assertEquals(0, environment.added);
+        assertEquals(-1, scheduler.getPendingDelayMs());
+    }
+
+    @Test
+    public void burstIsDebouncedByEwmaOfIntervals() {
+        moveAt(10_000);
+        // 间隔 20ms：EWMA = 0.3 * 20 + 0.7 * 150 = 111，延迟为两倍
+        moveAt(10_020);
+        assertEquals(List.of(10_000L), runs);
+        assertEquals(222, scheduler.getPendingDelayMs());
+
+        // 再次间隔 20ms：EWMA = 0.3 * 20 + 0.7 * 111 = 83.7，截止时间提前，重新提交唯一的任务
+        moveAt(10_040);
+        assertEquals(167, scheduler.getPendingDelayMs());
+        assertEquals(1, environment.cancelled);
+        assertEquals(1, environment.pending.size());
+
+        environment.advanceTo(10_206);
+        assertEquals(List.of(10_000L), runs);
+        environment.advanceTo(10_207);
+        assertEquals(List.of(10_000L, 10_207L), runs);
+        assertTrue(environment.pending.isEmpty());
+    }
+
+    @Test
+    public void delayIsClampedToBounds() {
+        long t = 10_000;
+        moveAt(t);
+        // 持续 1ms 间隔的事件使 EWMA 趋近 1，延迟不低于下限
+        for (int i = 0; i < 50; i++) {
+            moveAt(++t);
+        }
+        assertEquals(AdaptiveScheduler.MIN_DELAY_MS, scheduler.getPendingDelayMs());
+
+        // 上限由配置的防抖延迟决定
+        scheduler.cancel();
+        AdaptiveScheduler slow = new AdaptiveScheduler(environment, () -> null);
+        environment.now += 1_000_000_000L;
+        slow.onCaretMoved(50);
+        environment.now += 100_000_000L;
+        slow.onCaretMoved(50);
+        assertEquals(50, slow.getPendingDelayMs());
+    }
+
+    @Test
+    public void laterEventsOnlyPostponeTheQueuedTask() {
+        moveAt(10_000);
+        // EWMA = 0.3 * 100 + 0.7 * 150 = 135，延迟 270
+        moveAt(10_100);
+        // EWMA = 0.3 * 140 + 0.7 * 135 = 136.5，新截止时间晚于已排队的请求，只推迟截止时间
+        moveAt(10_240);
+        assertEquals(1, environment.added);
+        assertEquals(0, environment.cancelled);
+
+        // 第一次到期时截止时间已顺延，同一个任务重新排队而不检测
+        long deadline = 10_240 + scheduler.getPendingDelayMs();
+        environment.advanceTo(10_370);
+        assertEquals(List.of(10_000L), runs);
+        assertEquals(2, environment.added);
+        environment.advanceTo(deadline);
+        assertEquals(List.of(10_000L, deadline), runs);
+        assertEquals(1, environment.tasks.size());
+    }
+
+    @Test
+    public void crossingKnownBoundaryRunsImmediately() {
+        moveAt(10_000);
+        // 索引显示仍在同一上下文中，照常防抖
+        environment.known = ContextType.CODE;
+        moveAt(10_020);
+        assertEquals(1, runs.size());
+
+        // 连续移动中跨进注释，不等防抖直接检测
+        environment.known = ContextType.SINGLE_LINE_COMMENT;
+        detected = ContextType.SINGLE_LINE_COMMENT;
+        moveAt(10_040);
+        assertEquals(List.of(10_000L, 10_040L), runs);
+
+        // 已排队的任务到期后发现没有截止时间，不会再检测一次
+        environment.advanceTo(11_000);
+        assertEquals(2, runs.size());
+        assertTrue(environment.pending.isEmpty());
+
+        // 索引未知时不能据此判断，照常防抖
+        environment.known = null;
+        moveAt(11_010);
+        moveAt(11_020);
+        assertEquals(3, runs.size());
+        assertTrue(scheduler.getPendingDelayMs() > 0);
+    }
+
+    @Test
+    public void backgroundResultUpdatesBoundary() {
+        moveAt(10_000);
+        environment.known = ContextType.STRING_LITERAL;
+        // 后台检测回报的结果与索引一致，不算跨越边界
+        scheduler.onDetected(ContextType.STRING_LITERAL);
+        moveAt(10_020);
+        assertEquals(1, runs.size());
+    }
+
+    @Test
+    public void cancelDropsPendingTask() {
+        moveAt(10_000);
+        moveAt(10_020);
+        scheduler.cancel();
+
+        assertEquals(1, environment.cancelled);
+        assertTrue(environment.pending.isEmpty());
+        assertEquals(-1, scheduler.getPendingDelayMs());
+        environment.advanceTo(12_000);
+        assertEquals(1, runs.size());
+    }
+
+    @Test
+    public void disposedEditorIsNotDetected() {
+        moveAt(10_000);
+        moveAt(10_020);
+        environment.disposed = true;
+        environment.advanceTo(12_000);
+
+        assertEquals(1, runs.size());
+        assertEquals(-1, scheduler.getPendingDelayMs());
+    }
+
+    @Test
+    public void runLaterUsesTheSameTask() {
+        scheduler.runLater(100);
+        moveAt(10_050);
+        // 孤立移动立即检测，延迟的检测随之作废
+        assertEquals(List.of(10_050L), runs);
+        environment.advanceTo(10_200);
+        assertEquals(1, runs.size());
+        assertEquals(1, environment.tasks.size());
+    }
+
+    private void moveAt(long ms) {
+        environment.advanceTo(ms);
+        scheduler.onCaretMoved(MAX_DELAY_MS);
+    }
+
+    /**
+     * 手动推进的时钟与定时器，到期的请求按时间顺序在推进时执行
+     */
+    private static final class FakeEnvironment implements AdaptiveScheduler.Environment {
+        long now;
+        ContextType known;
+        boolean disposed;
+        int added;
+        int cancelled;
+        final List<Request> pending = new ArrayList<>();
+        // 出现过的不同任务对象
+        final List<Runnable> tasks = new ArrayList<>();
+
+        long nowMs() {
+            return now / 1_000_000;
+        }
+
+        void advanceTo(long ms) {
+            long target = ms * 1_000_000;
+            while (true) {
+                Request next = null;
+                for (Request request : pending) {
+                    if (request.due <= target && (next == null || request.due < next.due))
+                        next = request;
+                }
+                if (next == null)
+                    break;
+                pending.remove(next);
+                now = Math.max(now, next.due);
+                next.task.run();
+            }
+            now = Math.max(now, target);
+        }
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void addRequest(Runnable task, long delayMs) {
+            added++;
+            if (!tasks.contains(task))
+                tasks.add(task);
+            pending.add(new Request(task, now + delayMs * 1_000_000));
+        }
+
+        @Override
+        public void cancelRequest(Runnable task) {
+            cancelled++;
+            pending.removeIf(request -> request.task == task);
+        }
+
+        @Override
+        public ContextType knownContext() {
+            return known;
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+
+    private static final class Request {
+        final Runnable task;
+        final long due;
+
+        Request(Runnable task, long due) {
+            this.task = task;
+            this.due = due;
+        }
+    }
+}
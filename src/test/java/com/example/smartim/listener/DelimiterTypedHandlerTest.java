@@ -0,0 +1,96 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.im.RecordingInputMethodService;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.codeInsight.CodeInsightSettings;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+/**
+ * 在 Java 文件中键入定界符，核对 {@link DelimiterTypedHandler} 按语言的 Commenter 与 QuoteHandler 做出的预测
+ */
+public class DelimiterTypedHandlerTest extends BasePlatformTestCase {
+
+    private static final String SOURCE = String.join("\n",
+            "class Sample {",
+            "    void run() {",
+            "        <caret>",
+            "    }",
+            "}",
+            "");
+
+    private RecordingInputMethodService recorder;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        recorder = new RecordingInputMethodService(SmartIMSettings.snapshot().getDecisionTable().getChineseTarget().getImName());
+        TestEditorListener.install(new SwitchExecutor(recorder, Runnable::run), getTestRootDisposable());
+        myFixture.configureByText("Sample.java", SOURCE);
+    }
+
+    public void testCommentStartIsPredicted() {
+        myFixture.type("//");
+        assertEquals(ContextType.SINGLE_LINE_COMMENT, predictAfter('/'));
+        // 键入时已经切换，无需等待检测
+        assertTrue(recorder.isChinese());
+
+        myFixture.type("\n/*");
+        assertEquals(ContextType.MULTI_LINE_COMMENT, predictAfter('*'));
+        myFixture.type("*/\n/**");
+        assertEquals(ContextType.DOC_COMMENT, predictAfter('*'));
+    }
+
+    public void testDelimiterInsideStringIsNotPredicted() {
+        myFixture.type("String s = \"http://");
+        assertNull(predictAfter('/'));
+    }
+
+    public void testAutoClosedQuote() {
+        assertTrue(CodeInsightSettings.getInstance().AUTOINSERT_PAIR_QUOTE);
+
+        myFixture.type("String s = \"");
+        // 右引号已自动补全，光标位于两个引号之间
+        assertEquals("\"", textAfterCaret(1));
+        assertEquals(ContextType.STRING_LITERAL, predictAfter('"'));
+
+        // 越过自动补全的右引号不是新的字符串
+        myFixture.type("中文\"");
+        assertNull(predictAfter('"'));
+
+        // 字符字面量同样会自动补全，但不是字符串
+        myFixture.type(";\nchar c = '");
+        assertEquals("'", textAfterCaret(1));
+        assertNull(predictAfter('\''));
+    }
+
+    public void testNonAutoClosedQuote() {
+        CodeInsightSettings settings = CodeInsightSettings.getInstance();
+        boolean old = settings.AUTOINSERT_PAIR_QUOTE;
+        settings.AUTOINSERT_PAIR_QUOTE = false;
+        try {
+            myFixture.type("String s = \"");
+            // 未闭合的字面量延伸到行尾
+            assertEquals("\n", textAfterCaret(1));
+            assertEquals(ContextType.STRING_LITERAL, predictAfter('"'));
+
+            myFixture.type("中文\"");
+            assertNull(predictAfter('"'));
+        } finally {
+            settings.AUTOINSERT_PAIR_QUOTE = old;
+        }
+    }
+
+    /**
+     * 刚键入 {@code c} 之后的预测，与 charTyped 看到的状态一致
+     */
+    private ContextType predictAfter(char c) {
+        return DelimiterTypedHandler.predict(c, myFixture.getEditor(), myFixture.getFile());
+    }
+
+    private String textAfterCaret(int length) {
+        int offset = myFixture.getEditor().getCaretModel().getOffset();
+        return myFixture.getEditor().getDocument().getText().substring(offset, offset + length);
+    }
+}
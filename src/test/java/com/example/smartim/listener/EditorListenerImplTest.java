@@ -0,0 +1,166 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.im.RecordingInputMethodService;
+import com.example.smartim.im.RecordingInputMethodService.SwitchRecord;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 在 light fixture 打开的 Java 编辑器中移动光标与输入，核对 {@link EditorListenerImpl} 触发的切换次数、目标与延迟；
+ * 停留在同一目标的上下文中时不应重复提交
+ */
+public class EditorListenerImplTest extends BasePlatformTestCase {
+
+    private static final String SOURCE = String.join("\n",
+            "class Sample {",
+            "    // 中文注释",
+            "    int code = 1;",
+            "    /** 文档注释 */",
+            "    String text = \"value\";",
+            "}",
+            "");
+
+    // 大于调度器的连续事件间隔，使每次移动都按孤立移动立即检测
+    private static final long ISOLATED_GAP_MS = 200;
+    private static final int ROUNDS = 5;
+    // 与默认配置一致
+    private static final String CHINESE = "搜狗拼音";
+    private static final String ENGLISH = "ABC";
+
+    private RecordingInputMethodService recorder;
+    // 每次从移动光标到切换完成的耗时
+    private final List<Long> latencies = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        recorder = new RecordingInputMethodService(SmartIMSettings.snapshot().getDecisionTable().getChineseTarget().getImName());
+        // 同步执行切换，记录完成的时间即为切换生效的时间
+        TestEditorListener.install(new SwitchExecutor(recorder, Runnable::run), getTestRootDisposable());
+        myFixture.configureByText("Sample.java", SOURCE);
+        recorder.clear();
+    }
+
+    public void testEachCaretMoveSwitchesOnceWithinLatencyBudget() throws InterruptedException {
+        String[] anchors = {"中文注释", "code = 1", "文档注释", "value"};
+        String[] expected = {CHINESE, ENGLISH, CHINESE, ENGLISH};
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < anchors.length; i++) {
+                SwitchRecord record = moveTo(anchors[i]);
+                assertEquals(anchors[i], expected[i], record.getTarget());
+                assertTrue(record.isSuccess());
+            }
+        }
+
+        // 等待可能迟到的防抖或后台检测，不应再产生多余的切换
+        Thread.sleep(ISOLATED_GAP_MS);
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+        assertEquals(recorder.getRecords().toString(), ROUNDS * anchors.length, recorder.getRecords().size());
+
+        Collections.sort(latencies);
+        long p95 = latencies.get((int) Math.ceil(latencies.size() * 0.95) - 1);
+        assertTrue("p95 " + TimeUnit.NANOSECONDS.toMillis(p95) + "ms",
+                p95 < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    public void testMovingInsideCodeNeverResubmits() throws InterruptedException {
+        assertEquals(ENGLISH, moveTo("code = 1").getTarget());
+        for (String anchor : new String[]{"class Sample", "int code", "String text", "Sample {"}) {
+            stayAt(anchor);
+        }
+
+        assertSwitches(ENGLISH);
+        assertFalse(recorder.isChinese());
+    }
+
+    public void testCodeCommentCodeSwitchesOncePerBoundary() throws InterruptedException {
+        moveTo("code = 1");
+        moveTo("中文注释");
+        assertTrue(recorder.isChinese());
+        // 注释内移动不再提交
+        stayAt("注释");
+        moveTo("int code");
+        stayAt("String text");
+
+        assertSwitches(ENGLISH, CHINESE, ENGLISH);
+    }
+
+    public void testTypingDoesNotResubmit() throws InterruptedException {
+        SmartIMMetrics metrics = SmartIMMetrics.getInstance();
+        moveTo("code = 1");
+        long detections = metrics.getDetections();
+        myFixture.type("abc");
+        settle();
+        // 输入确实触发了检测，只是目标没有变化
+        assertTrue(metrics.getDetections() > detections);
+
+        moveTo("中文注释");
+        detections = metrics.getDetections();
+        myFixture.type("更多");
+        settle();
+        assertTrue(metrics.getDetections() > detections);
+
+        assertSwitches(ENGLISH, CHINESE);
+    }
+
+    /**
+     * 隔开足够时间后把光标移到锚点文本中间，等待检测完成且不产生切换
+     */
+    private void stayAt(String anchor) throws InterruptedException {
+        SmartIMMetrics metrics = SmartIMMetrics.getInstance();
+        settle();
+        int before = recorder.getRecords().size();
+        long detections = metrics.getDetections();
+
+        myFixture.getEditor().getCaretModel().moveToOffset(SOURCE.indexOf(anchor) + anchor.length() / 2);
+        PlatformTestUtil.waitWithEventsDispatching("移动到 " + anchor + " 后没有检测",
+                () -> metrics.getDetections() > detections, 5);
+        settle();
+        assertEquals(anchor + " " + recorder.getRecords(), before, recorder.getRecords().size());
+    }
+
+    /**
+     * 等待防抖与后台检测全部结束
+     */
+    private static void settle() throws InterruptedException {
+        Thread.sleep(ISOLATED_GAP_MS + SmartIMSettings.snapshot().getDebounceMs());
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+    }
+
+    private void assertSwitches(String... targets) throws InterruptedException {
+        settle();
+        assertEquals(List.of(targets), recorder.getRecords().stream()
+                .map(SwitchRecord::getTarget)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * 隔开足够时间后把光标移到锚点文本中间，等待产生一次切换
+     */
+    private SwitchRecord moveTo(String anchor) throws InterruptedException {
+        Thread.sleep(ISOLATED_GAP_MS);
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+        int before = recorder.getRecords().size();
+
+        long moved = System.nanoTime();
+        myFixture.getEditor().getCaretModel().moveToOffset(SOURCE.indexOf(anchor) + anchor.length() / 2);
+        PlatformTestUtil.waitWithEventsDispatching("移动到 " + anchor + " 后没有切换",
+                () -> recorder.getRecords().size() > before, 5);
+
+        List<SwitchRecord> records = recorder.getRecords();
+        assertEquals(records.toString(), before + 1, records.size());
+        SwitchRecord record = records.get(records.size() - 1);
+        latencies.add(record.getFinishedAt() - moved);
+        return record;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.im.RecordingInputMethodService;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.EditorKind;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 反复打开、释放大量编辑器后，{@link EditorSessionRegistry} 不能留下任何会话或待执行的检测
+ */
+public class EditorSessionRegistryTest extends BasePlatformTestCase {
+
+    private static final String SOURCE = String.join("\n",
+            "class Sample {",
+            "    // 中文注释",
+            "    int code = 1;",
+            "    String text = \"value\";",
+            "}",
+            "");
+
+    private static final int EDITORS = 500;
+    // 同时打开的编辑器上限，超出后随机释放一个
+    private static final int MAX_OPEN = 20;
+
+    private final RecordingInputMethodService recorder = new RecordingInputMethodService();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestEditorListener.install(new SwitchExecutor(recorder, Runnable::run), getTestRootDisposable());
+    }
+
+    public void testManyEditorsLeaveNoSessions() throws InterruptedException {
+        EditorSessionRegistry registry = EditorSessionRegistry.getInstance();
+        assertEquals("其他测试遗留了编辑器会话", 0, registry.getActiveCount());
+        long opened = registry.getOpenedCount();
+        long released = registry.getReleasedCount();
+        long skipped = registry.getSkippedCount();
+
+        VirtualFile file = myFixture.addFileToProject("Sample.java", SOURCE).getVirtualFile();
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        EditorFactory factory = EditorFactory.getInstance();
+        Random random = new Random(21);
+
+        List<EditorSession> sessions = new ArrayList<>();
+        List<Editor> open = new ArrayList<>();
+        for (int i = 0; i < EDITORS; i++) {
+            // 每五个中有一个是预览查看器，按默认黑名单跳过
+            boolean preview = i % 5 == 4;
+            Editor editor = preview
+                    ? factory.createViewer(document, getProject(), EditorKind.PREVIEW)
+                    : factory.createEditor(document, getProject(), EditorKind.MAIN_EDITOR);
+            EditorSession session = registry.get(editor);
+            if (preview) {
+                assertNull(session);
+            } else {
+                assertNotNull(session);
+                sessions.add(session);
+                // 第一次移动立即检测，紧接着的第二次进入防抖，释放时必须一并取消
+                editor.getCaretModel().moveToOffset(random.nextInt(SOURCE.length()));
+                editor.getCaretModel().moveToOffset(random.nextInt(SOURCE.length()));
+            }
+            open.add(editor);
+            if (open.size() > MAX_OPEN)
+                factory.releaseEditor(open.remove(random.nextInt(open.size())));
+        }
+        for (Editor editor : open) {
+            factory.releaseEditor(editor);
+        }
+
+        assertEquals(0, registry.getActiveCount());
+        assertEquals(sessions.size(), registry.getOpenedCount() - opened);
+        assertEquals(sessions.size(), registry.getReleasedCount() - released);
+        assertEquals(EDITORS - sessions.size(), registry.getSkippedCount() - skipped);
+        for (EditorSession session : sessions) {
+            assertTrue(session.isDisposed());
+            assertNull(registry.get(session.getEditor()));
+        }
+
+        // 释放前排队的防抖检测到期后不再切换
+        int switches = recorder.getRecords().size();
+        Thread.sleep(SmartIMSettings.snapshot().getDebounceMs() + 100L);
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue();
+        assertEquals(switches, recorder.getRecords().size());
+    }
+}
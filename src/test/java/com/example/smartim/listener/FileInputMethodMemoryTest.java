@@ -0,0 +1,124 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextDetector.ContextType;
+import com.example.smartim.core.DecisionTable;
+import com.example.smartim.im.RecordingInputMethodService;
+import com.example.smartim.im.RecordingInputMethodService.SwitchRecord;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.EditorKind;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 记住的输入法按文件保存，编辑器释放后重新打开同一文件仍能立即恢复
+ */
+public class FileInputMethodMemoryTest extends BasePlatformTestCase {
+
+    private static final String SOURCE = String.join("\n",
+            "class Sample {",
+            "    // 中文注释",
+            "    int code = 1;",
+            "}",
+            "");
+
+    private final RecordingInputMethodService recorder = new RecordingInputMethodService();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestEditorListener.install(new SwitchExecutor(recorder, Runnable::run), getTestRootDisposable());
+    }
+
+    public void testReopenedFileRestoresWithoutDetection() {
+        VirtualFile file = myFixture.addFileToProject("Sample.java", SOURCE).getVirtualFile();
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        EditorFactory factory = EditorFactory.getInstance();
+        DecisionTable table = SmartIMSettings.snapshot().getDecisionTable();
+        FileInputMethodMemory memory = FileInputMethodMemory.getInstance(getProject());
+
+        Editor first = factory.createEditor(document, getProject(), EditorKind.MAIN_EDITOR);
+        try {
+            first.getCaretModel().moveToOffset(SOURCE.indexOf("中文注释"));
+            // 词法无法判断时结果来自后台 PSI 检测
+            PlatformTestUtil.waitWithEventsDispatching("注释中的光标没有被记住",
+                    () -> memory.recall(file, table) != null, 5);
+        } finally {
+            factory.releaseEditor(first);
+        }
+        assertSame(table.getChineseTarget(), memory.recall(file, table).getTarget());
+        assertEquals(ContextType.SINGLE_LINE_COMMENT, memory.recall(file, table).getContext());
+
+        // 新编辑器的光标在文件开头 (代码)，恢复时仍先切到记住的中文，检测留到防抖之后
+        Editor second = factory.createEditor(document, getProject(), EditorKind.MAIN_EDITOR);
+        try {
+            recorder.clear();
+            EditorSessionRegistry.getInstance().get(second).restore();
+            List<SwitchRecord> records = recorder.getRecords();
+            assertEquals(records.toString(), 1, records.size());
+            assertEquals(table.getChineseTarget().getImName(), records.get(0).getTarget());
+        } finally {
+            factory.releaseEditor(second);
+        }
+    }
+
+    public void testRecordFromOldSettingsIsIgnored() {
+        FileInputMethodMemory memory = new FileInputMethodMemory();
+        VirtualFile file = new LightVirtualFile("a.txt");
+        DecisionTable table = SmartIMSettings.snapshot().getDecisionTable();
+        memory.remember(file, table.getChineseTarget(), table, ContextType.SINGLE_LINE_COMMENT);
+
+        assertSame(table.getChineseTarget(), memory.recall(file, table).getTarget());
+        assertNull(memory.recall(file, DecisionTable.compile(new SmartIMSettings.Options())));
+    }
+
+    public void testRepeatedDecisionsUpdateEntryInPlace() {
+        FileInputMethodMemory memory = new FileInputMethodMemory();
+        VirtualFile file = new LightVirtualFile("a.txt");
+        DecisionTable table = SmartIMSettings.snapshot().getDecisionTable();
+        memory.remember(file, table.getEnglishTarget(), table, ContextType.CODE);
+        FileInputMethodMemory.Entry entry = memory.recall(file, table);
+
+        memory.remember(file, table.getChineseTarget(), table, ContextType.DOC_COMMENT);
+        assertSame(entry, memory.recall(file, table));
+        assertSame(table.getChineseTarget(), entry.getTarget());
+        assertEquals(ContextType.DOC_COMMENT, entry.getContext());
+
+        // 配置变更后写入的记录同样原地更新，并在新决策表下可用
+        DecisionTable changed = DecisionTable.compile(new SmartIMSettings.Options());
+        memory.remember(file, changed.getEnglishTarget(), changed, ContextType.CODE);
+        assertSame(entry, memory.recall(file, changed));
+        assertNull(memory.recall(file, table));
+        assertEquals(1, memory.size());
+    }
+
+    public void testLeastRecentlyUsedFileIsEvicted() {
+        FileInputMethodMemory memory = new FileInputMethodMemory();
+        DecisionTable table = SmartIMSettings.snapshot().getDecisionTable();
+        List<VirtualFile> files = new ArrayList<>();
+        for (int i = 0; i <= FileInputMethodMemory.CAPACITY; i++) {
+            files.add(new LightVirtualFile("f" + i + ".txt"));
+        }
+
+        for (int i = 0; i < FileInputMethodMemory.CAPACITY; i++) {
+            memory.remember(files.get(i), table.getEnglishTarget(), table, ContextType.CODE);
+        }
+        // 访问第一个文件使其变为最近使用，第二个成为最旧
+        assertNotNull(memory.recall(files.get(0), table));
+        memory.remember(files.get(FileInputMethodMemory.CAPACITY), table.getChineseTarget(), table,
+                ContextType.SINGLE_LINE_COMMENT);
+
+        assertEquals(FileInputMethodMemory.CAPACITY, memory.size());
+        assertNotNull(memory.recall(files.get(0), table));
+        assertNull(memory.recall(files.get(1), table));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.smartim.listener;
+
+import com.example.smartim.core.ContextIndexManager;
+import com.example.smartim.core.LanguageSettingsRegistry;
+import com.example.smartim.im.SwitchExecutor;
+import com.example.smartim.metrics.SmartIMMetrics;
+import com.example.smartim.settings.SmartIMSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.testFramework.ExtensionTestUtil;
+import com.intellij.testFramework.ServiceContainerUtil;
+
+import java.util.List;
+
+/**
+ * 在测试中换用指定的 {@link SwitchExecutor}：平台注册的 {@link EditorListenerImpl} 在创建时取定服务，
+ * 因此除替换服务外还要用以同一执行器构造的监听器顶替它，键入处理与编辑器会话才会提交到同一处
+ */
+final class TestEditorListener {
+
+    private static final ExtensionPointName<EditorFactoryListener> EP =
+            new ExtensionPointName<>("com.intellij.editorFactoryListener");
+
+    private TestEditorListener() {
+    }
+
+    static void install(SwitchExecutor executor, Disposable parent) {
+        ServiceContainerUtil.replaceService(ApplicationManager.getApplication(), SwitchExecutor.class, executor, parent);
+        EditorListenerImpl listener = new EditorListenerImpl(SmartIMSettings.getInstance(),
+                LanguageSettingsRegistry.getInstance(), ContextIndexManager.getInstance(), executor,
+                EditorSessionRegistry.getInstance(), SmartIMMetrics.getInstance());
+        ExtensionTestUtil.maskExtensions(EP, List.of(listener), parent);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.smartim.metrics;
+
+import jdk.jfr.Recording;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContextDetectedEventTest {
+
+    @Test
+    public void eventIsCreatedOnlyWhileRecording() {
+        assertNull(ContextDetectedEvent.beginIfEnabled());
+
+        try (Recording recording = new Recording()) {
+            recording.enable(ContextDetectedEvent.class);
+            recording.start();
+            ContextDetectedEvent event = ContextDetectedEvent.beginIfEnabled();
+            assertNotNull(event);
+            assertTrue(event.shouldCommit());
+        }
+
+        // 录制结束后恢复为不分配
+        assertNull(ContextDetectedEvent.beginIfEnabled());
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.smartim.metrics;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmartIMMetricsTest {
+
+    @Test
+    public void gaugesAreReadOnExport() {
+        SmartIMMetrics metrics = new SmartIMMetrics();
+        AtomicLong sessions = new AtomicLong();
+        metrics.registerGauge("editorSessionsActive", "编辑器会话", sessions::get);
+        metrics.registerGauge("switchRequests", "切换请求", () -> 7);
+
+        sessions.set(3);
+        String json = metrics.toJson();
+        assertTrue(json, json.contains("\"editorSessionsActive\": 3"));
+        assertTrue(json, json.contains("\"switchRequests\": 7"));
+    }
+
+    @Test
+    public void reRegisteringReplacesGaugeInPlace() {
+        SmartIMMetrics metrics = new SmartIMMetrics();
+        metrics.registerGauge("a", "A", () -> 1);
+        metrics.registerGauge("b", "B", () -> 2);
+        // 服务实例被替换时同名读数指向新实例
+        metrics.registerGauge("a", "A", () -> 10);
+
+        List<SmartIMMetrics.Gauge> gauges = metrics.getGauges();
+        assertEquals(2, gauges.size());
+        assertEquals("a", gauges.get(0).getKey());
+        assertEquals(10, gauges.get(0).getValue());
+        assertEquals("b", gauges.get(1).getKey());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.smartim.settings;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SmartIMSettings} 只通过副本读写配置项，每次写回都编译并发布新快照
+ */
+public class SmartIMSettingsTest extends BasePlatformTestCase {
+
+    private SmartIMSettings settings;
+    private SmartIMSettings.Options original;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        settings = SmartIMSettings.getInstance();
+        original = settings.copyOptions();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            settings.update(original);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testEditingCopyDoesNotChangeSnapshot() {
+        SettingsSnapshot before = settings.getSnapshot();
+
+        SmartIMSettings.Options draft = settings.copyOptions();
+        draft.debounceMs = before.getDebounceMs() + 100;
+        draft.generalSettings.customKeywords = "TODO";
+        settings.getState().enabled = !before.isEnabled();
+
+        assertSame(before, settings.getSnapshot());
+        assertEquals(original.debounceMs, settings.copyOptions().debounceMs);
+        assertEquals(original.generalSettings.customKeywords, settings.copyOptions().generalSettings.customKeywords);
+        assertEquals(original.enabled, settings.copyOptions().enabled);
+    }
+
+    public void testUpdatePublishesNewSnapshot() {
+        List<SettingsSnapshot> published = new ArrayList<>();
+        ApplicationManager.getApplication().getMessageBus().connect(getTestRootDisposable())
+                .subscribe(SmartIMSettingsListener.TOPIC, published::add);
+        SettingsSnapshot before = settings.getSnapshot();
+
+        SmartIMSettings.Options draft = settings.copyOptions();
+        draft.debounceMs = before.getDebounceMs() + 100;
+        settings.update(draft);
+        // 写回后继续修改草稿不会影响已发布的配置
+        draft.debounceMs = 0;
+
+        SettingsSnapshot after = settings.getSnapshot();
+        assertNotSame(before, after);
+        assertEquals(List.of(after), published);
+        assertEquals(before.getDebounceMs() + 100, after.getDebounceMs());
+        assertSame(SmartIMSettings.snapshot(), after);
+        assertEquals(after.getDebounceMs(), settings.getState().debounceMs);
+    }
+
+    public void testLoadStatePublishes() {
+        List<SettingsSnapshot> published = new ArrayList<>();
+        ApplicationManager.getApplication().getMessageBus().connect(getTestRootDisposable())
+                .subscribe(SmartIMSettingsListener.TOPIC, published::add);
+
+        SmartIMSettings.Options loaded = new SmartIMSettings.Options();
+        loaded.lexerFastPath = !original.lexerFastPath;
+        settings.loadState(loaded);
+
+        assertEquals(1, published.size());
+        assertEquals(loaded.lexerFastPath, settings.getSnapshot().isLexerFastPath());
+    }
+}